@@ -0,0 +1,127 @@
+package wolox.training.reactive;
+
+import com.google.common.collect.ImmutableList;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import wolox.training.exception.BookNotFoundException;
+import wolox.training.models.Book;
+import wolox.training.models.dto.CompactPageDTO;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Handlers of the reactive book routes, with the same parameters and answers of the book controller
+ *
+ * @author luismiguelrodriguez
+ */
+@Component
+@Profile("reactive")
+public class BookHandler {
+
+    private static final List<String> FILTERS = ImmutableList.of(
+            "genre", "author", "image", "title", "subtitle", "publisher", "startYear", "endYear", "pages", "isbn");
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 2000;
+    private static final String PAGE_ENVELOPE = "page";
+    private static final String COMPACT_ENVELOPE = "compact";
+    private static final Sort ORDER = Sort.by("id");
+
+    @Autowired
+    private ReactiveBookRepository bookRepository;
+
+    @Autowired
+    private ReactiveOpenLibraryClient openLibraryClient;
+
+    @Value("${books.lookup.timeout-millis:5000}")
+    private long timeoutMillis;
+
+    /**
+     * Method to find a book by id
+     *
+     * @param request request with the id of the book
+     * @return return the book, or 404 when it does not exist
+     */
+    public Mono<ServerResponse> findById(ServerRequest request) {
+        Long id;
+        try {
+            id = Long.valueOf(request.pathVariable("id"));
+        } catch (NumberFormatException e) {
+            return ServerResponse.badRequest().build();
+        }
+        return bookRepository.findById(id)
+                .flatMap(book -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(book))
+                .switchIfEmpty(ServerResponse.notFound().build());
+    }
+
+    /**
+     * Method to search a book by isbn, a book that is not stored is imported from the external api
+     *
+     * @param request request with the isbn
+     * @return return 200 with the stored book, 201 with the imported one, 404 or 504 when the deadline is exceeded
+     */
+    public Mono<ServerResponse> findByIsbn(ServerRequest request) {
+        String isbn = request.queryParam("isbn").orElse("");
+        Mono<ServerResponse> imported = openLibraryClient.findInfoBook(isbn)
+                .flatMap(bookDTO -> bookRepository.insert(bookDTO.setBook()))
+                .flatMap(book -> respond(HttpStatus.CREATED, book));
+        return bookRepository.findByIsbn(isbn)
+                .flatMap(book -> respond(HttpStatus.OK, book))
+                .switchIfEmpty(imported)
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .onErrorResume(BookNotFoundException.class, e -> ServerResponse.notFound().build())
+                .onErrorResume(TimeoutException.class, e -> ServerResponse.status(HttpStatus.GATEWAY_TIMEOUT).build());
+    }
+
+    /**
+     * Method to search books by any of the filters of the book controller, page and size select the page
+     *
+     * @param request request with the filters, envelope page answers the Spring page and compact the compact page
+     *                of the book controller
+     * @return return the page of books sorted by id, or 400 when the page, the size or the envelope are not valid
+     */
+    public Mono<ServerResponse> findByParameters(ServerRequest request) {
+        Map<String, String> filters = new HashMap<>();
+        FILTERS.forEach(filter -> filters.put(filter, request.queryParam(filter).orElse("")));
+        String envelope = request.queryParam("envelope").orElse(PAGE_ENVELOPE);
+        int page;
+        int size;
+        try {
+            page = Math.max(0, request.queryParam("page").map(Integer::parseInt).orElse(0));
+            size = Math.min(MAX_PAGE_SIZE, Math.max(1, request.queryParam("size").map(Integer::parseInt).orElse(DEFAULT_PAGE_SIZE)));
+        } catch (NumberFormatException e) {
+            return ServerResponse.badRequest().build();
+        }
+        if (!PAGE_ENVELOPE.equals(envelope) && !COMPACT_ENVELOPE.equals(envelope)) {
+            return ServerResponse.badRequest().build();
+        }
+        Mono<Page<Book>> books = Mono.zip(bookRepository.findByAllParameters(filters, page, size).collectList(),
+                bookRepository.countByAllParameters(filters))
+                .map(result -> new PageImpl<>(result.getT1(), PageRequest.of(page, size, ORDER), result.getT2()));
+        ServerResponse.BodyBuilder ok = ServerResponse.ok().contentType(MediaType.APPLICATION_JSON);
+        return PAGE_ENVELOPE.equals(envelope)
+                ? ok.body(books, new ParameterizedTypeReference<Page<Book>>() {
+                })
+                : ok.body(books.map(CompactPageDTO::of), new ParameterizedTypeReference<CompactPageDTO<Book>>() {
+                });
+    }
+
+    private static Mono<ServerResponse> respond(HttpStatus status, Book book) {
+        return ServerResponse.status(status).contentType(MediaType.APPLICATION_JSON).bodyValue(book);
+    }
+}
@@ -0,0 +1,49 @@
+package wolox.training.reactive;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import wolox.training.security.TokenService;
+
+import java.util.Optional;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * Functional routes of the reactive book api, the requests are authenticated with the access tokens of the main
+ * application, verified with the shared secret and without any database query
+ *
+ * @author luismiguelrodriguez
+ */
+@Configuration
+@Profile("reactive")
+@Import(TokenService.class)
+public class BookRoutes {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    @Bean
+    public RouterFunction<ServerResponse> bookRoutes(BookHandler bookHandler, TokenService tokenService) {
+        return route(GET("/api/books/find-by-isbn"), bookHandler::findByIsbn)
+                .andRoute(GET("/api/books/{id}"), bookHandler::findById)
+                .andRoute(GET("/api/books"), bookHandler::findByParameters)
+                .filter(authenticated(tokenService));
+    }
+
+    private static HandlerFilterFunction<ServerResponse, ServerResponse> authenticated(TokenService tokenService) {
+        return (request, next) -> request.headers().header(HttpHeaders.AUTHORIZATION).stream()
+                .filter(authorization -> authorization.startsWith(BEARER_PREFIX))
+                .map(authorization -> tokenService.verifyAccess(authorization.substring(BEARER_PREFIX.length()).trim()))
+                .filter(Optional::isPresent)
+                .findFirst()
+                .map(username -> next.handle(request))
+                .orElseGet(() -> ServerResponse.status(HttpStatus.UNAUTHORIZED).build());
+    }
+}
@@ -0,0 +1,183 @@
+package wolox.training.reactive;
+
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import wolox.training.models.Book;
+import wolox.training.models.ChangeEvent;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Non blocking book repository, it reads the same table that the JPA repository of the main application
+ *
+ * @author luismiguelrodriguez
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveBookRepository {
+
+    private static final String COLUMNS = "id, genre, author, image, title, subtitle, publisher, year, pages, isbn, "
+            + "version, last_modified, owners_count";
+
+    private static final String WHERE_ALL_PARAMETERS = "WHERE (UPPER(isbn) LIKE UPPER(:isbn) OR :isbn = '') "
+            + "AND (UPPER(genre) LIKE UPPER(:genre) OR :genre = '') "
+            + "AND (UPPER(author) LIKE UPPER(:author) OR :author = '') "
+            + "AND (UPPER(image) LIKE UPPER(:image) OR :image = '') "
+            + "AND (UPPER(title) LIKE UPPER(:title) OR :title = '') "
+            + "AND (UPPER(subtitle) LIKE UPPER(:subtitle) OR :subtitle = '') "
+            + "AND (UPPER(publisher) LIKE UPPER(:publisher) OR :publisher = '') "
+            + "AND ((year BETWEEN :startYear AND :endYear) "
+            + "     OR (year >= :startYear AND :endYear = '') "
+            + "     OR (year <= :endYear AND :startYear = '')) "
+            + "AND (pages = :pages OR :pages = '') ";
+
+    private static final String FIND_BY_ALL_PARAMETERS = "SELECT " + COLUMNS + " FROM book "
+            + WHERE_ALL_PARAMETERS
+            + "ORDER BY id LIMIT :size OFFSET :offset";
+
+    private static final String COUNT_BY_ALL_PARAMETERS = "SELECT COUNT(*) FROM book " + WHERE_ALL_PARAMETERS;
+
+    /**
+     * The id is a value of the pooled sequence of Hibernate, the top of a block is never handed out twice. The
+     * book, its change in the outbox and the notification of the invalidation bus are written by one statement,
+     * so they commit together as the writes of the main application do
+     */
+    private static final String INSERT = "WITH inserted AS ("
+            + "INSERT INTO book (id, genre, author, image, title, subtitle, publisher, "
+            + "year, pages, isbn, version, last_modified, owners_count) "
+            + "VALUES (nextval('book_sq'), :genre, :author, :image, :title, :subtitle, :publisher, "
+            + ":year, :pages, :isbn, 0, now(), 0) RETURNING " + COLUMNS + "), "
+            + "recorded AS (INSERT INTO change_outbox (id, entity_type, entity_id, operation, version, created_at) "
+            + "SELECT nextval('change_outbox_sq'), '" + ChangeEvent.BOOK + "', id, '" + ChangeEvent.CREATED + "', "
+            + "version, now() FROM inserted) "
+            + "SELECT " + COLUMNS + ", pg_notify(:channel, :node || ':" + ChangeEvent.BOOK + ":' || id || ':' || version) "
+            + "FROM inserted";
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    /**
+     * Channel of the invalidation bus of the main application
+     */
+    @Value("${invalidation.channel:entity_changes}")
+    private String channel;
+
+    /**
+     * Identifier of this instance in the notifications, the instances of the main application evict the book
+     */
+    private final String node = "reactive-" + UUID.randomUUID();
+
+    /**
+     * Method to search a book by id
+     *
+     * @param id identifier of the book
+     * @return return the book, or an empty mono when it does not exist
+     */
+    public Mono<Book> findById(Long id) {
+        return databaseClient.execute("SELECT " + COLUMNS + " FROM book WHERE id = :id")
+                .bind("id", id)
+                .map((row, metadata) -> toBook(row))
+                .one();
+    }
+
+    /**
+     * Method to search a book by isbn
+     *
+     * @param isbn isbn of the book
+     * @return return the first book with the isbn, or an empty mono
+     */
+    public Mono<Book> findByIsbn(String isbn) {
+        return databaseClient.execute("SELECT " + COLUMNS + " FROM book WHERE isbn = :isbn ORDER BY id LIMIT 1")
+                .bind("isbn", isbn)
+                .map((row, metadata) -> toBook(row))
+                .one();
+    }
+
+    /**
+     * Method to search books with the same filters of the main application, an empty filter matches any value
+     *
+     * @param filters filter values by name
+     * @param page    number of the page, starting at zero
+     * @param size    size of the page
+     * @return return the books of the page sorted by id
+     */
+    public Flux<Book> findByAllParameters(Map<String, String> filters, int page, int size) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.execute(FIND_BY_ALL_PARAMETERS);
+        for (Map.Entry<String, String> filter : filters.entrySet()) {
+            spec = spec.bind(filter.getKey(), filter.getValue());
+        }
+        return spec
+                .bind("size", size)
+                .bind("offset", (long) page * size)
+                .map((row, metadata) -> toBook(row))
+                .all();
+    }
+
+    /**
+     * Method to count the books that match the filters, an empty filter matches any value
+     *
+     * @param filters filter values by name
+     * @return return the number of matching books
+     */
+    public Mono<Long> countByAllParameters(Map<String, String> filters) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.execute(COUNT_BY_ALL_PARAMETERS);
+        for (Map.Entry<String, String> filter : filters.entrySet()) {
+            spec = spec.bind(filter.getKey(), filter.getValue());
+        }
+        return spec
+                .map((row, metadata) -> row.get(0, Long.class))
+                .one();
+    }
+
+    /**
+     * Method to store a new book, it is recorded in the change feed and notified to the main application
+     *
+     * @param book book to store
+     * @return return the stored book with its identifier
+     */
+    public Mono<Book> insert(Book book) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.execute(INSERT)
+                .bind("channel", channel)
+                .bind("node", node)
+                .bind("author", book.getAuthor())
+                .bind("image", book.getImage())
+                .bind("title", book.getTitle())
+                .bind("subtitle", book.getSubtitle())
+                .bind("publisher", book.getPublisher())
+                .bind("year", book.getYear())
+                .bind("pages", book.getPages())
+                .bind("isbn", book.getIsbn());
+        spec = book.getGenre() == null ? spec.bindNull("genre", String.class) : spec.bind("genre", book.getGenre());
+        return spec.map((row, metadata) -> toBook(row)).one();
+    }
+
+    private static Book toBook(Row row) {
+        Book book = new Book();
+        book.setId(row.get("id", Long.class));
+        book.setGenre(row.get("genre", String.class));
+        book.setAuthor(row.get("author", String.class));
+        book.setImage(row.get("image", String.class));
+        book.setTitle(row.get("title", String.class));
+        book.setSubtitle(row.get("subtitle", String.class));
+        book.setPublisher(row.get("publisher", String.class));
+        book.setYear(row.get("year", String.class));
+        book.setPages(row.get("pages", String.class));
+        book.setIsbn(row.get("isbn", String.class));
+        book.setVersion(row.get("version", Long.class));
+        // Hibernate stores the instant as a local timestamp of the default zone
+        LocalDateTime lastModified = row.get("last_modified", LocalDateTime.class);
+        book.setLastModified(lastModified == null ? null : lastModified.atZone(ZoneId.systemDefault()).toInstant());
+        Long ownersCount = row.get("owners_count", Long.class);
+        book.setOwnersCount(ownersCount == null ? 0 : ownersCount);
+        return book;
+    }
+}
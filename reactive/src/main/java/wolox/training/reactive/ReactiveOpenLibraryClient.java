@@ -0,0 +1,58 @@
+package wolox.training.reactive;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import wolox.training.exception.BookNotFoundException;
+import wolox.training.models.dto.BookDTO;
+
+import java.net.URI;
+
+/**
+ * Non blocking client of the external book api
+ *
+ * @author luismiguelrodriguez
+ */
+@Component
+@Profile("reactive")
+public class ReactiveOpenLibraryClient {
+
+    private final WebClient webClient;
+    private final String urlOpenLibrary;
+
+    public ReactiveOpenLibraryClient(WebClient.Builder webClientBuilder, @Value("${urlExternal}") String urlOpenLibrary) {
+        this.webClient = webClientBuilder.build();
+        this.urlOpenLibrary = urlOpenLibrary;
+    }
+
+    /**
+     * Method to search a book in the external api
+     *
+     * @param isbn isbn of the book
+     * @return return the book, or an error with BookNotFoundException when the book does not exist
+     */
+    public Mono<BookDTO> findInfoBook(String isbn) {
+        return webClient.get()
+                .uri(bookUri(isbn))
+                .retrieve()
+                .bodyToMono(ObjectNode.class)
+                .filter(node -> !node.isEmpty())
+                .switchIfEmpty(Mono.error(BookNotFoundException::new))
+                .map(node -> BookDTO.setBookDto(node, isbn));
+    }
+
+    private URI bookUri(String isbn) {
+        return UriComponentsBuilder
+                .fromHttpUrl(urlOpenLibrary)
+                .path("books")
+                .queryParam("bibkeys", "ISBN:" + isbn)
+                .queryParam("format", "json")
+                .queryParam("jscmd", "data")
+                .build()
+                .toUri();
+    }
+}
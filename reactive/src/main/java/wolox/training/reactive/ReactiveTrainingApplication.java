@@ -0,0 +1,18 @@
+package wolox.training.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * Non blocking read api of the books, the routes are only enabled by the reactive profile
+ *
+ * @author luismiguelrodriguez
+ */
+@SpringBootApplication
+public class ReactiveTrainingApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveTrainingApplication.class, args);
+    }
+
+}
@@ -0,0 +1,134 @@
+package wolox.training.reactive;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comparative load test of the book read routes, the same requests are sent to the book controller of the main
+ * application and to the reactive routes. Both applications must be running on the same database, and the main
+ * application without its rate limit, otherwise it answers 429 to a load from a single address:
+ * gradle bootRun --args=--rate-limit.enabled=false
+ * gradle :reactive:loadTest -Dmvc.url=http://localhost:8081 -Dreactive.url=http://localhost:8082 -Dload.token=...
+ * Both sides answer the compact page sorted by id, so both run the count query and send the same payload
+ *
+ * @author luismiguelrodriguez
+ */
+@Tag("load")
+public class BookApiLoadComparisonTest {
+
+    private static final String MVC_URL = System.getProperty("mvc.url", "http://localhost:8081");
+    private static final String REACTIVE_URL = System.getProperty("reactive.url", "http://localhost:8082");
+    private static final String TOKEN = System.getProperty("load.token", "");
+    private static final String PATH = System.getProperty("load.path", "/api/books?page=0&size=20&sort=id&envelope=compact");
+    private static final int REQUESTS = Integer.getInteger("load.requests", 20_000);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 256);
+    private static final int WARMUP_REQUESTS = Integer.getInteger("load.warmup-requests", 2_000);
+
+    @Test
+    @DisplayName("Load, the reactive routes and the book controller answer the same requests")
+    void compareThroughputAndLatency() {
+        assertEquals(payload(MVC_URL), payload(REACTIVE_URL), "both applications must answer the same payload");
+
+        Result mvc = run("mvc", MVC_URL);
+        Result reactive = run("reactive", REACTIVE_URL);
+
+        System.out.println(mvc);
+        System.out.println(reactive);
+        System.out.printf("reactive/mvc throughput ratio: %.2f%n", reactive.throughput / mvc.throughput);
+        assertTrue(mvc.errors == 0 && reactive.errors == 0,
+                "every request must succeed, a 429 of the main application means its rate limit is enabled");
+    }
+
+    /**
+     * Get the identifiers of the books of the page and the total, the attributes of the books are serialized by
+     * different applications
+     */
+    private static List<Object> payload(String baseUrl) {
+        JsonNode page = client(baseUrl).get().uri(PATH)
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .block(Duration.ofSeconds(30));
+        List<Object> payload = new ArrayList<>();
+        payload.add(page.path("totalElements").asLong());
+        page.path("content").forEach(book -> payload.add(book.path("id").asLong()));
+        return payload;
+    }
+
+    private static WebClient client(String baseUrl) {
+        return WebClient.builder()
+                .baseUrl(baseUrl)
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + TOKEN)
+                .build();
+    }
+
+    private static Result run(String name, String baseUrl) {
+        WebClient client = client(baseUrl);
+        send(client, WARMUP_REQUESTS, new long[WARMUP_REQUESTS]);
+
+        long[] latencies = new long[REQUESTS];
+        long start = System.nanoTime();
+        long errors = send(client, REQUESTS, latencies);
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        return new Result(name, REQUESTS * 1e9 / elapsed, errors,
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999));
+    }
+
+    private static long send(WebClient client, int requests, long[] latencies) {
+        return Flux.range(0, requests)
+                .flatMap(i -> {
+                    long requestStart = System.nanoTime();
+                    return client.get().uri(PATH)
+                            .exchange()
+                            .flatMap(response -> response.releaseBody().thenReturn(response.statusCode().isError() ? 1L : 0L))
+                            .onErrorResume(e -> Mono.just(1L))
+                            .doOnNext(error -> latencies[i] = System.nanoTime() - requestStart);
+                }, CONCURRENCY)
+                .reduce(0L, Long::sum)
+                .block(Duration.ofMinutes(10));
+    }
+
+    private static double percentile(long[] sortedNanos, double percentile) {
+        int index = (int) Math.min(sortedNanos.length - 1, Math.ceil(percentile * sortedNanos.length) - 1);
+        return sortedNanos[Math.max(index, 0)] / 1e6;
+    }
+
+    private static class Result {
+
+        private final String name;
+        private final double throughput;
+        private final long errors;
+        private final double p50;
+        private final double p99;
+        private final double p999;
+
+        Result(String name, double throughput, long errors, double p50, double p99, double p999) {
+            this.name = name;
+            this.throughput = throughput;
+            this.errors = errors;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.p999 = p999;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s %10.1f req/s  errors=%d  p50=%.2fms  p99=%.2fms  p999=%.2fms",
+                    name, throughput, errors, p50, p99, p999);
+        }
+    }
+}
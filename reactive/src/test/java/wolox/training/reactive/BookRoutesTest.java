@@ -0,0 +1,129 @@
+package wolox.training.reactive;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import wolox.training.exception.BookNotFoundException;
+import wolox.training.models.Book;
+import wolox.training.security.TokenService;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+public class BookRoutesTest {
+
+    private static final String TOKEN = "Bearer token";
+
+    @Mock
+    private ReactiveBookRepository bookRepository;
+
+    @Mock
+    private ReactiveOpenLibraryClient openLibraryClient;
+
+    @Mock
+    private TokenService tokenService;
+
+    @InjectMocks
+    private BookHandler bookHandler;
+
+    private WebTestClient client;
+
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(bookHandler, "timeoutMillis", 5000L);
+        lenient().when(tokenService.verifyAccess("token")).thenReturn(Optional.of("miguel"));
+        client = WebTestClient.bindToRouterFunction(new BookRoutes().bookRoutes(bookHandler, tokenService)).build();
+        book = new Book();
+        book.setId(1L);
+        book.setIsbn("22");
+        book.setTitle("title");
+    }
+
+    @Test
+    @DisplayName("Test, When a book is found by id , it return status OK")
+    void whenFindByIdThenReturnStatusOK() {
+        given(bookRepository.findById(1L)).willReturn(Mono.just(book));
+
+        client.get().uri("/api/books/1").header(HttpHeaders.AUTHORIZATION, TOKEN)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.isbn").isEqualTo("22");
+    }
+
+    @Test
+    @DisplayName("Test, When a request has no token , it return status Unauthorized")
+    void whenRequestWithoutTokenThenReturnUnauthorized() {
+        client.get().uri("/api/books/1")
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    @DisplayName("Test, When a book by isbn is not stored nor found in the external api , it return status Not Found")
+    void whenFindByIsbnNotFoundThenReturnStatusNotFound() {
+        given(bookRepository.findByIsbn("22")).willReturn(Mono.empty());
+        given(openLibraryClient.findInfoBook("22")).willReturn(Mono.error(new BookNotFoundException()));
+
+        client.get().uri("/api/books/find-by-isbn?isbn=22").header(HttpHeaders.AUTHORIZATION, TOKEN)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("Test, When books are searched by parameters , it return the page of the book controller")
+    void whenFindByParametersThenReturnBooks() {
+        given(bookRepository.findByAllParameters(anyMap(), anyInt(), anyInt())).willReturn(Flux.just(book));
+        given(bookRepository.countByAllParameters(anyMap())).willReturn(Mono.just(11L));
+
+        client.get().uri("/api/books?genre=genre&page=0&size=10").header(HttpHeaders.AUTHORIZATION, TOKEN)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content[0].id").isEqualTo(1)
+                .jsonPath("$.totalElements").isEqualTo(11)
+                .jsonPath("$.totalPages").isEqualTo(2)
+                .jsonPath("$.number").isEqualTo(0);
+    }
+
+    @Test
+    @DisplayName("Test, When the page is not a number or the envelope is unknown , it return status Bad Request")
+    void whenFindByParametersWithInvalidPageThenReturnBadRequest() {
+        client.get().uri("/api/books?page=x").header(HttpHeaders.AUTHORIZATION, TOKEN)
+                .exchange()
+                .expectStatus().isBadRequest();
+        client.get().uri("/api/books?envelope=other").header(HttpHeaders.AUTHORIZATION, TOKEN)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("Test, When books are searched with the compact envelope , it return the page with the total")
+    void whenFindByParametersCompactThenReturnPageWithTotal() {
+        given(bookRepository.findByAllParameters(anyMap(), anyInt(), anyInt())).willReturn(Flux.just(book));
+        given(bookRepository.countByAllParameters(anyMap())).willReturn(Mono.just(11L));
+
+        client.get().uri("/api/books?page=0&size=10&envelope=compact").header(HttpHeaders.AUTHORIZATION, TOKEN)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content[0].id").isEqualTo(1)
+                .jsonPath("$.totalElements").isEqualTo(11)
+                .jsonPath("$.hasNext").isEqualTo(true);
+    }
+}
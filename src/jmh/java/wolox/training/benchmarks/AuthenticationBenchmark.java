@@ -0,0 +1,106 @@
+package wolox.training.benchmarks;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import wolox.training.models.User;
+import wolox.training.repositories.UsersRepository;
+import wolox.training.security.AuthenticationCache;
+import wolox.training.security.CustomAuthenticationProvider;
+import wolox.training.security.PasswordHashingService;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login of a user through CustomAuthenticationProvider, the users are kept in memory so only the provider, the
+ * authentication cache and the password hashing are measured. With cache=miss every call verifies the hash
+ *
+ * @author luismiguelrodriguez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AuthenticationBenchmark {
+
+    private static final int USERS = 10_000;
+    private static final String PASSWORD = "password";
+
+    @Param({"hit", "miss"})
+    private String cache;
+
+    @Param({"4", "10"})
+    private int strength;
+
+    private PasswordHashingService passwordHashingService;
+    private CustomAuthenticationProvider provider;
+    private Authentication authentication;
+
+    @Setup
+    public void setUp() {
+        passwordHashingService = new PasswordHashingService(new BCryptPasswordEncoder(strength), 0, 64, 5000);
+        String hash = passwordHashingService.encode(PASSWORD);
+        Map<String, User> users = new HashMap<>();
+        for (long id = 0; id < USERS; id++) {
+            User user = new User();
+            user.setId(id);
+            user.setUsername("user" + id);
+            user.setName("User " + id);
+            user.setBirthdate(LocalDate.of(1990, 1, 1));
+            user.setPassword(hash);
+            users.put(user.getUsername(), user);
+        }
+
+        provider = new CustomAuthenticationProvider();
+        DirectFieldAccessor fields = new DirectFieldAccessor(provider);
+        fields.setPropertyValue("usersRepository", inMemoryRepository(users));
+        fields.setPropertyValue("passwordHashingService", passwordHashingService);
+        fields.setPropertyValue("authenticationCache", new AuthenticationCache("hit".equals(cache) ? 600 : 0, USERS));
+        fields.setPropertyValue("meterRegistry", new SimpleMeterRegistry());
+        provider.registerMeters();
+        authentication = new UsernamePasswordAuthenticationToken("user" + USERS / 2, PASSWORD);
+        provider.authenticate(authentication);
+    }
+
+    @TearDown
+    public void tearDown() {
+        passwordHashingService.shutdown();
+    }
+
+    @Benchmark
+    public Authentication authenticate() {
+        return provider.authenticate(authentication);
+    }
+
+    /**
+     * Repository backed by a map, only the queries of the login are supported
+     */
+    private static UsersRepository inMemoryRepository(Map<String, User> users) {
+        return (UsersRepository) Proxy.newProxyInstance(UsersRepository.class.getClassLoader(),
+                new Class<?>[]{UsersRepository.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findByUsername":
+                            return Optional.ofNullable(users.get((String) args[0]));
+                        case "rehashPassword":
+                            return 1;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
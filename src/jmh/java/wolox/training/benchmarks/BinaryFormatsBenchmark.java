@@ -0,0 +1,118 @@
+package wolox.training.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import wolox.training.models.Book;
+import wolox.training.models.User;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode throughput of a page of books and a page of users in JSON, CBOR and Smile.
+ * The payload size of every format is printed when the state is set up
+ *
+ * @author luismiguelrodriguez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BinaryFormatsBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    @Param({"book", "user"})
+    private String entity;
+
+    @Param({"100", "1000"})
+    private int pageSize;
+
+    private ObjectMapper mapper;
+    private Object page;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = Jackson2ObjectMapperBuilder.json().factory(factory(format)).build();
+        page = "book".equals(entity) ? new PageImpl<>(books(pageSize), PageRequest.of(0, pageSize), pageSize * 10L)
+                : new PageImpl<>(users(pageSize), PageRequest.of(0, pageSize), pageSize * 10L);
+        encoded = mapper.writeValueAsBytes(page);
+        System.out.printf("payload format=%s entity=%s pageSize=%d bytes=%d%n", format, entity, pageSize, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public JsonNode decode() throws IOException {
+        return mapper.readTree(encoded);
+    }
+
+    private static JsonFactory factory(String format) {
+        switch (format) {
+            case "cbor":
+                return new CBORFactory();
+            case "smile":
+                return new SmileFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+
+    static List<Book> books(int size) {
+        List<Book> books = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            books.add(book(i));
+        }
+        return books;
+    }
+
+    static Book book(long id) {
+        Book book = new Book();
+        book.setId(id);
+        book.setGenre("Fiction");
+        book.setAuthor("Author " + id % 500);
+        book.setImage("https://covers.openlibrary.org/b/id/" + id + "-L.jpg");
+        book.setTitle("Title of the book " + id);
+        book.setSubtitle("Subtitle of the book " + id);
+        book.setPublisher("Publisher " + id % 50);
+        book.setYear(String.valueOf(1950 + id % 70));
+        book.setPages(String.valueOf(100 + id % 900));
+        book.setIsbn(String.valueOf(9780000000000L + id));
+        book.setVersion(id % 5);
+        return book;
+    }
+
+    private static List<User> users(int size) {
+        List<User> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            User user = new User();
+            user.setId((long) i);
+            user.setUsername("user" + i);
+            user.setName("User " + i);
+            user.setBirthdate(LocalDate.of(1960 + i % 40, 1 + i % 12, 1 + i % 28));
+            users.add(user);
+        }
+        return users;
+    }
+}
@@ -0,0 +1,76 @@
+package wolox.training.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import wolox.training.models.Book;
+import wolox.training.models.dto.BookDTO;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of an OpenLibrary response to a book: the tree to BookDTO conversion, the BookDTO to Book conversion
+ * and the validating setters of Book on their own
+ *
+ * @author luismiguelrodriguez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BookMappingBenchmark {
+
+    private static final String ISBN = "0385472579";
+
+    private static final String RESPONSE = "{\"ISBN:" + ISBN + "\": {"
+            + "\"title\": \"Zen speaks\", \"subtitle\": \"shouts of nothingness\","
+            + "\"publishers\": [{\"name\": \"Anchor Books\"}],"
+            + "\"publish_date\": \"1994\", \"number_of_pages\": \"159\","
+            + "\"authors\": [{\"url\": \"https://openlibrary.org/authors/OL223368A/Zhizhong_Cai\", \"name\": \"Zhizhong Cai\"}]"
+            + "}}";
+
+    private ObjectNode response;
+    private BookDTO bookDTO;
+
+    @Setup
+    public void setUp() throws IOException {
+        response = (ObjectNode) new ObjectMapper().readTree(RESPONSE);
+        bookDTO = BookDTO.setBookDto(response, ISBN);
+    }
+
+    @Benchmark
+    public BookDTO setBookDto() {
+        return BookDTO.setBookDto(response, ISBN);
+    }
+
+    @Benchmark
+    public Book setBook() {
+        return bookDTO.setBook();
+    }
+
+    @Benchmark
+    public Book setBookDtoAndSetBook() {
+        return BookDTO.setBookDto(response, ISBN).setBook();
+    }
+
+    @Benchmark
+    public Book setters() {
+        Book book = new Book();
+        book.setGenre("Zen");
+        book.setAuthor("Zhizhong Cai");
+        book.setImage("No image");
+        book.setTitle("Zen speaks");
+        book.setSubtitle("shouts of nothingness");
+        book.setPublisher("Anchor Books");
+        book.setYear("1994");
+        book.setPages("159");
+        book.setIsbn(ISBN);
+        return book;
+    }
+}
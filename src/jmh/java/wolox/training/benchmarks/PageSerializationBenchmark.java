@@ -0,0 +1,64 @@
+package wolox.training.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import wolox.training.models.Book;
+import wolox.training.models.dto.CompactPageDTO;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of the book search responses, the Spring page and the compact envelope, with the settings
+ * of the mapper of the application
+ *
+ * @author luismiguelrodriguez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PageSerializationBenchmark {
+
+    @Param({"20", "200"})
+    private int pageSize;
+
+    private ObjectMapper mapper;
+    private Page<Book> page;
+    private CompactPageDTO<Book> compactPage;
+
+    @Setup
+    public void setUp() {
+        mapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        List<Book> books = BinaryFormatsBenchmark.books(pageSize);
+        books.forEach(book -> book.setLastModified(Instant.parse("2020-10-01T10:15:30Z")));
+        page = new PageImpl<>(books, PageRequest.of(3, pageSize, Sort.by("title")), pageSize * 10L);
+        compactPage = CompactPageDTO.of(page);
+    }
+
+    @Benchmark
+    public byte[] page() throws IOException {
+        return mapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] compactPage() throws IOException {
+        return mapper.writeValueAsBytes(compactPage);
+    }
+}
@@ -0,0 +1,74 @@
+package wolox.training.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import wolox.training.exception.BookAlreadyOwnedException;
+import wolox.training.models.Book;
+import wolox.training.models.User;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding and removing books of users with large libraries, both operations look for the book in the library first
+ *
+ * @author luismiguelrodriguez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserLibraryBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int librarySize;
+
+    private User user;
+    private Book newBook;
+
+    @Setup
+    public void setUp() {
+        user = new User();
+        BinaryFormatsBenchmark.books(librarySize).forEach(user::addBook);
+        newBook = BinaryFormatsBenchmark.book(librarySize);
+    }
+
+    /**
+     * A book that is not in the library is added at the end and removed, the library keeps its size
+     */
+    @Benchmark
+    public User addAndRemoveNewBook() {
+        user.addBook(newBook);
+        user.removeBook(newBook);
+        return user;
+    }
+
+    /**
+     * The first book is removed and added again at the end, the next invocation removes the following book
+     */
+    @Benchmark
+    public User removeAndAddOwnedBook() {
+        Book book = user.getBooks().get(0);
+        user.removeBook(book);
+        user.addBook(book);
+        return user;
+    }
+
+    /**
+     * Adding an owned book is rejected after comparing it with the whole library
+     */
+    @Benchmark
+    public boolean addOwnedBook() {
+        Book last = user.getBooks().get(librarySize - 1);
+        try {
+            user.addBook(last);
+            return false;
+        } catch (BookAlreadyOwnedException e) {
+            return true;
+        }
+    }
+}
@@ -2,12 +2,22 @@ package wolox.training;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 
 @SpringBootApplication
 public class TrainingApplication {
 
+    /**
+     * With -Dstartup.training-run=true the application exits as soon as it is ready, the run records the classes
+     * loaded on startup for the class data sharing archive
+     */
+    private static final String TRAINING_RUN = "startup.training-run";
+
     public static void main(String[] args) {
-        SpringApplication.run(TrainingApplication.class, args);
+        ConfigurableApplicationContext context = SpringApplication.run(TrainingApplication.class, args);
+        if (Boolean.getBoolean(TRAINING_RUN)) {
+            System.exit(SpringApplication.exit(context));
+        }
     }
 
 }
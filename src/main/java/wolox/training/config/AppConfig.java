@@ -1,21 +1,84 @@
 package wolox.training.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @Configuration
 public class AppConfig {
 
+    /**
+     * Password encoder, the hashes made with a lower strength are upgraded when their users log in
+     *
+     * @param strength log rounds of BCrypt
+     * @return return the password encoder
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${auth.bcrypt.strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 
     @Bean
     public RestTemplate restTemplate() {
         return new RestTemplate();
     }
+
+    /**
+     * Client of the external api for the requests that must not block a thread while they wait
+     *
+     * @param connectTimeoutMillis maximum time to open a connection
+     * @return return the http client
+     */
+    @Bean
+    public HttpClient httpClient(@Value("${books.lookup.connect-timeout-millis:2000}") long connectTimeoutMillis) {
+        return HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .build();
+    }
+
+    /**
+     * Bounded executor of the asynchronous book lookups, a full queue rejects the lookup instead of growing. The
+     * lookups record their time in the timings of the request that submitted them
+     *
+     * @param threads       number of threads
+     * @param queueCapacity lookups waiting for a thread
+     * @return return the executor
+     */
+    @Bean
+    public ThreadPoolTaskExecutor lookupExecutor(@Value("${books.lookup.threads:8}") int threads,
+                                                 @Value("${books.lookup.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("book-lookup-");
+        executor.setTaskDecorator(RequestTimings::propagate);
+        return executor;
+    }
+
+    /**
+     * Executor of the asynchronous requests and of the @Async methods. Spring Boot only creates it when there is
+     * no other executor, so it is declared here, otherwise the lookup executor would disable it and the requests
+     * would fall back to a thread per task. It is configured with the spring.task.execution properties
+     *
+     * @param builder builder configured by Spring Boot
+     * @return return the executor
+     */
+    @Lazy
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
 }
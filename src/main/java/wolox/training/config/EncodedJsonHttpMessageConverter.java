@@ -0,0 +1,47 @@
+package wolox.training.config;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import wolox.training.service.EncodedJson;
+
+import java.io.IOException;
+
+/**
+ * Writes documents already encoded as JSON without serializing them again
+ *
+ * @author luismiguelrodriguez
+ */
+public class EncodedJsonHttpMessageConverter extends AbstractHttpMessageConverter<EncodedJson> {
+
+    public EncodedJsonHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return EncodedJson.class.equals(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected EncodedJson readInternal(Class<? extends EncodedJson> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Encoded JSON is only written", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(EncodedJson json, MediaType contentType) {
+        return (long) json.length();
+    }
+
+    @Override
+    protected void writeInternal(EncodedJson json, HttpOutputMessage outputMessage) throws IOException {
+        json.writeTo(outputMessage.getBody());
+    }
+}
@@ -0,0 +1,61 @@
+package wolox.training.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.servlet.DispatcherType;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Statistics of the Hibernate session by request and detection of the statements repeated in one request
+ *
+ * @author luismiguelrodriguez
+ */
+@Configuration
+@ConditionalOnProperty(name = "hibernate-statistics.enabled", havingValue = "true")
+public class HibernateStatisticsConfig {
+
+    @Value("${hibernate-statistics.repeated-threshold:5}")
+    private int repeatedThreshold;
+
+    /**
+     * Adds the statement inspector and the event listeners to the session factory
+     *
+     * @param fail whether a request fails when a statement reaches the threshold of repetitions
+     * @return return the customizer of the Hibernate properties
+     */
+    @Bean
+    public HibernatePropertiesCustomizer queryStatisticsCustomizer(
+            @Value("${hibernate-statistics.fail-on-repeated:false}") boolean fail) {
+        List<Integrator> integrators = Collections.singletonList(new QueryStatisticsListener());
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, new RepeatedStatementDetector(repeatedThreshold, fail));
+            properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER, (IntegratorProvider) () -> integrators);
+        };
+    }
+
+    /**
+     * Statistics of every request, it runs after the server timing filter so both see the same requests
+     *
+     * @return return the registration of the filter
+     */
+    @Bean
+    public FilterRegistrationBean<QueryStatisticsFilter> queryStatisticsFilter(MeterRegistry meterRegistry) {
+        FilterRegistrationBean<QueryStatisticsFilter> registration =
+                new FilterRegistrationBean<>(new QueryStatisticsFilter(repeatedThreshold, meterRegistry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 11);
+        registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC);
+        return registration;
+    }
+}
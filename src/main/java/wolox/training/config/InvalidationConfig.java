@@ -0,0 +1,44 @@
+package wolox.training.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import wolox.training.service.InMemoryInvalidationTransport;
+import wolox.training.service.InvalidationTransport;
+import wolox.training.service.PostgresInvalidationTransport;
+
+/**
+ * Transport of the invalidation bus, Postgres LISTEN/NOTIFY between the instances or memory for a single instance
+ *
+ * @author luismiguelrodriguez
+ */
+@Configuration
+public class InvalidationConfig {
+
+    /**
+     * Transport over the database of the application, the listener uses its own connection
+     *
+     * @param channel         name of the notification channel
+     * @param pollMillis      maximum wait for notifications before the connection is checked
+     * @param reconnectMillis wait before connecting again after a drop
+     * @return return the transport
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(name = "invalidation.transport", havingValue = "postgres")
+    public InvalidationTransport postgresInvalidationTransport(JdbcTemplate jdbcTemplate, DataSourceProperties dataSource,
+                                                               @Value("${invalidation.channel:entity_changes}") String channel,
+                                                               @Value("${invalidation.poll-millis:5000}") int pollMillis,
+                                                               @Value("${invalidation.reconnect-millis:1000}") long reconnectMillis) {
+        return new PostgresInvalidationTransport(jdbcTemplate, channel, dataSource.determineUrl(),
+                dataSource.determineUsername(), dataSource.determinePassword(), pollMillis, reconnectMillis);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "invalidation.transport", havingValue = "memory", matchIfMissing = true)
+    public InvalidationTransport inMemoryInvalidationTransport() {
+        return new InMemoryInvalidationTransport();
+    }
+}
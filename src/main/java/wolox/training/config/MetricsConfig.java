@@ -0,0 +1,121 @@
+package wolox.training.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import wolox.training.security.AuthenticationCache;
+import wolox.training.security.PasswordHashingService;
+import wolox.training.service.BookJsonCache;
+import wolox.training.service.BookSearchCache;
+import wolox.training.service.InvalidationBus;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Meters of the application that are not registered by the actuator. The http requests, the connection pool and
+ * the JVM are measured by the actuator itself
+ *
+ * @author luismiguelrodriguez
+ */
+@Configuration
+public class MetricsConfig {
+
+    private static final String CACHE_TAG = "cache";
+
+    /**
+     * Timers of the repository methods
+     *
+     * @param meterRegistry registry of the timers, resolved on the first repository call
+     * @return return the post processor that adds the timers to the repositories
+     */
+    @Bean
+    public static RepositoryMetricsPostProcessor repositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new RepositoryMetricsPostProcessor(meterRegistry);
+    }
+
+    /**
+     * Gauges and counters of the caches, they read the statistics of each cache when the metrics are scraped
+     *
+     * @return return the binder of the cache meters
+     */
+    @Bean
+    public MeterBinder cacheMetrics(BookSearchCache bookSearchCache, BookJsonCache bookJsonCache,
+                                    AuthenticationCache authenticationCache) {
+        return registry -> {
+            Tags search = Tags.of(CACHE_TAG, "book-search");
+            cacheGets(registry, search, bookSearchCache, cache -> cache.stats().getHits(), cache -> cache.stats().getMisses());
+            FunctionCounter.builder("cache.evictions", bookSearchCache, cache -> cache.stats().getEvictions())
+                    .tags(search).register(registry);
+            Gauge.builder("cache.size", bookSearchCache, cache -> cache.stats().getSize())
+                    .tags(search).register(registry);
+            Gauge.builder("cache.estimated.bytes", bookSearchCache, cache -> cache.stats().getEstimatedBytes())
+                    .tags(search).baseUnit("bytes").register(registry);
+
+            Tags json = Tags.of(CACHE_TAG, "book-json");
+            cacheGets(registry, json, bookJsonCache, cache -> cache.stats().getHits(), cache -> cache.stats().getMisses());
+            FunctionCounter.builder("cache.evictions", bookJsonCache, cache -> cache.stats().getEvictions())
+                    .tags(json).register(registry);
+            Gauge.builder("cache.size", bookJsonCache, cache -> cache.stats().getSize())
+                    .tags(json).register(registry);
+
+            Tags authentication = Tags.of(CACHE_TAG, "authentication");
+            cacheGets(registry, authentication, authenticationCache,
+                    cache -> cache.stats().getHits(), cache -> cache.stats().getMisses());
+            Gauge.builder("cache.size", authenticationCache, cache -> cache.stats().getSize())
+                    .tags(authentication).register(registry);
+        };
+    }
+
+    /**
+     * Usage of the thread pools of the password hashing and of the asynchronous book lookups
+     *
+     * @return return the binder of the pool meters
+     */
+    @Bean
+    public MeterBinder executorMetrics(PasswordHashingService passwordHashingService,
+                                       @Qualifier("lookupExecutor") ThreadPoolTaskExecutor lookupExecutor) {
+        return registry -> {
+            new ExecutorServiceMetrics(lookupExecutor.getThreadPoolExecutor(), "book-lookup", Tags.empty()).bindTo(registry);
+            Gauge.builder("auth.hashing.active", passwordHashingService, service -> service.stats().getActiveThreads())
+                    .description("Threads hashing passwords").register(registry);
+            Gauge.builder("auth.hashing.queued", passwordHashingService, service -> service.stats().getQueueDepth())
+                    .description("Passwords waiting for a hashing thread").register(registry);
+            FunctionCounter.builder("auth.hashing.rejected", passwordHashingService, service -> service.stats().getRejected())
+                    .description("Hashings rejected because the queue was full").register(registry);
+        };
+    }
+
+    /**
+     * Notifications of the invalidation bus and state of its transport
+     *
+     * @return return the binder of the invalidation meters
+     */
+    @Bean
+    public MeterBinder invalidationMetrics(InvalidationBus invalidationBus) {
+        return registry -> {
+            FunctionCounter.builder("invalidation.received", invalidationBus, InvalidationBus::getReceived)
+                    .description("Notifications received from the other instances").register(registry);
+            FunctionCounter.builder("invalidation.applied", invalidationBus, InvalidationBus::getApplied)
+                    .description("Evictions after merging the notifications of a burst").register(registry);
+            FunctionCounter.builder("invalidation.resyncs", invalidationBus, InvalidationBus::getResyncs)
+                    .description("Caches cleared after the transport reconnected").register(registry);
+            Gauge.builder("invalidation.connected", invalidationBus, bus -> bus.isConnected() ? 1 : 0)
+                    .description("Whether the notifications are being received").register(registry);
+        };
+    }
+
+    private static <T> void cacheGets(MeterRegistry registry, Tags tags, T cache,
+                                      ToDoubleFunction<T> hits,
+                                      ToDoubleFunction<T> misses) {
+        FunctionCounter.builder("cache.gets", cache, hits).tags(tags).tag("result", "hit").register(registry);
+        FunctionCounter.builder("cache.gets", cache, misses).tags(tags).tag("result", "miss").register(registry);
+    }
+}
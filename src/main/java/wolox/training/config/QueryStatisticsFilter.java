@@ -0,0 +1,86 @@
+package wolox.training.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Collects the statistics of the Hibernate session of every request. They are recorded as distributions, logged
+ * at debug level, and the statements repeated more than the threshold are logged as warnings
+ *
+ * @author luismiguelrodriguez
+ */
+public class QueryStatisticsFilter extends OncePerRequestFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryStatisticsFilter.class);
+
+    private final int repeatedThreshold;
+    private final DistributionSummary statements;
+    private final DistributionSummary entityLoads;
+    private final DistributionSummary collectionFetches;
+
+    /**
+     * @param repeatedThreshold number of times the same statement can be sent before it is logged
+     * @param meterRegistry     registry of the distributions
+     */
+    public QueryStatisticsFilter(int repeatedThreshold, MeterRegistry meterRegistry) {
+        this.repeatedThreshold = repeatedThreshold;
+        this.statements = summary(meterRegistry, "hibernate.request.statements", "Statements sent by request");
+        this.entityLoads = summary(meterRegistry, "hibernate.request.entity.loads", "Entities loaded by request");
+        this.collectionFetches = summary(meterRegistry, "hibernate.request.collection.fetches",
+                "Lazy collections fetched by request");
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestQueries queries = (RequestQueries) request.getAttribute(RequestQueries.ATTRIBUTE);
+        if (queries == null) {
+            queries = new RequestQueries();
+            request.setAttribute(RequestQueries.ATTRIBUTE, queries);
+        }
+
+        queries.bind();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            queries.unbind();
+        }
+
+        if (!isAsyncStarted(request)) {
+            finish(request, queries);
+        }
+    }
+
+    private void finish(HttpServletRequest request, RequestQueries queries) {
+        statements.record(queries.getStatements());
+        entityLoads.record(queries.getEntityLoads());
+        collectionFetches.record(queries.getCollectionFetches());
+        LOGGER.debug("queries method={} uri={} statements={} entity_loads={} collection_fetches={} flushes={}",
+                request.getMethod(), request.getRequestURI(), queries.getStatements(), queries.getEntityLoads(),
+                queries.getCollectionFetches(), queries.getFlushes());
+        Map<String, Integer> repeated = queries.getRepeatedStatements(repeatedThreshold);
+        repeated.forEach((sql, count) -> LOGGER.warn("repeated statement method={} uri={} count={} sql={}",
+                request.getMethod(), request.getRequestURI(), count, sql));
+    }
+
+    private static DistributionSummary summary(MeterRegistry meterRegistry, String name, String description) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .register(meterRegistry);
+    }
+}
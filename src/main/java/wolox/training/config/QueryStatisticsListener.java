@@ -0,0 +1,72 @@
+package wolox.training.config;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AutoFlushEvent;
+import org.hibernate.event.spi.AutoFlushEventListener;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEvent;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * Counts the entity loads, the lazy collection fetches and the flushes of the current request. It is appended
+ * after the listeners of Hibernate, so an automatic flush is only counted when it was required
+ *
+ * @author luismiguelrodriguez
+ */
+public class QueryStatisticsListener implements Integrator, PostLoadEventListener, InitializeCollectionEventListener,
+        FlushEventListener, AutoFlushEventListener {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        EventListenerRegistry registry = serviceRegistry.getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_LOAD, this);
+        registry.appendListeners(EventType.INIT_COLLECTION, this);
+        registry.appendListeners(EventType.FLUSH, this);
+        registry.appendListeners(EventType.AUTO_FLUSH, this);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    @Override
+    public void onPostLoad(PostLoadEvent event) {
+        RequestQueries queries = RequestQueries.current();
+        if (queries != null) {
+            queries.entityLoaded();
+        }
+    }
+
+    @Override
+    public void onInitializeCollection(InitializeCollectionEvent event) {
+        RequestQueries queries = RequestQueries.current();
+        if (queries != null) {
+            queries.collectionFetched();
+        }
+    }
+
+    @Override
+    public void onFlush(FlushEvent event) {
+        RequestQueries queries = RequestQueries.current();
+        if (queries != null) {
+            queries.flushed();
+        }
+    }
+
+    @Override
+    public void onAutoFlush(AutoFlushEvent event) {
+        RequestQueries queries = RequestQueries.current();
+        if (queries != null && event.isFlushRequired()) {
+            queries.flushed();
+        }
+    }
+}
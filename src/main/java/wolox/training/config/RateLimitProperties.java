@@ -0,0 +1,62 @@
+package wolox.training.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Limits of requests by client, for every route and for the requests that do not match any route
+ *
+ * @author luismiguelrodriguez
+ */
+@Data
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Seconds without requests after which the bucket of a client is evicted
+     */
+    private long idleExpirySeconds = 600;
+
+    /**
+     * Maximum number of client buckets kept in memory
+     */
+    private long maximumBuckets = 100_000;
+
+    /**
+     * Limit of the requests that do not match any route
+     */
+    private Limit defaults = new Limit();
+
+    /**
+     * Limits by route, the first matching route is used
+     */
+    private List<Route> routes = new ArrayList<>();
+
+    @Data
+    public static class Limit {
+
+        /**
+         * Requests allowed in a burst
+         */
+        private long capacity = 200;
+
+        /**
+         * Requests allowed by second once the burst is spent
+         */
+        private double refillPerSecond = 100;
+    }
+
+    @Data
+    public static class Route extends Limit {
+
+        /**
+         * Ant pattern of the path
+         */
+        private String pattern;
+    }
+}
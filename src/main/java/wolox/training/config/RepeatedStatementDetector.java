@@ -0,0 +1,35 @@
+package wolox.training.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import wolox.training.exception.RepeatedStatementException;
+
+/**
+ * Counts the statements of the current request. When failing is enabled, the statement that reaches the
+ * threshold of repetitions is not sent and the request fails, the usual cause is a lazy association loaded
+ * once per element of a list
+ *
+ * @author luismiguelrodriguez
+ */
+public class RepeatedStatementDetector implements StatementInspector {
+
+    private final int threshold;
+    private final boolean fail;
+
+    /**
+     * @param threshold number of times the same statement can be sent before it is reported
+     * @param fail      whether the request fails when the threshold is reached
+     */
+    public RepeatedStatementDetector(int threshold, boolean fail) {
+        this.threshold = threshold;
+        this.fail = fail;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        RequestQueries queries = RequestQueries.current();
+        if (queries != null && queries.statement(sql) == threshold && fail) {
+            throw new RepeatedStatementException("Statement sent " + threshold + " times in one request: " + sql);
+        }
+        return sql;
+    }
+}
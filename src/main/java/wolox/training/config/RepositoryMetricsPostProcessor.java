@@ -0,0 +1,108 @@
+package wolox.training.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds a timer of every query method to the Spring Data repositories, the timers are tagged with the repository,
+ * the method and the outcome. They are registered on the first call of each method, the later calls only read
+ * the clock and record in the registered timers. The time is also added to the database phase of the request
+ *
+ * @author luismiguelrodriguez
+ */
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+    public static final String METRIC = "repository.invocations";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public RepositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof Repository && bean instanceof Advised && !((Advised) bean).isFrozen()) {
+            Class<?>[] interfaces = AopProxyUtils.proxiedUserInterfaces(bean);
+            ((Advised) bean).addAdvice(0, new TimingInterceptor(interfaces[0].getSimpleName()));
+        }
+        return bean;
+    }
+
+    /**
+     * Timer of the success and the failure of a repository method
+     */
+    private static class MethodTimers {
+
+        private final Timer success;
+        private final Timer error;
+
+        MethodTimers(Timer success, Timer error) {
+            this.success = success;
+            this.error = error;
+        }
+    }
+
+    private class TimingInterceptor implements MethodInterceptor {
+
+        private final String repository;
+        private final Map<Method, MethodTimers> timers = new ConcurrentHashMap<>();
+
+        TimingInterceptor(String repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Method method = invocation.getMethod();
+            if (method.getDeclaringClass() == Object.class) {
+                return invocation.proceed();
+            }
+            MethodTimers methodTimers = timers.get(method);
+            if (methodTimers == null) {
+                methodTimers = timers.computeIfAbsent(method, this::register);
+            }
+            long start = System.nanoTime();
+            try {
+                Object result = invocation.proceed();
+                record(methodTimers.success, start);
+                return result;
+            } catch (Throwable e) {
+                record(methodTimers.error, start);
+                throw e;
+            }
+        }
+
+        private void record(Timer timer, long start) {
+            long elapsed = System.nanoTime() - start;
+            timer.record(elapsed, TimeUnit.NANOSECONDS);
+            RequestTimings.add(RequestTimings.Phase.DB, elapsed);
+        }
+
+        private MethodTimers register(Method method) {
+            MeterRegistry registry = meterRegistry.getObject();
+            return new MethodTimers(timer(registry, method, "success"), timer(registry, method, "error"));
+        }
+
+        private Timer timer(MeterRegistry registry, Method method, String outcome) {
+            return Timer.builder(METRIC)
+                    .description("Time of the calls of the repository methods")
+                    .tag("repository", repository)
+                    .tag("method", method.getName())
+                    .tag("outcome", outcome)
+                    .register(registry);
+        }
+    }
+}
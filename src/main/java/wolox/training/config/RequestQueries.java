@@ -0,0 +1,117 @@
+package wolox.training.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Statistics of the Hibernate session of one request, collected by the QueryStatisticsFilter. The statements are
+ * counted by their shape, so the same query with other parameters is counted as a repetition
+ *
+ * @author luismiguelrodriguez
+ */
+public final class RequestQueries {
+
+    /**
+     * Request attribute that holds the statistics of the request
+     */
+    public static final String ATTRIBUTE = RequestQueries.class.getName();
+
+    private static final ThreadLocal<RequestQueries> CURRENT = new ThreadLocal<>();
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final AtomicInteger statements = new AtomicInteger();
+    private final AtomicInteger entityLoads = new AtomicInteger();
+    private final AtomicInteger collectionFetches = new AtomicInteger();
+    private final AtomicInteger flushes = new AtomicInteger();
+    private final Map<String, Integer> statementCounts = new ConcurrentHashMap<>();
+
+    RequestQueries() {
+    }
+
+    /**
+     * @return return the statistics of the request served by this thread, null when there is none
+     */
+    public static RequestQueries current() {
+        return CURRENT.get();
+    }
+
+    void bind() {
+        CURRENT.set(this);
+    }
+
+    void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Method to count a statement sent to the database
+     *
+     * @param sql statement as prepared by Hibernate
+     * @return return the number of times that a statement of the same shape was sent in the request
+     */
+    int statement(String sql) {
+        statements.incrementAndGet();
+        return statementCounts.merge(normalize(sql), 1, Integer::sum);
+    }
+
+    void entityLoaded() {
+        entityLoads.incrementAndGet();
+    }
+
+    void collectionFetched() {
+        collectionFetches.incrementAndGet();
+    }
+
+    void flushed() {
+        flushes.incrementAndGet();
+    }
+
+    public int getStatements() {
+        return statements.get();
+    }
+
+    public int getEntityLoads() {
+        return entityLoads.get();
+    }
+
+    public int getCollectionFetches() {
+        return collectionFetches.get();
+    }
+
+    public int getFlushes() {
+        return flushes.get();
+    }
+
+    /**
+     * Method to get the statements sent more than once
+     *
+     * @param threshold minimum number of times a statement was sent
+     * @return return the shape of the repeated statements and the times they were sent
+     */
+    public Map<String, Integer> getRepeatedStatements(int threshold) {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        statementCounts.forEach((sql, count) -> {
+            if (count >= threshold) {
+                repeated.put(sql, count);
+            }
+        });
+        return repeated;
+    }
+
+    /**
+     * The literals become placeholders and the lists of placeholders of batch fetches collapse into one
+     */
+    static String normalize(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("in (?)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim().toLowerCase();
+    }
+}
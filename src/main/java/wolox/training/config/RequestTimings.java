@@ -0,0 +1,174 @@
+package wolox.training.config;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Time spent by one request in each phase, collected by the ServerTimingFilter. The phases are recorded by the
+ * code that measures them through the static methods, which do nothing but read a flag while the collection is
+ * turned off or the thread is not serving a request
+ *
+ * @author luismiguelrodriguez
+ */
+public final class RequestTimings {
+
+    /**
+     * Phases of a request, their names are the metric names of the Server-Timing header
+     */
+    public enum Phase {
+        DB("db"),
+        UPSTREAM("upstream"),
+        AUTH("auth"),
+        SERIALIZATION("serialization");
+
+        private final String metric;
+
+        Phase(String metric) {
+            this.metric = metric;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+
+    private static volatile boolean active;
+
+    private final long startNanos;
+    private final AtomicLongArray nanos = new AtomicLongArray(PHASES.length);
+    private final AtomicLongArray counts = new AtomicLongArray(PHASES.length);
+
+    /**
+     * Start of the serialization of the response body, 0 while the body is not being written
+     */
+    private long serializationStart;
+
+    RequestTimings(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    static void activate() {
+        active = true;
+    }
+
+    /**
+     * @return return the timings of the request served by this thread, null when there is none
+     */
+    public static RequestTimings current() {
+        return active ? CURRENT.get() : null;
+    }
+
+    /**
+     * Method to start measuring a phase
+     *
+     * @return return the start time to pass to stop, 0 when nothing is measured
+     */
+    public static long start() {
+        return current() != null ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Method to add the time elapsed since start to a phase of the current request
+     *
+     * @param phase phase of the request
+     * @param start value returned by start
+     */
+    public static void stop(Phase phase, long start) {
+        if (start != 0L) {
+            add(phase, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Method to add an already measured time to a phase of the current request
+     *
+     * @param phase       phase of the request
+     * @param elapsedNanos measured time
+     */
+    public static void add(Phase phase, long elapsedNanos) {
+        RequestTimings timings = current();
+        if (timings != null) {
+            timings.record(phase, elapsedNanos);
+        }
+    }
+
+    /**
+     * Method to run a task of another thread as part of the current request
+     *
+     * @param task task submitted by the request
+     * @return return the task itself when there is no current request, or a task that records in its timings
+     */
+    public static Runnable propagate(Runnable task) {
+        RequestTimings timings = current();
+        if (timings == null) {
+            return task;
+        }
+        return () -> {
+            RequestTimings previous = CURRENT.get();
+            CURRENT.set(timings);
+            try {
+                task.run();
+            } finally {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    public void record(Phase phase, long elapsedNanos) {
+        nanos.addAndGet(phase.ordinal(), elapsedNanos);
+        counts.incrementAndGet(phase.ordinal());
+    }
+
+    void bind() {
+        CURRENT.set(this);
+    }
+
+    void unbind() {
+        CURRENT.remove();
+    }
+
+    void startSerialization() {
+        if (serializationStart == 0L) {
+            serializationStart = System.nanoTime();
+        }
+    }
+
+    void stopSerialization() {
+        if (serializationStart != 0L) {
+            record(Phase.SERIALIZATION, System.nanoTime() - serializationStart);
+            serializationStart = 0L;
+        }
+    }
+
+    double totalMillis() {
+        return millis(System.nanoTime() - startNanos);
+    }
+
+    double millis(Phase phase) {
+        return millis(nanos.get(phase.ordinal()));
+    }
+
+    long count(Phase phase) {
+        return counts.get(phase.ordinal());
+    }
+
+    /**
+     * @return return the value of the Server-Timing header, only the phases that took place are listed
+     */
+    String header() {
+        StringBuilder header = new StringBuilder();
+        for (Phase phase : PHASES) {
+            long count = count(phase);
+            if (count > 0) {
+                header.append(phase.metric)
+                        .append(String.format(Locale.ROOT, ";dur=%.2f", millis(phase)))
+                        .append(";desc=\"").append(count).append(count == 1 ? " call" : " calls").append("\", ");
+            }
+        }
+        return header.append(String.format(Locale.ROOT, "total;dur=%.2f", totalMillis())).toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,108 @@
+package wolox.training.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Collects the time of every request by phase. When the header is enabled the body is buffered, so the
+ * Server-Timing header can include the serialization of the body. The requests slower than the threshold are
+ * logged with their phases
+ *
+ * @author luismiguelrodriguez
+ */
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    public static final String SERVER_TIMING = "Server-Timing";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerTimingFilter.class);
+
+    private static final String TIMINGS_ATTRIBUTE = ServerTimingFilter.class.getName() + ".timings";
+
+    private final boolean header;
+    private final long slowRequestMillis;
+
+    /**
+     * @param header            whether the Server-Timing header is added to the responses
+     * @param slowRequestMillis minimum time of the logged requests, 0 to log none
+     */
+    public ServerTimingFilter(boolean header, long slowRequestMillis) {
+        this.header = header;
+        this.slowRequestMillis = slowRequestMillis;
+        RequestTimings.activate();
+    }
+
+    /**
+     * The event streams stay open for minutes, their time is not a request time and their body can not be buffered
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE);
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestTimings timings = (RequestTimings) request.getAttribute(TIMINGS_ATTRIBUTE);
+        if (timings == null) {
+            timings = new RequestTimings(System.nanoTime());
+            request.setAttribute(TIMINGS_ATTRIBUTE, timings);
+        }
+        HttpServletResponse responseToUse = response;
+        if (header && !(response instanceof ContentCachingResponseWrapper)) {
+            responseToUse = new ContentCachingResponseWrapper(response);
+        }
+
+        timings.bind();
+        try {
+            chain.doFilter(request, responseToUse);
+        } finally {
+            timings.stopSerialization();
+            timings.unbind();
+        }
+
+        if (!isAsyncStarted(request)) {
+            finish(request, responseToUse, timings);
+        }
+    }
+
+    private void finish(HttpServletRequest request, HttpServletResponse response, RequestTimings timings)
+            throws IOException {
+        if (header) {
+            ContentCachingResponseWrapper wrapper = WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+            if (wrapper != null) {
+                if (!wrapper.isCommitted()) {
+                    wrapper.setHeader(SERVER_TIMING, timings.header());
+                }
+                wrapper.copyBodyToResponse();
+            }
+        }
+        double totalMillis = timings.totalMillis();
+        if (slowRequestMillis > 0 && totalMillis >= slowRequestMillis) {
+            LOGGER.warn(String.format(Locale.ROOT,
+                    "slow request method=%s uri=%s status=%d total_ms=%.1f db_ms=%.1f db_calls=%d upstream_ms=%.1f"
+                            + " upstream_calls=%d auth_ms=%.1f serialization_ms=%.1f",
+                    request.getMethod(), request.getRequestURI(), response.getStatus(), totalMillis,
+                    timings.millis(RequestTimings.Phase.DB), timings.count(RequestTimings.Phase.DB),
+                    timings.millis(RequestTimings.Phase.UPSTREAM), timings.count(RequestTimings.Phase.UPSTREAM),
+                    timings.millis(RequestTimings.Phase.AUTH), timings.millis(RequestTimings.Phase.SERIALIZATION)));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package wolox.training.controllers;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import wolox.training.exception.UsersNotFoundException;
+import wolox.training.repositories.UsersRepository;
+
+/**
+ * Administration of the users, only the administrators can use it
+ *
+ * @author luismiguelrodriguez
+ */
+@RestController
+@RequestMapping("/api/admin/users")
+@Api
+public class AdminUsersController {
+
+    /**
+     * Repository of Users
+     */
+    @Autowired
+    private UsersRepository usersRepository;
+
+    /**
+     * Method to grant the administrator role to a user
+     *
+     * @param id identifier of the user
+     */
+    @ApiOperation(value = "Method to grant the administrator role to a user")
+    @ApiResponses(value = {
+            @ApiResponse(code = 204, message = "Role granted"),
+            @ApiResponse(code = 404, message = "User not found")
+    })
+    @PutMapping("/{id}/admin")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void grantAdmin(@PathVariable Long id) {
+        if (usersRepository.updateAdmin(id, true) == 0) {
+            throw new UsersNotFoundException();
+        }
+    }
+
+    /**
+     * Method to revoke the administrator role of a user
+     *
+     * @param id identifier of the user
+     */
+    @ApiOperation(value = "Method to revoke the administrator role of a user")
+    @ApiResponses(value = {
+            @ApiResponse(code = 204, message = "Role revoked"),
+            @ApiResponse(code = 404, message = "User not found")
+    })
+    @DeleteMapping("/{id}/admin")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void revokeAdmin(@PathVariable Long id) {
+        if (usersRepository.updateAdmin(id, false) == 0) {
+            throw new UsersNotFoundException();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package wolox.training.controllers;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import wolox.training.models.User;
+import wolox.training.models.dto.LoginDTO;
+import wolox.training.models.dto.RefreshTokenDTO;
+import wolox.training.models.dto.TokenDTO;
+import wolox.training.repositories.UsersRepository;
+import wolox.training.security.CustomAuthenticationProvider;
+import wolox.training.security.TokenService;
+
+/**
+ * Auth controller containing the operations to get and refresh access tokens
+ *
+ * @author luismiguelrodriguez
+ */
+@RestController
+@RequestMapping("/api/auth")
+@Api
+public class AuthController {
+
+    /**
+     * Provider that verifies the credentials of a user
+     */
+    @Autowired
+    private CustomAuthenticationProvider authenticationProvider;
+
+    /**
+     * Service that issues the tokens
+     */
+    @Autowired
+    private TokenService tokenService;
+
+    /**
+     * Repository of Users
+     */
+    @Autowired
+    private UsersRepository usersRepository;
+
+    /**
+     * Method to verify the credentials of a user and issue its tokens
+     *
+     * @param login username and password of the user
+     * @return return an access token and a refresh token
+     */
+    @ApiOperation(value = "Method to log in a user", response = TokenDTO.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "User logged in"),
+            @ApiResponse(code = 401, message = "Bad credentials")
+    })
+    @PostMapping("/login")
+    @ResponseStatus(HttpStatus.OK)
+    public TokenDTO login(@RequestBody LoginDTO login) {
+        if (login.getUsername() == null || login.getPassword() == null) {
+            throw new BadCredentialsException("Bad Credencial");
+        }
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken(login.getUsername(), login.getPassword()));
+        User user = usersRepository.findByUsername(login.getUsername())
+                .orElseThrow(() -> new BadCredentialsException("Bad Credencial"));
+        return tokenService.issue(user.getUsername(), user.getId(), user.getCredentialsVersion());
+    }
+
+    /**
+     * Method to issue new tokens from a refresh token, it is rejected when the user was deleted or its
+     * password changed since the token was issued
+     *
+     * @param refresh refresh token issued at login
+     * @return return an access token and a refresh token
+     */
+    @ApiOperation(value = "Method to refresh the tokens of a user", response = TokenDTO.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Tokens refreshed"),
+            @ApiResponse(code = 401, message = "Invalid refresh token")
+    })
+    @PostMapping("/refresh")
+    @ResponseStatus(HttpStatus.OK)
+    public TokenDTO refresh(@RequestBody RefreshTokenDTO refresh) {
+        String token = refresh.getRefreshToken();
+        User user = tokenService.verifyRefresh(token)
+                .flatMap(usersRepository::findByUsername)
+                .filter(candidate -> tokenService.verifyRefresh(token, candidate.getId(),
+                        candidate.getCredentialsVersion()).isPresent())
+                .orElseThrow(() -> new BadCredentialsException("Invalid refresh token"));
+        return tokenService.issue(user.getUsername(), user.getId(), user.getCredentialsVersion());
+    }
+}
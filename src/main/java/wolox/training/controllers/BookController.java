@@ -1,5 +1,9 @@
 package wolox.training.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
@@ -7,24 +11,54 @@ import io.swagger.annotations.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import wolox.training.exception.BookNotFoundException;
+import wolox.training.exception.InvalidQueryException;
+import wolox.training.exception.PreconditionFailedException;
 import wolox.training.models.Book;
-import wolox.training.models.dto.BookDTO;
+import wolox.training.models.ChangeEvent;
+import wolox.training.models.User;
+import wolox.training.models.dto.BookFacets;
+import wolox.training.models.dto.BookOwnersDTO;
+import wolox.training.models.dto.CompactPageDTO;
 import wolox.training.repositories.BookRepository;
+import wolox.training.repositories.UsersRepository;
+import wolox.training.service.BookCatalog;
+import wolox.training.service.BookJsonCache;
+import wolox.training.service.BookLookupService;
+import wolox.training.service.BookPopularityService;
+import wolox.training.service.BookSearchCache;
+import wolox.training.service.ChangeOutbox;
+import wolox.training.service.EncodedJson;
 import wolox.training.service.OpenLibraryService;
 
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Book controller containing the operations of update , find , delete , find by id and create
  *
@@ -35,33 +69,125 @@ import wolox.training.service.OpenLibraryService;
 @Api
 public class BookController {
 
+    /**
+     * Attributes that can be changed with a merge patch
+     */
+    private static final Set<String> BOOK_PATCHABLE_FIELDS = ImmutableSet.of(
+            "genre", "author", "image", "title", "subtitle", "publisher", "year", "pages", "isbn");
+
+    /**
+     * Attributes that can be selected in the searches
+     */
+    private static final Set<String> BOOK_SELECTABLE_FIELDS = ImmutableSet.of(
+            "id", "genre", "author", "image", "title", "subtitle", "publisher", "year", "pages", "isbn",
+            "version", "lastModified", "ownersCount");
+
+    private static final String PAGE_ENVELOPE = "page";
+    private static final String COMPACT_ENVELOPE = "compact";
+    private static final String GZIP = "gzip";
+    private static final String X_GZIP = "x-gzip";
+    private static final String ANY_ENCODING = "*";
+
+    /**
+     * Maximum size of the most owned books ranking
+     */
+    private static final int MOST_OWNED_MAX_LIMIT = 100;
+
     /**
      * Repository of books
      */
     @Autowired
     private BookRepository bookRepository;
 
+    /**
+     * Mapper used to apply merge patches
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Repository of users
+     */
+    @Autowired
+    private UsersRepository usersRepository;
+
     /**
      * Service External Api
      */
     @Autowired
     private OpenLibraryService openLibraryService;
 
+    /**
+     * Service of asynchronous isbn lookups
+     */
+    @Autowired
+    private BookLookupService bookLookupService;
+
+    /**
+     * Service of book owners counters
+     */
+    @Autowired
+    private BookPopularityService bookPopularityService;
+
+    /**
+     * Cache of the search results
+     */
+    @Autowired
+    private BookSearchCache bookSearchCache;
+
+    /**
+     * Cache of the encoded books
+     */
+    @Autowired
+    private BookJsonCache bookJsonCache;
+
+    /**
+     * Read model of the books kept in memory
+     */
+    @Autowired
+    private BookCatalog bookCatalog;
+
+    /**
+     * Outbox of the changes feed
+     */
+    @Autowired
+    private ChangeOutbox changeOutbox;
+
     /**
      * Method for search elements
      *
-     * @param id variable used to identify the element to search
+     * @param id      variable used to identify the element to search
+     * @param request        current request, a conditional request is answered with 304 when the element did not change
+     * @param acceptEncoding codings accepted by the client, the cached bytes are sent compressed when gzip is accepted
      * @return method that returns an object according to the id parameter
      */
     @ApiOperation(value = "Method to find a book", response = Book.class)
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Successfuly retrieved book"),
+            @ApiResponse(code = 304, message = "Book not modified"),
             @ApiResponse(code = 404, message = "Book not found")
     })
     @GetMapping("/{id}")
-    @ResponseStatus(HttpStatus.OK)
-    public Book findById(@PathVariable Long id) {
-        return bookRepository.findById(id).orElseThrow(BookNotFoundException::new);
+    public ResponseEntity<?> findById(@PathVariable Long id, WebRequest request,
+                                      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (EntityTags.isConditional(request)
+                && EntityTags.isNotModified(request, bookCatalog.findVersionById(id, () -> bookRepository.findVersionById(id))
+                        .orElseThrow(BookNotFoundException::new))) {
+            return null;
+        }
+        if (!prefersJson(request)) {
+            Book book = bookCatalog.findById(id, () -> bookRepository.findById(id)).orElseThrow(BookNotFoundException::new);
+            return EntityTags.ok(book.getVersion(), book.getLastModified()).body(book);
+        }
+        Optional<BookJsonCache.EncodedBook> cached = bookJsonCache.get(id);
+        if (cached.isPresent()) {
+            return encoded(cached.get(), acceptEncoding);
+        }
+        long stamp = bookJsonCache.stamp();
+        Book book = bookCatalog.findById(id, () -> bookRepository.findById(id)).orElseThrow(BookNotFoundException::new);
+        return bookJsonCache.put(book, stamp)
+                .<ResponseEntity<?>>map(encoded -> encoded(encoded, acceptEncoding))
+                .orElseGet(() -> EntityTags.ok(book.getVersion(), book.getLastModified()).body(book));
     }
 
     /**
@@ -76,45 +202,104 @@ public class BookController {
     })
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
+    @Transactional
     public Book create(@RequestBody Book book) {
-        return bookRepository.save(book);
+        bookRepository.saveAndFlush(book);
+        changeOutbox.record(ChangeEvent.BOOK, book.getId(), ChangeEvent.CREATED, book.getVersion());
+        bookSearchCache.evict(book);
+        return book;
     }
 
     /**
      * Method for update element
      *
-     * @param book Object required to update a book
-     * @param id   variable used to identify the element to update
+     * @param book    Object required to update a book
+     * @param id      variable used to identify the element to update
+     * @param ifMatch entity tag of the version to update, any version when it is not present
      * @return return a view of the updated object
      */
     @ApiOperation(value = "Method to update a book", response = Book.class)
     @ApiResponses(value = {
             @ApiResponse(code = 201, message = "Successfuly updated book"),
-            @ApiResponse(code = 404, message = "Book not found")
+            @ApiResponse(code = 404, message = "Book not found"),
+            @ApiResponse(code = 412, message = "Book was modified")
     })
     @PutMapping("/{id}")
-    @ResponseStatus(HttpStatus.OK)
-    public Book update(@RequestBody Book book, @PathVariable Long id) {
-        bookRepository.findById(id).orElseThrow(BookNotFoundException::new);
-        book.setId(id);
-        return bookRepository.save(book);
+    @Transactional
+    public ResponseEntity<Book> update(@RequestBody Book book, @PathVariable Long id,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Optional<BookFacets> previous = bookRepository.findFacetsById(id);
+        if (bookRepository.updateIfVersionMatches(id, EntityTags.parseVersion(ifMatch), book) == 0) {
+            throw bookRepository.existsById(id) ? new PreconditionFailedException() : new BookNotFoundException();
+        }
+        invalidate(id);
+        Book updated = bookRepository.findById(id).orElseThrow(BookNotFoundException::new);
+        changeOutbox.record(ChangeEvent.BOOK, id, ChangeEvent.UPDATED, updated.getVersion());
+        evict(previous, updated);
+        return EntityTags.ok(updated.getVersion(), updated.getLastModified()).body(updated);
+    }
+
+    /**
+     * Method for partial update of an element with a JSON Merge Patch document, only the supplied
+     * attributes are written
+     *
+     * @param patch   document with the attributes to change
+     * @param id      variable used to identify the element to update
+     * @param ifMatch entity tag of the version to update, any version when it is not present
+     * @return return a view of the updated object
+     */
+    @ApiOperation(value = "Method to partially update a book", response = Book.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfuly updated book"),
+            @ApiResponse(code = 400, message = "Invalid patch"),
+            @ApiResponse(code = 404, message = "Book not found"),
+            @ApiResponse(code = 412, message = "Book was modified")
+    })
+    @PatchMapping(value = "/{id}", consumes = MergePatch.MEDIA_TYPE)
+    @Transactional
+    public ResponseEntity<Book> patch(@RequestBody ObjectNode patch, @PathVariable Long id,
+                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Map<String, Object> changes = MergePatch.changes(objectMapper, patch, new Book(), BOOK_PATCHABLE_FIELDS);
+        Optional<BookFacets> previous = changes.isEmpty() ? Optional.empty() : bookRepository.findFacetsById(id);
+        if (!changes.isEmpty() && bookRepository.patchIfVersionMatches(id, EntityTags.parseVersion(ifMatch), changes) == 0) {
+            throw bookRepository.existsById(id) ? new PreconditionFailedException() : new BookNotFoundException();
+        }
+        if (!changes.isEmpty()) {
+            invalidate(id);
+        }
+        Book updated = bookRepository.findById(id).orElseThrow(BookNotFoundException::new);
+        if (!changes.isEmpty()) {
+            changeOutbox.record(ChangeEvent.BOOK, id, ChangeEvent.UPDATED, updated.getVersion());
+            evict(previous, updated);
+        }
+        return EntityTags.ok(updated.getVersion(), updated.getLastModified()).body(updated);
     }
 
     /**
      * Method for delete element
      *
-     * @param id variable used to identify the element to delete
+     * @param id      variable used to identify the element to delete
+     * @param ifMatch entity tag of the version to delete, any version when it is not present
      */
     @ApiOperation(value = "Method to delete a book", response = Book.class)
     @ApiResponses(value = {
             @ApiResponse(code = 204, message = "Successfuly deleted book"),
-            @ApiResponse(code = 404, message = "Book not found")
+            @ApiResponse(code = 404, message = "Book not found"),
+            @ApiResponse(code = 412, message = "Book was modified")
     })
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void delete(@PathVariable Long id) {
-        bookRepository.findById(id).orElseThrow(BookNotFoundException::new);
-        bookRepository.deleteById(id);
+    @Transactional
+    public void delete(@PathVariable Long id,
+                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Optional<BookFacets> previous = bookRepository.findFacetsById(id);
+        if (bookRepository.deleteIfVersionMatches(id, EntityTags.parseVersion(ifMatch)) == 0) {
+            throw bookRepository.existsById(id) ? new PreconditionFailedException() : new BookNotFoundException();
+        }
+        previous.ifPresent(facets -> bookSearchCache.evict(facets.getGenre(), facets.getPublisher(), facets.getYear()));
+        invalidate(id);
+        bookPopularityService.bookRemoved(id);
+        changeOutbox.record(ChangeEvent.BOOK, id, ChangeEvent.DELETED, null);
     }
 
     /**
@@ -131,36 +316,69 @@ public class BookController {
     })
     @GetMapping("/find-by-isbn")
     public ResponseEntity<Book> findByIsbn(@RequestParam String isbn) {
-        return bookRepository.findByIsbn(isbn)
+        return bookCatalog.findByIsbn(isbn, () -> bookRepository.findByIsbn(isbn))
                 .map(book -> new ResponseEntity<>(book, HttpStatus.OK))
                 .orElseGet(() -> {
-                    BookDTO bookDTO = openLibraryService.findInfoBook(isbn);
-                    Book book = bookRepository.save(bookDTO.setBook());
+                    Book book = bookLookupService.store(openLibraryService.findInfoBook(isbn));
                     return new ResponseEntity<>(book, HttpStatus.CREATED);
                 });
     }
 
+    /**
+     * Method to search a book by isbn without holding the request thread while the external api answers
+     *
+     * @param isbn param to search book in external api or internal repository
+     * @return return a future completed with the book, or with 504 when the lookup deadline is exceeded
+     */
+    @ApiOperation(value = "Method to search a book by isbn asynchronously", response = Book.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Book found successfully"),
+            @ApiResponse(code = 201, message = "Book created"),
+            @ApiResponse(code = 404, message = "Book not found"),
+            @ApiResponse(code = 503, message = "Too many lookups in progress"),
+            @ApiResponse(code = 504, message = "Lookup deadline exceeded")
+    })
+    @GetMapping("/find-by-isbn-async")
+    public CompletableFuture<ResponseEntity<Book>> findByIsbnAsync(@RequestParam String isbn) {
+        long deadline = bookLookupService.deadline();
+        return bookLookupService.withDeadline(bookLookupService.findStored(isbn)
+                .thenCompose(stored -> stored
+                        .map(book -> CompletableFuture.completedFuture(new ResponseEntity<>(book, HttpStatus.OK)))
+                        .orElseGet(() -> bookLookupService.importBook(isbn, deadline)
+                                .thenApply(book -> new ResponseEntity<>(book, HttpStatus.CREATED)))), deadline);
+    }
+
     /**
      * Method to search a book by the following variables
      *
      * @param publisher variable used to create the filter
      * @param genre     variable used to create the filter
      * @param year      variable used to create the filter
+     * @param fields    attributes to return, only these columns are read. All of them when it is not present
+     * @param envelope  page envelope, page for the Spring page or compact for the content and the counters
      * @return return a books as the specified parameters
      */
     @ApiOperation(value = "Method to search a book by (publisher,genre and year)", response = Book.class)
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Book found successfully"),
+            @ApiResponse(code = 400, message = "Unknown field or envelope"),
             @ApiResponse(code = 404, message = "Book not found")
     })
     @GetMapping("/findby")
-    public ResponseEntity<Page<Book>> findByPublisherGenreYear(
+    public ResponseEntity<Object> findByPublisherGenreYear(
             @RequestParam(required = false) String publisher,
             @RequestParam(required = false) String genre,
             @RequestParam(required = false) String year,
+            @RequestParam(required = false) List<String> fields,
+            @RequestParam(required = false, defaultValue = PAGE_ENVELOPE) String envelope,
             Pageable pageable) {
-        Page<Book> bookList = bookRepository.findAllByPublisherAndGenreAndYearQuery(publisher, genre, year, pageable);
-        return new ResponseEntity<>(bookList, HttpStatus.OK);
+        List<String> selected = selectedFields(fields);
+        Page<?> bookList = selected == null
+                ? bookCatalog.findBy(publisher, genre, year, null, pageable, () -> bookSearchCache.findBy(publisher, genre, year, null, pageable,
+                        () -> bookRepository.findAllByPublisherAndGenreAndYearQuery(publisher, genre, year, pageable)))
+                : bookCatalog.findBy(publisher, genre, year, selected, pageable, () -> bookSearchCache.findBy(publisher, genre, year, selected, pageable,
+                        () -> bookRepository.findFieldsByPublisherAndGenreAndYear(selected, publisher, genre, year, pageable)));
+        return new ResponseEntity<>(envelope(bookList, envelope), HttpStatus.OK);
     }
 
     /**
@@ -176,15 +394,18 @@ public class BookController {
      * @param endYear   parameter to filter by year  (final)
      * @param pages     parameter to search by pages
      * @param isbn      parameter to search by isbn
+     * @param fields    attributes to return, only these columns are read. All of them when it is not present
+     * @param envelope  page envelope, page for the Spring page or compact for the content and the counters
      * @return book depending on the parameters
      */
     @ApiOperation(value = "Method to search a book by all parameters", response = Book.class)
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Book found successfully"),
+            @ApiResponse(code = 400, message = "Unknown field or envelope"),
             @ApiResponse(code = 404, message = "Book not found")
     })
     @GetMapping
-    public ResponseEntity<Page<Book>> findByParameters(
+    public ResponseEntity<Object> findByParameters(
             @RequestParam(required = false, defaultValue = "") String genre,
             @RequestParam(required = false, defaultValue = "") String author,
             @RequestParam(required = false, defaultValue = "") String image,
@@ -195,9 +416,201 @@ public class BookController {
             @RequestParam(required = false, defaultValue = "") String endYear,
             @RequestParam(required = false, defaultValue = "") String pages,
             @RequestParam(required = false, defaultValue = "") String isbn,
+            @RequestParam(required = false) List<String> fields,
+            @RequestParam(required = false, defaultValue = PAGE_ENVELOPE) String envelope,
             Pageable pageable) {
-        Page<Book> books = bookRepository
-                .findByAllParameters(genre, author, image, title, subtitle, publisher, startYear, endYear, pages, isbn, pageable);
-        return new ResponseEntity<>(books, HttpStatus.OK);
+        Map<String, String> filters = new LinkedHashMap<>();
+        filters.put("genre", genre);
+        filters.put("author", author);
+        filters.put("image", image);
+        filters.put("title", title);
+        filters.put("subtitle", subtitle);
+        filters.put("publisher", publisher);
+        filters.put("startYear", startYear);
+        filters.put("endYear", endYear);
+        filters.put("pages", pages);
+        filters.put("isbn", isbn);
+        List<String> selected = selectedFields(fields);
+        Page<?> books = selected == null
+                ? bookCatalog.findByParameters(filters, null, pageable, () -> bookSearchCache.findByParameters(filters, null, pageable,
+                        () -> bookRepository.findByAllParameters(genre, author, image, title, subtitle, publisher, startYear, endYear, pages, isbn, pageable)))
+                : bookCatalog.findByParameters(filters, selected, pageable, () -> bookSearchCache.findByParameters(filters, selected, pageable,
+                        () -> bookRepository.findFieldsByAllParameters(selected, filters, pageable)));
+        return new ResponseEntity<>(envelope(books, envelope), HttpStatus.OK);
+    }
+
+    /**
+     * Method to count the users that own a book
+     *
+     * @param id variable used to identify the book
+     * @return return the number of users that own the book
+     */
+    @ApiOperation(value = "Method to count the users that own a book", response = BookOwnersDTO.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Owners counted successfully"),
+            @ApiResponse(code = 404, message = "Book not found")
+    })
+    @GetMapping("/{id}/owners-count")
+    @ResponseStatus(HttpStatus.OK)
+    public BookOwnersDTO ownersCount(@PathVariable Long id) {
+        BookOwnersDTO owners = bookPopularityService.getOwners(id);
+        if (owners.getOwners() == 0 && !bookRepository.existsById(id)) {
+            throw new BookNotFoundException();
+        }
+        return owners;
+    }
+
+    /**
+     * Method to search the users that own a book
+     *
+     * @param id variable used to identify the book
+     * @return return a page of users that own the book
+     */
+    @ApiOperation(value = "Method to search the users that own a book", response = User.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Owners found successfully"),
+            @ApiResponse(code = 404, message = "Book not found")
+    })
+    @GetMapping("/{id}/owners")
+    public ResponseEntity<Page<User>> owners(@PathVariable Long id, Pageable pageable) {
+        Page<User> owners = usersRepository.findByBooksId(id, pageable);
+        if (owners.getTotalElements() == 0 && !bookRepository.existsById(id)) {
+            throw new BookNotFoundException();
+        }
+        return new ResponseEntity<>(owners, HttpStatus.OK);
+    }
+
+    /**
+     * Method to get the ranking of the most owned books
+     *
+     * @param limit maximum number of books in the ranking
+     * @return return the most owned books sorted by descending owners
+     */
+    @ApiOperation(value = "Method to get the most owned books", response = BookOwnersDTO.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Ranking retrieved successfully")
+    })
+    @GetMapping("/most-owned")
+    @ResponseStatus(HttpStatus.OK)
+    public List<BookOwnersDTO> mostOwned(@RequestParam(required = false, defaultValue = "10") int limit) {
+        return bookPopularityService.getMostOwned(Math.max(1, Math.min(limit, MOST_OWNED_MAX_LIMIT)));
+    }
+
+    /**
+     * Forget the cached bytes of a changed book now and again when the transaction commits, a read that ran
+     * before the commit could cache the bytes of the previous version
+     */
+    private void invalidate(Long id) {
+        bookJsonCache.invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    bookJsonCache.invalidate(id);
+                }
+            });
+        }
+    }
+
+    /**
+     * Evict the cached searches that contained the book before the change or contain it after
+     */
+    private void evict(Optional<BookFacets> previous, Book updated) {
+        previous.ifPresent(facets -> bookSearchCache.evict(facets.getGenre(), facets.getPublisher(), facets.getYear()));
+        bookSearchCache.evict(updated);
+    }
+
+    /**
+     * Answer with the cached bytes of a book, compressed when the client accepts gzip. The compressed bytes have
+     * their own entity tag
+     */
+    private static ResponseEntity<?> encoded(BookJsonCache.EncodedBook book, String acceptEncoding) {
+        EncodedJson body = book.body(acceptsGzip(acceptEncoding));
+        String tag = EntityTags.of(book.getVersion(), body.getContentEncoding());
+        ResponseEntity.BodyBuilder response = EntityTags.ok(tag, book.getLastModified())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (body.getContentEncoding() != null) {
+            response.header(HttpHeaders.CONTENT_ENCODING, body.getContentEncoding());
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Read the Accept-Encoding header, gzip is accepted when it is listed, or matched by *, with a quality above
+     * zero. A coding listed with q=0 is refused by the client
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim();
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equalsIgnoreCase(GZIP) || coding.equalsIgnoreCase(X_GZIP)) {
+                gzip = quality;
+            } else if (coding.equals(ANY_ENCODING)) {
+                any = quality;
+            }
+        }
+        Double quality = gzip != null ? gzip : any;
+        return quality != null && quality > 0;
+    }
+
+    /**
+     * The cached bytes are JSON, they are only sent when JSON is the preferred format of the client
+     */
+    private static boolean prefersJson(WebRequest request) {
+        List<MediaType> accepted = MediaType.parseMediaTypes(request.getHeader(HttpHeaders.ACCEPT));
+        if (accepted.isEmpty()) {
+            return true;
+        }
+        MediaType.sortBySpecificityAndQuality(accepted);
+        return accepted.get(0).isCompatibleWith(MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Method to validate the requested attributes
+     *
+     * @param fields attributes of the request
+     * @return return the distinct attributes in the requested order, null when whole books are requested
+     */
+    private static List<String> selectedFields(List<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return null;
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : fields) {
+            String name = field.trim();
+            if (!BOOK_SELECTABLE_FIELDS.contains(name)) {
+                throw new InvalidQueryException("Unknown field " + name);
+            }
+            selected.add(name);
+        }
+        return ImmutableList.copyOf(selected);
+    }
+
+    private static Object envelope(Page<?> page, String envelope) {
+        switch (envelope) {
+            case PAGE_ENVELOPE:
+                return page;
+            case COMPACT_ENVELOPE:
+                return CompactPageDTO.of(page);
+            default:
+                throw new InvalidQueryException("Unknown envelope " + envelope);
+        }
     }
 }
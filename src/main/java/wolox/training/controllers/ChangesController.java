@@ -0,0 +1,67 @@
+package wolox.training.controllers;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import wolox.training.exception.InvalidQueryException;
+import wolox.training.service.ChangeFeedService;
+
+/**
+ * Changes controller, a feed of the changes of the books and users for the downstream consumers
+ *
+ * @author luismiguelrodriguez
+ */
+@RestController
+@RequestMapping("/api/changes")
+@Api
+public class ChangesController {
+
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    /**
+     * Feed of the outbox changes
+     */
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
+    /**
+     * Method to follow the changes of the books and users as Server-Sent Events, every event is a batch of
+     * changes and its id is the offset to resume from
+     *
+     * @param since       offset of the last change already received, the next change when it is not present
+     * @param lastEventId id of the last event received, sent by the clients when they reconnect
+     * @return return the stream of changes
+     */
+    @ApiOperation(value = "Method to follow the changes of the books and users")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Streaming changes"),
+            @ApiResponse(code = 400, message = "Invalid offset"),
+            @ApiResponse(code = 410, message = "Changes after the offset were pruned"),
+            @ApiResponse(code = 503, message = "Too many subscribers")
+    })
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changes(@RequestParam(required = false) Long since,
+                              @RequestHeader(value = LAST_EVENT_ID, required = false) String lastEventId) {
+        Long offset = since;
+        if (lastEventId != null) {
+            try {
+                offset = Long.valueOf(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                throw new InvalidQueryException("Invalid " + LAST_EVENT_ID + " " + lastEventId);
+            }
+        }
+        if (offset != null && offset < 0) {
+            throw new InvalidQueryException("The offset can not be negative");
+        }
+        return changeFeedService.subscribe(offset);
+    }
+}
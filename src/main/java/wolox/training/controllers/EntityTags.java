@@ -0,0 +1,204 @@
+package wolox.training.controllers;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import wolox.training.exception.PreconditionFailedException;
+import wolox.training.models.dto.EntityVersion;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Conversion between entity versions and the entity tags sent in the ETag, If-Match and If-None-Match headers
+ *
+ * @author luismiguelrodriguez
+ */
+final class EntityTags {
+
+    private static final String ANY = "*";
+    private static final String WEAK_PREFIX = "W/";
+    private static final String QUOTE = "\"";
+    private static final String EMBEDDED_SEPARATOR = "-";
+    private static final String LIST_SEPARATOR = ",";
+    private static final Set<String> CONTENT_CODINGS = Collections.singleton("gzip");
+
+    private EntityTags() {
+    }
+
+    /**
+     * Method to build the entity tag of a version
+     *
+     * @param version version of the entity
+     * @return return the quoted entity tag
+     */
+    static String of(Long version) {
+        return QUOTE + (version == null ? 0L : version) + QUOTE;
+    }
+
+    /**
+     * Method to build the entity tag of a version sent with a content coding, every coding of the same version is
+     * a different representation, so it needs its own tag
+     *
+     * @param version       version of the entity
+     * @param contentCoding content coding of the body, null when it is sent as is
+     * @return return the quoted entity tag, the version followed by the coding when there is one
+     */
+    static String of(Long version, String contentCoding) {
+        if (contentCoding == null) {
+            return of(version);
+        }
+        return QUOTE + (version == null ? 0L : version) + EMBEDDED_SEPARATOR + contentCoding + QUOTE;
+    }
+
+    /**
+     * Method to build the entity tag of an entity whose representation embeds other entities, it changes when
+     * the entity or any of the embedded entities change, and when an entity is embedded or removed
+     *
+     * @param version          version of the entity
+     * @param embeddedVersions versions of the embedded entities by identifier
+     * @return return the quoted entity tag, the version of the entity followed by a hash of the embedded versions
+     */
+    static String of(Long version, Map<Long, Long> embeddedVersions) {
+        if (embeddedVersions.isEmpty()) {
+            return of(version);
+        }
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        new TreeMap<>(embeddedVersions).forEach((id, embeddedVersion) ->
+                hasher.putLong(id).putLong(embeddedVersion == null ? 0L : embeddedVersion));
+        return QUOTE + (version == null ? 0L : version) + EMBEDDED_SEPARATOR
+                + Long.toHexString(hasher.hash().padToLong()) + QUOTE;
+    }
+
+    /**
+     * Method to get the last modification date of an entity whose representation embeds other entities
+     *
+     * @param lastModified         last modification date of the entity
+     * @param embeddedLastModified last modification dates of the embedded entities
+     * @return return the latest of the dates, null when none is known
+     */
+    static Instant latest(Instant lastModified, Stream<Instant> embeddedLastModified) {
+        return Stream.concat(Stream.of(lastModified), embeddedLastModified)
+                .filter(Objects::nonNull)
+                .max(Instant::compareTo)
+                .orElse(null);
+    }
+
+    /**
+     * Method to get the version expected by an If-Match header
+     *
+     * @param ifMatch value of the header
+     * @return return the expected version, null when any version is accepted. Weak tags never match, and
+     * only the version of the entity is checked in the tag of an entity with embedded entities or of a coding
+     */
+    static Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals(ANY)) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith(WEAK_PREFIX)) {
+            throw new PreconditionFailedException();
+        }
+        try {
+            String value = tag.replace(QUOTE, "");
+            int separator = value.indexOf(EMBEDDED_SEPARATOR);
+            return Long.valueOf(separator > 0 ? value.substring(0, separator) : value);
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException();
+        }
+    }
+
+    /**
+     * Method to know if a request is conditional, so the version of the entity can be checked before loading it
+     *
+     * @param request current request
+     * @return return true when the request has If-None-Match or If-Modified-Since headers
+     */
+    static boolean isConditional(WebRequest request) {
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    /**
+     * Method to check the version of an entity against the conditional headers, setting the status
+     * 304 when the client already has it
+     *
+     * @param request current request
+     * @param version version of the entity
+     * @return return true when the entity was not modified
+     */
+    static boolean isNotModified(WebRequest request, EntityVersion version) {
+        return isNotModified(request, held(request, version.getVersion()), version.getLastModified());
+    }
+
+    /**
+     * Method to find the tag of the representation of a version the client holds, it may be the tag of any of
+     * the content codings of the version
+     *
+     * @param request current request
+     * @param version version of the entity
+     * @return return the tag of the coding listed in the If-None-Match header, the tag of the version otherwise
+     */
+    private static String held(WebRequest request, Long version) {
+        String tag = of(version);
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null) {
+            return tag;
+        }
+        for (String listed : ifNoneMatch.split(LIST_SEPARATOR)) {
+            String candidate = listed.trim();
+            if (candidate.startsWith(WEAK_PREFIX)) {
+                candidate = candidate.substring(WEAK_PREFIX.length());
+            }
+            for (String contentCoding : CONTENT_CODINGS) {
+                if (candidate.equals(of(version, contentCoding))) {
+                    return candidate;
+                }
+            }
+        }
+        return tag;
+    }
+
+    /**
+     * Method to check an entity tag against the conditional headers, setting the status 304 when the client
+     * already has it
+     *
+     * @param request      current request
+     * @param tag          quoted entity tag of the entity
+     * @param lastModified last modification date of the entity
+     * @return return true when the entity was not modified
+     */
+    static boolean isNotModified(WebRequest request, String tag, Instant lastModified) {
+        return request.checkNotModified(tag, lastModified == null ? -1 : lastModified.toEpochMilli());
+    }
+
+    /**
+     * Method to start a successful response with the entity tag and the last modification date
+     *
+     * @param version      version of the entity
+     * @param lastModified last modification date of the entity
+     * @return return a response builder with the headers
+     */
+    static ResponseEntity.BodyBuilder ok(Long version, Instant lastModified) {
+        return ok(of(version), lastModified);
+    }
+
+    /**
+     * Method to start a successful response with an entity tag and the last modification date
+     *
+     * @param tag          quoted entity tag of the entity
+     * @param lastModified last modification date of the entity
+     * @return return a response builder with the headers
+     */
+    static ResponseEntity.BodyBuilder ok(String tag, Instant lastModified) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().eTag(tag);
+        return lastModified == null ? builder : builder.lastModified(lastModified);
+    }
+}
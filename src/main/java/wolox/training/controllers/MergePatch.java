@@ -0,0 +1,54 @@
+package wolox.training.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.BeanWrapperImpl;
+import wolox.training.exception.InvalidPatchException;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Conversion of JSON Merge Patch documents (RFC 7396) into the attribute changes of an entity
+ *
+ * @author luismiguelrodriguez
+ */
+final class MergePatch {
+
+    static final String MEDIA_TYPE = "application/merge-patch+json";
+
+    private MergePatch() {
+    }
+
+    /**
+     * Method to validate a patch and get the values to write. The patch is applied to an empty entity, so
+     * the setters of the entity validate every supplied attribute
+     *
+     * @param mapper    mapper used to apply the patch
+     * @param patch     merge patch document
+     * @param target    empty entity that receives the patch
+     * @param patchable attributes that can be changed through a patch
+     * @return return the new values by attribute name, in the order of the document
+     */
+    static Map<String, Object> changes(ObjectMapper mapper, ObjectNode patch, Object target, Set<String> patchable) {
+        Iterator<String> fields = patch.fieldNames();
+        while (fields.hasNext()) {
+            String field = fields.next();
+            if (!patchable.contains(field)) {
+                throw new InvalidPatchException("Field can not be patched: " + field);
+            }
+        }
+        try {
+            mapper.readerForUpdating(target).readValue(patch);
+        } catch (IOException | RuntimeException e) {
+            throw new InvalidPatchException("Invalid patch: " + e.getMessage());
+        }
+        BeanWrapperImpl values = new BeanWrapperImpl(target);
+        Map<String, Object> changes = new LinkedHashMap<>();
+        patch.fieldNames().forEachRemaining(field -> changes.put(field, values.getPropertyValue(field)));
+        return changes;
+    }
+}
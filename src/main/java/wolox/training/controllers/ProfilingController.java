@@ -0,0 +1,95 @@
+package wolox.training.controllers;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import wolox.training.models.dto.ProfileSummaryDTO;
+import wolox.training.service.ProfilingService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Profiling controller for the diagnosis of the running application, only the administrators can use it
+ *
+ * @author luismiguelrodriguez
+ */
+@RestController
+@RequestMapping("/api/admin/profiling")
+@Api
+public class ProfilingController {
+
+    /**
+     * Recorder of the application
+     */
+    @Autowired
+    private ProfilingService profilingService;
+
+    /**
+     * Method to record the application with Java Flight Recorder, the request waits until the recording ends
+     *
+     * @param seconds length of the recording
+     * @param profile configuration of the recorder, default or profile
+     * @return return the recording as a .jfr file
+     */
+    @ApiOperation(value = "Method to record the application with Java Flight Recorder")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Recording finished"),
+            @ApiResponse(code = 400, message = "Invalid length or profile"),
+            @ApiResponse(code = 409, message = "A recording is already in progress")
+    })
+    @PostMapping("/recording")
+    public ResponseEntity<StreamingResponseBody> recording(
+            @RequestParam(required = false, defaultValue = "30") int seconds,
+            @RequestParam(required = false, defaultValue = "profile") String profile) {
+        Path file = profilingService.record(seconds, profile);
+        String filename = "training-" + Instant.now().truncatedTo(ChronoUnit.SECONDS).toString().replace(':', '-') + ".jfr";
+        StreamingResponseBody body = outputStream -> {
+            try {
+                Files.copy(file, outputStream);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.builder("attachment").filename(filename).build().toString())
+                .body(body);
+    }
+
+    /**
+     * Method to record the application and summarize the recording
+     *
+     * @param seconds length of the recording
+     * @param profile configuration of the recorder, default or profile
+     * @return return the hot methods, allocation sites and lock contention of the application packages
+     */
+    @ApiOperation(value = "Method to record the application and summarize the recording", response = ProfileSummaryDTO.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Recording summarized"),
+            @ApiResponse(code = 400, message = "Invalid length or profile"),
+            @ApiResponse(code = 409, message = "A recording is already in progress")
+    })
+    @PostMapping("/summary")
+    @ResponseStatus(HttpStatus.OK)
+    public ProfileSummaryDTO summary(
+            @RequestParam(required = false, defaultValue = "30") int seconds,
+            @RequestParam(required = false, defaultValue = "profile") String profile) {
+        return profilingService.summarize(seconds, profile);
+    }
+}
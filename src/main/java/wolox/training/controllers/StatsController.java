@@ -0,0 +1,115 @@
+package wolox.training.controllers;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import wolox.training.models.dto.AuthenticationCacheStatsDTO;
+import wolox.training.models.dto.JsonCacheStatsDTO;
+import wolox.training.models.dto.PasswordHashingStatsDTO;
+import wolox.training.models.dto.SearchCacheStatsDTO;
+import wolox.training.security.AuthenticationCache;
+import wolox.training.security.PasswordHashingService;
+import wolox.training.service.BookJsonCache;
+import wolox.training.service.BookSearchCache;
+
+/**
+ * Stats controller containing the statistics of the in-process caches and pools
+ *
+ * @author luismiguelrodriguez
+ */
+@RestController
+@RequestMapping("/api/stats")
+@Api
+public class StatsController {
+
+    /**
+     * Cache of verified credentials
+     */
+    @Autowired
+    private AuthenticationCache authenticationCache;
+
+    /**
+     * Pool of password hashing
+     */
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    /**
+     * Cache of the book searches
+     */
+    @Autowired
+    private BookSearchCache bookSearchCache;
+
+    /**
+     * Cache of the encoded books
+     */
+    @Autowired
+    private BookJsonCache bookJsonCache;
+
+    /**
+     * Method to get the statistics of the authentication cache
+     *
+     * @return return hits, misses and time saved by the cache
+     */
+    @ApiOperation(value = "Method to get the statistics of the authentication cache", response = AuthenticationCacheStatsDTO.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Statistics retrieved successfully")
+    })
+    @GetMapping("/authentication-cache")
+    @ResponseStatus(HttpStatus.OK)
+    public AuthenticationCacheStatsDTO authenticationCache() {
+        return authenticationCache.stats();
+    }
+
+    /**
+     * Method to get the statistics of the password hashing pool
+     *
+     * @return return the queue depth, rejections and wait time of the pool
+     */
+    @ApiOperation(value = "Method to get the statistics of the password hashing pool", response = PasswordHashingStatsDTO.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Statistics retrieved successfully")
+    })
+    @GetMapping("/password-hashing")
+    @ResponseStatus(HttpStatus.OK)
+    public PasswordHashingStatsDTO passwordHashing() {
+        return passwordHashingService.stats();
+    }
+
+    /**
+     * Method to get the statistics of the book search cache
+     *
+     * @return return the hit ratio, evictions and estimated memory of the cache
+     */
+    @ApiOperation(value = "Method to get the statistics of the book search cache", response = SearchCacheStatsDTO.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Statistics retrieved successfully")
+    })
+    @GetMapping("/search-cache")
+    @ResponseStatus(HttpStatus.OK)
+    public SearchCacheStatsDTO searchCache() {
+        return bookSearchCache.stats();
+    }
+
+    /**
+     * Method to get the statistics of the encoded books cache
+     *
+     * @return return the hit ratio and size of the cache
+     */
+    @ApiOperation(value = "Method to get the statistics of the encoded books cache", response = JsonCacheStatsDTO.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Statistics retrieved successfully")
+    })
+    @GetMapping("/json-cache")
+    @ResponseStatus(HttpStatus.OK)
+    public JsonCacheStatsDTO jsonCache() {
+        return bookJsonCache.stats();
+    }
+}
@@ -1,17 +1,22 @@
 package wolox.training.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableSet;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -19,19 +24,36 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import wolox.training.exception.BookNotFoundException;
+import wolox.training.exception.PreconditionFailedException;
+import wolox.training.exception.UsernameTakenException;
 import wolox.training.exception.UsersNotFoundException;
 import wolox.training.models.Book;
+import wolox.training.models.ChangeEvent;
 import wolox.training.models.User;
+import wolox.training.models.dto.BookVersion;
+import wolox.training.models.dto.EntityVersion;
 import wolox.training.repositories.BookRepository;
 import wolox.training.repositories.UsersRepository;
+import wolox.training.security.AuthenticationCache;
 import wolox.training.security.IAuthenticationFacede;
+import wolox.training.security.PasswordHashingService;
+import wolox.training.service.BookPopularityService;
+import wolox.training.service.ChangeOutbox;
 
 import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * Users controller containing the operations of update , find , delete , find by id and create
@@ -43,12 +65,23 @@ import java.time.LocalDate;
 @Api
 public class UsersController {
 
+    /**
+     * Attributes that can be changed with a merge patch
+     */
+    private static final Set<String> USER_PATCHABLE_FIELDS = ImmutableSet.of("username", "name", "birthdate");
+
     /**
      * Repository of Users
      */
     @Autowired
     private UsersRepository usersRepository;
 
+    /**
+     * Mapper used to apply merge patches
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * Repository of Books
      */
@@ -59,7 +92,7 @@ public class UsersController {
      * Service  for encoding passwords.
      */
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
 
     /**
      * Interface for view user authenticate
@@ -67,21 +100,51 @@ public class UsersController {
     @Autowired
     private IAuthenticationFacede iAuthenticationFacede;
 
+    /**
+     * Cache of verified credentials, invalidated when a user changes
+     */
+    @Autowired
+    private AuthenticationCache authenticationCache;
+
+    /**
+     * Service of book owners counters
+     */
+    @Autowired
+    private BookPopularityService bookPopularityService;
+
+    /**
+     * Outbox of the changes feed
+     */
+    @Autowired
+    private ChangeOutbox changeOutbox;
+
     /**
      * Method for search elements
      *
-     * @param id variable used to identify the element to search
+     * @param id      variable used to identify the element to search
+     * @param request current request, a conditional request is answered with 304 when the element did not change
      * @return method that returns an object according to the id parameter
      */
     @ApiOperation(value = "Method to find a user", response = User.class)
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Successfuly retrieved user"),
+            @ApiResponse(code = 304, message = "User not modified"),
             @ApiResponse(code = 404, message = "User not found")
     })
     @GetMapping("/{id}")
-    @ResponseStatus(HttpStatus.OK)
-    public User findById(@PathVariable Long id) {
-        return usersRepository.findById(id).orElseThrow(UsersNotFoundException::new);
+    public ResponseEntity<User> findById(@PathVariable Long id, WebRequest request) {
+        if (EntityTags.isConditional(request)) {
+            EntityVersion version = usersRepository.findVersionById(id).orElseThrow(UsersNotFoundException::new);
+            List<BookVersion> books = usersRepository.findBookVersionsById(id);
+            Map<Long, Long> bookVersions = new HashMap<>();
+            books.forEach(book -> bookVersions.put(book.getId(), book.getVersion()));
+            if (EntityTags.isNotModified(request, EntityTags.of(version.getVersion(), bookVersions),
+                    EntityTags.latest(version.getLastModified(), books.stream().map(BookVersion::getLastModified)))) {
+                return null;
+            }
+        }
+        User user = usersRepository.findById(id).orElseThrow(UsersNotFoundException::new);
+        return tagged(user).body(user);
     }
 
     /**
@@ -92,92 +155,162 @@ public class UsersController {
      */
     @ApiOperation(value = "Method to create a user", response = User.class)
     @ApiResponses(value = {
-            @ApiResponse(code = 201, message = "Successfuly created user")
+            @ApiResponse(code = 201, message = "Successfuly created user"),
+            @ApiResponse(code = 409, message = "Username is already taken"),
+            @ApiResponse(code = 503, message = "Password hashing is saturated")
     })
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
+    @Transactional
     public User create(@RequestBody User user) {
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
-        return usersRepository.save(user);
+        user.setPassword(passwordHashingService.encode(user.getPassword()));
+        uniqueUsername(() -> usersRepository.saveAndFlush(user));
+        changeOutbox.record(ChangeEvent.USER, user.getId(), ChangeEvent.CREATED, user.getVersion());
+        return user;
     }
 
     /**
-     * Method for update element
+     * Method for update element, the password and the books of the user are changed through their own operations
      *
-     * @param user Object required to update a user
-     * @param id   variable used to identify the element to update
+     * @param user    Object required to update a user
+     * @param id      variable used to identify the element to update
+     * @param ifMatch entity tag of the version to update, any version when it is not present
      * @return return a view of the updated object
      */
     @ApiOperation(value = "Method to update a user", response = User.class)
     @ApiResponses(value = {
             @ApiResponse(code = 201, message = "Successfuly updated user"),
-            @ApiResponse(code = 404, message = "User not found")
+            @ApiResponse(code = 404, message = "User not found"),
+            @ApiResponse(code = 409, message = "Username is already taken"),
+            @ApiResponse(code = 412, message = "User was modified")
     })
     @PutMapping("/{id}")
-    @ResponseStatus(HttpStatus.OK)
-    public User update(@RequestBody User user, @PathVariable Long id) {
-        usersRepository.findById(id).orElseThrow(UsersNotFoundException::new);
-        user.setId(id);
-        return usersRepository.save(user);
+    @Transactional
+    public ResponseEntity<User> update(@RequestBody User user, @PathVariable Long id,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (uniqueUsername(() -> usersRepository.updateIfVersionMatches(id, EntityTags.parseVersion(ifMatch), user)) == 0) {
+            throw usersRepository.existsById(id) ? new PreconditionFailedException() : new UsersNotFoundException();
+        }
+        authenticationCache.invalidate(id);
+        User updated = usersRepository.findById(id).orElseThrow(UsersNotFoundException::new);
+        changeOutbox.record(ChangeEvent.USER, id, ChangeEvent.UPDATED, updated.getVersion());
+        return tagged(updated).body(updated);
+    }
+
+    /**
+     * Method for partial update of an element with a JSON Merge Patch document, only the supplied
+     * attributes are written
+     *
+     * @param patch   document with the attributes to change
+     * @param id      variable used to identify the element to update
+     * @param ifMatch entity tag of the version to update, any version when it is not present
+     * @return return a view of the updated object
+     */
+    @ApiOperation(value = "Method to partially update a user", response = User.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfuly updated user"),
+            @ApiResponse(code = 400, message = "Invalid patch"),
+            @ApiResponse(code = 404, message = "User not found"),
+            @ApiResponse(code = 409, message = "Username is already taken"),
+            @ApiResponse(code = 412, message = "User was modified")
+    })
+    @PatchMapping(value = "/{id}", consumes = MergePatch.MEDIA_TYPE)
+    @Transactional
+    public ResponseEntity<User> patch(@RequestBody ObjectNode patch, @PathVariable Long id,
+                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Map<String, Object> changes = MergePatch.changes(objectMapper, patch, new User(), USER_PATCHABLE_FIELDS);
+        if (!changes.isEmpty()
+                && uniqueUsername(() -> usersRepository.patchIfVersionMatches(id, EntityTags.parseVersion(ifMatch), changes)) == 0) {
+            throw usersRepository.existsById(id) ? new PreconditionFailedException() : new UsersNotFoundException();
+        }
+        authenticationCache.invalidate(id);
+        User updated = usersRepository.findById(id).orElseThrow(UsersNotFoundException::new);
+        if (!changes.isEmpty()) {
+            changeOutbox.record(ChangeEvent.USER, id, ChangeEvent.UPDATED, updated.getVersion());
+        }
+        return tagged(updated).body(updated);
     }
 
     /**
      * Method for delete element
      *
-     * @param id variable used to identify the element to delete
+     * @param id      variable used to identify the element to delete
+     * @param ifMatch entity tag of the version to delete, any version when it is not present
      */
     @ApiOperation(value = "Method to delete a user", response = User.class)
     @ApiResponses(value = {
             @ApiResponse(code = 204, message = "Successfuly deleted user"),
-            @ApiResponse(code = 404, message = "User not found")
+            @ApiResponse(code = 404, message = "User not found"),
+            @ApiResponse(code = 412, message = "User was modified")
     })
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void delete(@PathVariable Long id) {
-        usersRepository.findById(id).orElseThrow(UsersNotFoundException::new);
-        usersRepository.deleteById(id);
+    @Transactional
+    public void delete(@PathVariable Long id,
+                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        User user = findVersion(id, ifMatch);
+        List<Long> books = user.getBooks().stream().map(Book::getId).collect(Collectors.toList());
+        usersRepository.delete(user);
+        usersRepository.flush();
+        books.forEach(bookPopularityService::ownerRemoved);
+        changeOutbox.record(ChangeEvent.USER, id, ChangeEvent.DELETED, null);
+        authenticationCache.invalidate(id);
     }
 
     /**
      * Method to add a book to a user
      *
-     * @param id     User identifier to add a book
-     * @param bookid Book identifier to add
+     * @param id      User identifier to add a book
+     * @param bookid  Book identifier to add
+     * @param ifMatch entity tag of the version of the user, any version when it is not present
      */
     @ApiOperation(value = "Method to add a book to a user")
     @ApiResponses(value = {
             @ApiResponse(code = 201, message = "Book Add"),
             @ApiResponse(code = 404, message = "User not found"),
-            @ApiResponse(code = 404, message = "Book not found")
+            @ApiResponse(code = 404, message = "Book not found"),
+            @ApiResponse(code = 409, message = "User was modified concurrently"),
+            @ApiResponse(code = 412, message = "User was modified")
     })
     @PatchMapping("/{id}/add-books/{bookid}")
     @ResponseStatus(HttpStatus.CREATED)
-    public void addBook(@PathVariable Long id, @PathVariable Long bookid) {
-        User user = usersRepository.findById(id).orElseThrow(UsersNotFoundException::new);
+    @Transactional
+    public void addBook(@PathVariable Long id, @PathVariable Long bookid,
+                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        User user = findVersion(id, ifMatch);
         Book book = bookRepository.findById(bookid).orElseThrow(BookNotFoundException::new);
         user.addBook(book);
-        usersRepository.save(user);
+        usersRepository.saveAndFlush(user);
+        bookPopularityService.ownerAdded(bookid);
+        changeOutbox.record(ChangeEvent.USER, id, ChangeEvent.UPDATED, user.getVersion());
     }
 
     /**
      * Method to delete a book to a user
      *
-     * @param id     User identifier to delete a book
-     * @param bookid Book identifier to delete
+     * @param id      User identifier to delete a book
+     * @param bookid  Book identifier to delete
+     * @param ifMatch entity tag of the version of the user, any version when it is not present
      */
     @ApiOperation(value = "Method to delete a book to a user")
     @ApiResponses(value = {
             @ApiResponse(code = 204, message = "Book deleted"),
             @ApiResponse(code = 404, message = "User not found"),
-            @ApiResponse(code = 404, message = "Book not found")
+            @ApiResponse(code = 404, message = "Book not found"),
+            @ApiResponse(code = 409, message = "User was modified concurrently"),
+            @ApiResponse(code = 412, message = "User was modified")
     })
     @PatchMapping("/{id}/remove-books/{bookid}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void removeBook(@PathVariable Long id, @PathVariable Long bookid) {
-        User user = usersRepository.findById(id).orElseThrow(UsersNotFoundException::new);
+    @Transactional
+    public void removeBook(@PathVariable Long id, @PathVariable Long bookid,
+                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        User user = findVersion(id, ifMatch);
         Book book = bookRepository.findById(bookid).orElseThrow(BookNotFoundException::new);
         user.removeBook(book);
-        usersRepository.save(user);
+        usersRepository.saveAndFlush(user);
+        bookPopularityService.ownerRemoved(bookid);
+        changeOutbox.record(ChangeEvent.USER, id, ChangeEvent.UPDATED, user.getVersion());
     }
 
     /**
@@ -227,14 +360,63 @@ public class UsersController {
     @ApiOperation(value = "Method to update  password to a user")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Password update"),
-            @ApiResponse(code = 404, message = "User not found")
+            @ApiResponse(code = 404, message = "User not found"),
+            @ApiResponse(code = 503, message = "Password hashing is saturated")
     })
     @PutMapping("/password/{id}")
     @ResponseStatus(HttpStatus.OK)
+    @Transactional
     public void updatePassword(@PathVariable Long id, @RequestBody User user) {
-        usersRepository.findById(id).orElseThrow(UsersNotFoundException::new);
-        user.setId(id);
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
-        usersRepository.save(user);
+        if (usersRepository.updatePassword(id, passwordHashingService.encode(user.getPassword())) == 0) {
+            throw new UsersNotFoundException();
+        }
+        changeOutbox.record(ChangeEvent.USER, id, ChangeEvent.UPDATED,
+                usersRepository.findVersionById(id).map(EntityVersion::getVersion).orElse(null));
+        authenticationCache.invalidate(id);
+    }
+
+    /**
+     * Method to start a successful response with the entity tag of a user, the books are part of its
+     * representation so their versions are part of the tag
+     *
+     * @param user loaded user
+     * @return return a response builder with the headers
+     */
+    private static ResponseEntity.BodyBuilder tagged(User user) {
+        Map<Long, Long> bookVersions = new HashMap<>();
+        user.getBooks().forEach(book -> bookVersions.put(book.getId(), book.getVersion()));
+        return EntityTags.ok(EntityTags.of(user.getVersion(), bookVersions),
+                EntityTags.latest(user.getLastModified(), user.getBooks().stream().map(Book::getLastModified)));
+    }
+
+    /**
+     * Method to write the username of a user, the usernames are unique so a username taken by another user
+     * violates the unique index
+     *
+     * @param write statement that writes the username
+     * @return return the result of the statement
+     */
+    private static <T> T uniqueUsername(Supplier<T> write) {
+        try {
+            return write.get();
+        } catch (DataIntegrityViolationException e) {
+            throw new UsernameTakenException();
+        }
+    }
+
+    /**
+     * Method to load a user checking the version expected by the client
+     *
+     * @param id      User identifier
+     * @param ifMatch entity tag of the expected version, any version when it is not present
+     * @return return the user, its version is checked again by the persistence provider when it is written
+     */
+    private User findVersion(Long id, String ifMatch) {
+        User user = usersRepository.findById(id).orElseThrow(UsersNotFoundException::new);
+        Long version = EntityTags.parseVersion(ifMatch);
+        if (version != null && !version.equals(user.getVersion())) {
+            throw new PreconditionFailedException();
+        }
+        return user;
     }
 }
@@ -0,0 +1,4 @@
+package wolox.training.exception;
+
+public class HashingSaturatedException extends RuntimeException {
+}
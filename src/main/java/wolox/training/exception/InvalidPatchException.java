@@ -0,0 +1,8 @@
+package wolox.training.exception;
+
+public class InvalidPatchException extends RuntimeException {
+
+    public InvalidPatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package wolox.training.exception;
+
+public class RepeatedStatementException extends RuntimeException {
+
+    public RepeatedStatementException(String message) {
+        super(message);
+    }
+}
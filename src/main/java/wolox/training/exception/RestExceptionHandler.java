@@ -3,11 +3,16 @@ package wolox.training.exception;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
+import java.util.concurrent.TimeoutException;
+
 /**
  * Class for exception control
  *
@@ -26,9 +31,56 @@ public class RestExceptionHandler extends ResponseEntityExceptionHandler {
         return handleExceptionInternal(e, "book is already registered ", new HttpHeaders(), HttpStatus.CONFLICT, webRequest);
     }
 
+    @ExceptionHandler({UsernameTakenException.class})
+    protected ResponseEntity<Object> handleUsernameTaken(Exception e, WebRequest webRequest) {
+        return handleExceptionInternal(e, "Username is already taken", new HttpHeaders(), HttpStatus.CONFLICT, webRequest);
+    }
+
     @ExceptionHandler({UsersNotFoundException.class})
     protected ResponseEntity<Object> handleUserNotFound(Exception e, WebRequest webRequest) {
         return handleExceptionInternal(e, "User not found", new HttpHeaders(), HttpStatus.NOT_FOUND, webRequest);
     }
 
+    @ExceptionHandler({InvalidPatchException.class, InvalidQueryException.class})
+    protected ResponseEntity<Object> handleInvalidPatch(Exception e, WebRequest webRequest) {
+        return handleExceptionInternal(e, e.getMessage(), new HttpHeaders(), HttpStatus.BAD_REQUEST, webRequest);
+    }
+
+    @ExceptionHandler({PreconditionFailedException.class})
+    protected ResponseEntity<Object> handlePreconditionFailed(Exception e, WebRequest webRequest) {
+        return handleExceptionInternal(e, "Resource was modified, entity tag does not match", new HttpHeaders(), HttpStatus.PRECONDITION_FAILED, webRequest);
+    }
+
+    @ExceptionHandler({ChangesExpiredException.class})
+    protected ResponseEntity<Object> handleChangesExpired(Exception e, WebRequest webRequest) {
+        return handleExceptionInternal(e, "The changes after the offset were pruned, read the current state and follow the changes without an offset", new HttpHeaders(), HttpStatus.GONE, webRequest);
+    }
+
+    @ExceptionHandler({ProfilingInProgressException.class})
+    protected ResponseEntity<Object> handleProfilingInProgress(Exception e, WebRequest webRequest) {
+        return handleExceptionInternal(e, "A recording is already in progress", new HttpHeaders(), HttpStatus.CONFLICT, webRequest);
+    }
+
+    @ExceptionHandler({ObjectOptimisticLockingFailureException.class})
+    protected ResponseEntity<Object> handleConcurrentModification(Exception e, WebRequest webRequest) {
+        return handleExceptionInternal(e, "Resource was modified concurrently, try again", new HttpHeaders(), HttpStatus.CONFLICT, webRequest);
+    }
+
+    @ExceptionHandler({HashingSaturatedException.class, TaskRejectedException.class})
+    protected ResponseEntity<Object> handleHashingSaturated(Exception e, WebRequest webRequest) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        return handleExceptionInternal(e, "Server busy, try again later", headers, HttpStatus.SERVICE_UNAVAILABLE, webRequest);
+    }
+
+    @ExceptionHandler({TimeoutException.class})
+    protected ResponseEntity<Object> handleTimeout(Exception e, WebRequest webRequest) {
+        return handleExceptionInternal(e, "Request deadline exceeded", new HttpHeaders(), HttpStatus.GATEWAY_TIMEOUT, webRequest);
+    }
+
+    @ExceptionHandler({AuthenticationException.class})
+    protected ResponseEntity<Object> handleAuthentication(Exception e, WebRequest webRequest) {
+        return handleExceptionInternal(e, e.getMessage(), new HttpHeaders(), HttpStatus.UNAUTHORIZED, webRequest);
+    }
+
 }
@@ -1,6 +1,7 @@
 package wolox.training.models;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Preconditions;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
@@ -14,7 +15,9 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToMany;
 import javax.persistence.SequenceGenerator;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -78,6 +81,23 @@ public class Book {
     @ApiModelProperty(notes = "Isbn of book", required = true)
     private String isbn;
 
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(columnDefinition = "bigint default 0 not null")
+    @ApiModelProperty(notes = "Version of book, sent as entity tag")
+    private Long version;
+
+    @DatabaseTimestamp
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "last_modified")
+    @ApiModelProperty(notes = "Date of the last change of book")
+    private Instant lastModified;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "owners_count", insertable = false, updatable = false, columnDefinition = "bigint default 0 not null")
+    @ApiModelProperty(notes = "Number of users that own the book")
+    private long ownersCount;
+
     @JsonIgnore
     @ManyToMany(mappedBy = "books", fetch = FetchType.LAZY)
     private List<User> users = new ArrayList<>();
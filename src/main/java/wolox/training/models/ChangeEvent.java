@@ -0,0 +1,60 @@
+package wolox.training.models;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * Change of a book or a user, stored in the outbox in the same transaction as the change
+ *
+ * @author luismiguelrodriguez
+ */
+@Entity
+@Data
+@ApiModel(description = "Change Model")
+@Table(name = "change_outbox")
+public class ChangeEvent {
+
+    public static final String BOOK = "book";
+    public static final String USER = "user";
+
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "CHANGE_OUTBOX_SQ")
+    @SequenceGenerator(name = "CHANGE_OUTBOX_SQ", sequenceName = "CHANGE_OUTBOX_SQ", allocationSize = 1)
+    @ApiModelProperty(notes = "Offset of the change in the feed")
+    private Long id;
+
+    @Column(name = "entity_type", nullable = false)
+    @ApiModelProperty(notes = "Kind of the changed element, book or user")
+    private String entityType;
+
+    @Column(name = "entity_id", nullable = false)
+    @ApiModelProperty(notes = "Identifier of the changed element")
+    private Long entityId;
+
+    @Column(nullable = false)
+    @ApiModelProperty(notes = "Operation, created, updated or deleted")
+    private String operation;
+
+    @ApiModelProperty(notes = "Version of the element after the change, when it is known")
+    private Long version;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false)
+    @ApiModelProperty(notes = "Date of the change")
+    private Instant createdAt;
+}
@@ -0,0 +1,54 @@
+package wolox.training.models;
+
+import org.hibernate.annotations.ValueGenerationType;
+import org.hibernate.tuple.AnnotationValueGeneration;
+import org.hibernate.tuple.GenerationTiming;
+import org.hibernate.tuple.ValueGenerator;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Date of the last change of an entity taken from the clock of the database, the same clock of the
+ * CURRENT_TIMESTAMP of the update statements, so the date never goes backwards whatever the path of the change.
+ * It is written as current_timestamp by every insert and update of the entity and read back after them
+ *
+ * @author luismiguelrodriguez
+ */
+@ValueGenerationType(generatedBy = DatabaseTimestamp.Generation.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface DatabaseTimestamp {
+
+    class Generation implements AnnotationValueGeneration<DatabaseTimestamp> {
+
+        @Override
+        public void initialize(DatabaseTimestamp annotation, Class<?> propertyType) {
+        }
+
+        @Override
+        public GenerationTiming getGenerationTiming() {
+            return GenerationTiming.ALWAYS;
+        }
+
+        /**
+         * @return return null, the value is generated by the database
+         */
+        @Override
+        public ValueGenerator<?> getValueGenerator() {
+            return null;
+        }
+
+        @Override
+        public boolean referenceColumnInSql() {
+            return true;
+        }
+
+        @Override
+        public String getDatabaseGeneratedReferencedColumnValue() {
+            return "current_timestamp";
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package wolox.training.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateSerializer;
@@ -7,6 +8,7 @@ import com.google.common.base.Preconditions;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.Data;
+import org.hibernate.annotations.BatchSize;
 import wolox.training.exception.BookAlreadyOwnedException;
 import wolox.training.exception.BookNotFoundException;
 
@@ -25,7 +27,9 @@ import javax.persistence.InheritanceType;
 import javax.persistence.ManyToMany;
 import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -51,8 +55,8 @@ public class User {
     private Long id;
 
     @NotNull
-    @Column(nullable = false)
-    @ApiModelProperty(notes = "Username of user", required = true)
+    @Column(nullable = false, unique = true)
+    @ApiModelProperty(notes = "Username of user, unique", required = true)
     private String username;
 
     @ApiModelProperty(notes = "User's password")
@@ -71,6 +75,7 @@ public class User {
 
     @NotNull
     @ManyToMany(cascade = {CascadeType.MERGE, CascadeType.REFRESH}, fetch = FetchType.LAZY)
+    @BatchSize(size = 50)
     @ApiModelProperty(notes = "Books of a user", required = true)
     private List<Book> books = new ArrayList<>();
 
@@ -78,6 +83,26 @@ public class User {
     @JsonProperty("user_type")
     private String userType;
 
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(columnDefinition = "bigint default 0 not null")
+    @ApiModelProperty(notes = "Version of user, sent as entity tag")
+    private Long version;
+
+    @JsonIgnore
+    @Column(name = "credentials_version", columnDefinition = "bigint default 0 not null")
+    private long credentialsVersion;
+
+    @JsonIgnore
+    @Column(columnDefinition = "boolean default false not null")
+    private boolean admin;
+
+    @DatabaseTimestamp
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(name = "last_modified")
+    @ApiModelProperty(notes = "Date of the last change of user")
+    private Instant lastModified;
+
     public void setUsername(String username) {
         Preconditions.checkNotNull(username, "Username field is required");
         this.username = username;
@@ -0,0 +1,21 @@
+package wolox.training.models.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class AuthenticationCacheStatsDTO {
+
+    private long hits;
+
+    private long misses;
+
+    private double hitRatio;
+
+    private long size;
+
+    private double averageVerificationMillis;
+
+    private long savedMillis;
+}
@@ -0,0 +1,15 @@
+package wolox.training.models.dto;
+
+/**
+ * Projection of the attributes of a book used to tag cached searches
+ *
+ * @author luismiguelrodriguez
+ */
+public interface BookFacets {
+
+    String getGenre();
+
+    String getPublisher();
+
+    String getYear();
+}
@@ -0,0 +1,13 @@
+package wolox.training.models.dto;
+
+/**
+ * Projection of the owners counter of a book
+ *
+ * @author luismiguelrodriguez
+ */
+public interface BookOwnersCount {
+
+    Long getBookId();
+
+    long getOwners();
+}
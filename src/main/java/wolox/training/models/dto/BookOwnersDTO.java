@@ -0,0 +1,13 @@
+package wolox.training.models.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class BookOwnersDTO {
+
+    private Long bookId;
+
+    private long owners;
+}
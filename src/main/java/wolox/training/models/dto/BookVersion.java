@@ -0,0 +1,11 @@
+package wolox.training.models.dto;
+
+/**
+ * Projection of the identifier, the version and the last modification date of a book
+ *
+ * @author luismiguelrodriguez
+ */
+public interface BookVersion extends EntityVersion {
+
+    Long getId();
+}
@@ -0,0 +1,37 @@
+package wolox.training.models.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+/**
+ * Page envelope without the pageable and sort blocks of the Spring page
+ *
+ * @author luismiguelrodriguez
+ */
+@Data
+@Builder
+public class CompactPageDTO<T> {
+
+    private List<T> content;
+
+    private int page;
+
+    private int size;
+
+    private long totalElements;
+
+    private boolean hasNext;
+
+    public static <T> CompactPageDTO<T> of(Page<T> page) {
+        return CompactPageDTO.<T>builder()
+                .content(page.getContent())
+                .page(page.getNumber())
+                .size(page.getSize())
+                .totalElements(page.getTotalElements())
+                .hasNext(page.hasNext())
+                .build();
+    }
+}
@@ -0,0 +1,15 @@
+package wolox.training.models.dto;
+
+import java.time.Instant;
+
+/**
+ * Projection of the version and the last modification date of an entity
+ *
+ * @author luismiguelrodriguez
+ */
+public interface EntityVersion {
+
+    Long getVersion();
+
+    Instant getLastModified();
+}
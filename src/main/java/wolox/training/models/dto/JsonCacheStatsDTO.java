@@ -0,0 +1,21 @@
+package wolox.training.models.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class JsonCacheStatsDTO {
+
+    private long hits;
+
+    private long misses;
+
+    private double hitRatio;
+
+    private long evictions;
+
+    private long size;
+
+    private boolean offHeap;
+}
@@ -0,0 +1,11 @@
+package wolox.training.models.dto;
+
+import lombok.Data;
+
+@Data
+public class LoginDTO {
+
+    private String username;
+
+    private String password;
+}
@@ -0,0 +1,21 @@
+package wolox.training.models.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class PasswordHashingStatsDTO {
+
+    private int poolSize;
+
+    private int activeThreads;
+
+    private int queueDepth;
+
+    private long completed;
+
+    private long rejected;
+
+    private double averageWaitMillis;
+}
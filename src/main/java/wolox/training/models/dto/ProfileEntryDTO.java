@@ -0,0 +1,15 @@
+package wolox.training.models.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ProfileEntryDTO {
+
+    private String site;
+
+    private long events;
+
+    private long total;
+}
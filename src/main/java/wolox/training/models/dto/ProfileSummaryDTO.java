@@ -0,0 +1,34 @@
+package wolox.training.models.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ProfileSummaryDTO {
+
+    private String profile;
+
+    private int seconds;
+
+    private long executionSamples;
+
+    private long attributedSamples;
+
+    /**
+     * Methods of the application on the stack of the execution samples, the total is the number of samples
+     */
+    private List<ProfileEntryDTO> hotMethods;
+
+    /**
+     * Methods of the application that allocated, with the allocated class, the total is in bytes
+     */
+    private List<ProfileEntryDTO> allocationSites;
+
+    /**
+     * Methods of the application that waited for a monitor or parked on a lock, the total is in milliseconds
+     */
+    private List<ProfileEntryDTO> lockContention;
+}
@@ -0,0 +1,9 @@
+package wolox.training.models.dto;
+
+import lombok.Data;
+
+@Data
+public class RefreshTokenDTO {
+
+    private String refreshToken;
+}
@@ -0,0 +1,23 @@
+package wolox.training.models.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class SearchCacheStatsDTO {
+
+    private long hits;
+
+    private long misses;
+
+    private double hitRatio;
+
+    private long evictions;
+
+    private long invalidations;
+
+    private long size;
+
+    private long estimatedBytes;
+}
@@ -0,0 +1,17 @@
+package wolox.training.models.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class TokenDTO {
+
+    private String accessToken;
+
+    private String refreshToken;
+
+    private String tokenType;
+
+    private long expiresIn;
+}
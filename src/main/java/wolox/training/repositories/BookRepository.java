@@ -3,11 +3,17 @@ package wolox.training.repositories;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import wolox.training.models.Book;
+import wolox.training.models.dto.BookFacets;
+import wolox.training.models.dto.BookOwnersCount;
+import wolox.training.models.dto.EntityVersion;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -16,7 +22,25 @@ import java.util.Optional;
  * @author luismiguelrodriguez
  */
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
+
+    /**
+     * Method to get the version of a book without loading it
+     *
+     * @param id identifier of the book
+     * @return return the version and last modification date of the book
+     */
+    @Query("SELECT b.version AS version, b.lastModified AS lastModified FROM Book b WHERE b.id = :id")
+    Optional<EntityVersion> findVersionById(@Param("id") Long id);
+
+    /**
+     * Method to get the attributes that tag the cached searches of a book, without loading it
+     *
+     * @param id identifier of the book
+     * @return return the genre, publisher and year of the book
+     */
+    @Query("SELECT b.genre AS genre, b.publisher AS publisher, b.year AS year FROM Book b WHERE b.id = :id")
+    Optional<BookFacets> findFacetsById(@Param("id") Long id);
 
     /**
      * Method to search book by author
@@ -106,4 +130,64 @@ public interface BookRepository extends JpaRepository<Book, Long> {
             @Param("pages") String pages,
             @Param("isbn") String isbn,
             Pageable pageable);
+
+    /**
+     * Method to atomically add a delta to the owners counter of a book, the counter is part of the representation
+     * of the book so its version and last modification date change too
+     *
+     * @param id    identifier of the book
+     * @param delta value to add to the counter, negative to decrement it
+     * @return number of updated rows
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Book b SET b.ownersCount = b.ownersCount + :delta, b.version = b.version + 1, "
+            + "b.lastModified = CURRENT_TIMESTAMP WHERE b.id = :id")
+    int addToOwnersCount(@Param("id") Long id, @Param("delta") long delta);
+
+    /**
+     * Method to get the owners counter of a book without loading it
+     *
+     * @param id identifier of the book
+     * @return return the owners counter of the book
+     */
+    @Query("SELECT b.ownersCount FROM Book b WHERE b.id = :id")
+    Optional<Long> findOwnersCountById(@Param("id") Long id);
+
+    /**
+     * Method to get the owners counter of every owned book
+     *
+     * @return return the identifier and owners counter of the books with at least one owner
+     */
+    @Query("SELECT b.id AS bookId, b.ownersCount AS owners FROM Book b WHERE b.ownersCount > 0")
+    List<BookOwnersCount> findAllOwnersCounts();
+
+    /**
+     * Method to update a book in a single statement, only when its version matches
+     *
+     * @param id      identifier of the book to update
+     * @param version expected version of the book, null to update any version
+     * @param book    object with the new values
+     * @return number of updated rows, zero when the book does not exist or its version does not match
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Book b SET b.genre = :#{#book.genre}, b.author = :#{#book.author}, b.image = :#{#book.image}, "
+            + " b.title = :#{#book.title}, b.subtitle = :#{#book.subtitle}, b.publisher = :#{#book.publisher}, "
+            + " b.year = :#{#book.year}, b.pages = :#{#book.pages}, b.isbn = :#{#book.isbn}, "
+            + " b.version = b.version + 1, b.lastModified = CURRENT_TIMESTAMP"
+            + " WHERE b.id = :id AND (b.version = :version OR :version is null)")
+    int updateIfVersionMatches(@Param("id") Long id, @Param("version") Long version, @Param("book") Book book);
+
+    /**
+     * Method to delete a book in a single statement, only when its version matches
+     *
+     * @param id      identifier of the book to delete
+     * @param version expected version of the book, null to delete any version
+     * @return number of deleted rows, zero when the book does not exist or its version does not match
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Book b WHERE b.id = :id AND (b.version = :version OR :version is null)")
+    int deleteIfVersionMatches(@Param("id") Long id, @Param("version") Long version);
 }
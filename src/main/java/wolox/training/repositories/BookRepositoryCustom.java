@@ -0,0 +1,49 @@
+package wolox.training.repositories;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Book repository operations that are not derived by Spring Data
+ *
+ * @author luismiguelrodriguez
+ */
+public interface BookRepositoryCustom {
+
+    /**
+     * Method to update only the given attributes of a book, only when its version matches
+     *
+     * @param id      identifier of the book to update
+     * @param version expected version of the book, null to update any version
+     * @param changes new values by attribute name
+     * @return number of updated rows, zero when the book does not exist or its version does not match
+     */
+    int patchIfVersionMatches(Long id, Long version, Map<String, Object> changes);
+
+    /**
+     * Method to search books by publisher, genre and year selecting only some attributes
+     *
+     * @param fields    attributes to select
+     * @param publisher exact publisher, null for any
+     * @param genre     exact genre, null for any
+     * @param year      exact year, null for any
+     * @param pageable  requested page
+     * @return return the values of the selected attributes of the books
+     */
+    Page<Map<String, Object>> findFieldsByPublisherAndGenreAndYear(List<String> fields, String publisher, String genre,
+                                                                   String year, Pageable pageable);
+
+    /**
+     * Method to search books by any of the filters of findByAllParameters selecting only some attributes
+     *
+     * @param fields   attributes to select
+     * @param filters  case insensitive patterns by attribute, startYear and endYear bound the year, an empty
+     *                 filter matches any value
+     * @param pageable requested page
+     * @return return the values of the selected attributes of the books
+     */
+    Page<Map<String, Object>> findFieldsByAllParameters(List<String> fields, Map<String, String> filters, Pageable pageable);
+}
@@ -0,0 +1,82 @@
+package wolox.training.repositories;
+
+import com.google.common.collect.ImmutableList;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.annotation.Transactional;
+import wolox.training.models.Book;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.Predicate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class BookRepositoryImpl implements BookRepositoryCustom {
+
+    /**
+     * Attributes filtered with a case insensitive pattern by findByAllParameters
+     */
+    private static final List<String> PATTERN_FILTERS = ImmutableList.of(
+            "isbn", "genre", "author", "image", "title", "subtitle", "publisher");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int patchIfVersionMatches(Long id, Long version, Map<String, Object> changes) {
+        return PartialUpdates.update(entityManager, Book.class, id, version, changes);
+    }
+
+    @Override
+    public Page<Map<String, Object>> findFieldsByPublisherAndGenreAndYear(List<String> fields, String publisher,
+                                                                          String genre, String year, Pageable pageable) {
+        return SparseQueries.find(entityManager, Book.class, fields, (builder, root) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (publisher != null) {
+                predicates.add(builder.equal(root.get("publisher"), publisher));
+            }
+            if (genre != null) {
+                predicates.add(builder.equal(root.get("genre"), genre));
+            }
+            if (year != null) {
+                predicates.add(builder.equal(root.<String>get("year"), year));
+            }
+            return builder.and(predicates.toArray(new Predicate[0]));
+        }, pageable);
+    }
+
+    /**
+     * The empty filters are left out of the statement instead of being compared with an empty string
+     */
+    @Override
+    public Page<Map<String, Object>> findFieldsByAllParameters(List<String> fields, Map<String, String> filters,
+                                                               Pageable pageable) {
+        return SparseQueries.find(entityManager, Book.class, fields, (builder, root) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            for (String attribute : PATTERN_FILTERS) {
+                String pattern = filters.getOrDefault(attribute, "");
+                if (!pattern.isEmpty()) {
+                    predicates.add(builder.like(builder.upper(root.<String>get(attribute)), pattern.toUpperCase(Locale.ROOT)));
+                }
+            }
+            String startYear = filters.getOrDefault("startYear", "");
+            String endYear = filters.getOrDefault("endYear", "");
+            if (!startYear.isEmpty() && !endYear.isEmpty()) {
+                predicates.add(builder.between(root.<String>get("year"), startYear, endYear));
+            } else if (!startYear.isEmpty()) {
+                predicates.add(builder.greaterThanOrEqualTo(root.<String>get("year"), startYear));
+            } else if (!endYear.isEmpty()) {
+                predicates.add(builder.lessThanOrEqualTo(root.<String>get("year"), endYear));
+            }
+            String pages = filters.getOrDefault("pages", "");
+            if (!pages.isEmpty()) {
+                predicates.add(builder.equal(root.get("pages"), pages));
+            }
+            return builder.and(predicates.toArray(new Predicate[0]));
+        }, pageable);
+    }
+}
@@ -0,0 +1,65 @@
+package wolox.training.repositories;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import wolox.training.models.ChangeEvent;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ChangeEventRepository extends JpaRepository<ChangeEvent, Long> {
+
+    /**
+     * Method to read the changes after an offset
+     *
+     * @param since offset of the last change already read
+     * @param batch maximum number of changes to read
+     * @return return the changes sorted by offset
+     */
+    @Query("SELECT e FROM ChangeEvent e WHERE e.id > :since ORDER BY e.id")
+    List<ChangeEvent> findBatch(@Param("since") Long since, Pageable batch);
+
+    /**
+     * Method to get the offset of the last change
+     *
+     * @return return the highest offset, empty when the outbox is empty
+     */
+    @Query("SELECT MAX(e.id) FROM ChangeEvent e")
+    Optional<Long> findLastId();
+
+    /**
+     * Method to get the offset of the oldest retained change
+     *
+     * @return return the lowest offset, empty when the outbox is empty
+     */
+    @Query("SELECT MIN(e.id) FROM ChangeEvent e")
+    Optional<Long> findFirstId();
+
+    /**
+     * Method to get the offset of the last change recorded before a date
+     *
+     * @param before date after the recording of the change
+     * @return return the highest offset of the changes recorded before the date, empty when there is none
+     */
+    @Query("SELECT MAX(e.id) FROM ChangeEvent e WHERE e.createdAt < :before")
+    Optional<Long> findLastIdCreatedBefore(@Param("before") Instant before);
+
+    /**
+     * Method to delete the changes older than a date, the last change is kept so the offsets handed out are
+     * known after every change expired
+     *
+     * @param before date of the oldest change to keep
+     * @return number of deleted changes
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ChangeEvent e WHERE e.createdAt < :before AND e.id < (SELECT MAX(o.id) FROM ChangeEvent o)")
+    int deleteCreatedBefore(@Param("before") Instant before);
+}
@@ -0,0 +1,49 @@
+package wolox.training.repositories;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Update statements that only write the given columns of a versioned entity
+ *
+ * @author luismiguelrodriguez
+ */
+final class PartialUpdates {
+
+    private static final String ID = "id";
+    private static final String VERSION = "version";
+    private static final String LAST_MODIFIED = "lastModified";
+
+    private PartialUpdates() {
+    }
+
+    /**
+     * Method to update some attributes of an entity in a single statement, only when its version matches. The
+     * date of the change comes from the clock of the database, like in the other update statements
+     *
+     * @param entityManager entity manager of the current transaction
+     * @param type          class of the entity
+     * @param id            identifier of the entity
+     * @param version       expected version of the entity, null to update any version
+     * @param changes       new values by attribute name
+     * @return number of updated rows, zero when the entity does not exist or its version does not match
+     */
+    @SuppressWarnings("unchecked")
+    static <T> int update(EntityManager entityManager, Class<T> type, Long id, Long version, Map<String, Object> changes) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<T> update = builder.createCriteriaUpdate(type);
+        Root<T> root = update.from(type);
+        changes.forEach(update::set);
+        update.set(root.<Long>get(VERSION), builder.sum(root.<Long>get(VERSION), 1L));
+        update.set(root.<Instant>get(LAST_MODIFIED), (Expression<Instant>) (Expression<?>) builder.currentTimestamp());
+        Predicate byId = builder.equal(root.get(ID), id);
+        update.where(version == null ? byId : builder.and(byId, builder.equal(root.get(VERSION), version)));
+        return entityManager.createQuery(update).executeUpdate();
+    }
+}
@@ -0,0 +1,67 @@
+package wolox.training.repositories;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Queries that select only some attributes of an entity, so the columns that are not requested are never read
+ *
+ * @author luismiguelrodriguez
+ */
+final class SparseQueries {
+
+    private SparseQueries() {
+    }
+
+    /**
+     * Method to find a page of entities selecting only the given attributes
+     *
+     * @param entityManager entity manager of the current session
+     * @param type          class of the entity
+     * @param fields        attributes to select, in the order of the result
+     * @param where         builder of the filter of the query
+     * @param pageable      requested page
+     * @return return a page with the values of the selected attributes by name
+     */
+    static <T> Page<Map<String, Object>> find(EntityManager entityManager, Class<T> type, List<String> fields,
+                                              BiFunction<CriteriaBuilder, Root<T>, Predicate> where, Pageable pageable) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<T> root = query.from(type);
+        query.multiselect(fields.stream().map(field -> root.get(field).alias(field)).collect(Collectors.toList()));
+        query.where(where.apply(builder, root));
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, builder));
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        List<Map<String, Object>> content = typedQuery.getResultList().stream()
+                .map(tuple -> {
+                    Map<String, Object> values = new LinkedHashMap<>();
+                    fields.forEach(field -> values.put(field, tuple.get(field)));
+                    return values;
+                })
+                .collect(Collectors.toList());
+
+        CriteriaQuery<Long> count = builder.createQuery(Long.class);
+        Root<T> countRoot = count.from(type);
+        count.select(builder.count(countRoot)).where(where.apply(builder, countRoot));
+        return PageableExecutionUtils.getPage(content, pageable, () -> entityManager.createQuery(count).getSingleResult());
+    }
+}
@@ -3,12 +3,17 @@ package wolox.training.repositories;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import wolox.training.models.User;
+import wolox.training.models.dto.BookVersion;
+import wolox.training.models.dto.EntityVersion;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -17,7 +22,25 @@ import java.util.Optional;
  * @author luismiguelrodriguez
  */
 @Repository
-public interface UsersRepository extends JpaRepository<User, Long> {
+public interface UsersRepository extends JpaRepository<User, Long>, UsersRepositoryCustom {
+
+    /**
+     * Method to get the version of a user without loading it
+     *
+     * @param id identifier of the user
+     * @return return the version and last modification date of the user
+     */
+    @Query("SELECT u.version AS version, u.lastModified AS lastModified FROM User u WHERE u.id = :id")
+    Optional<EntityVersion> findVersionById(@Param("id") Long id);
+
+    /**
+     * Method to get the versions of the books of a user without loading them
+     *
+     * @param id identifier of the user
+     * @return return the identifier, version and last modification date of every book of the user
+     */
+    @Query("SELECT b.id AS id, b.version AS version, b.lastModified AS lastModified FROM User u JOIN u.books b WHERE u.id = :id")
+    List<BookVersion> findBookVersionsById(@Param("id") Long id);
 
     /**
      * Method to search users by username
@@ -27,6 +50,34 @@ public interface UsersRepository extends JpaRepository<User, Long> {
      */
     public Optional<User> findByUsername(String username);
 
+    /**
+     * Method to know if a user is an administrator
+     *
+     * @param username username of the user
+     * @return return true when the user exists and has the administrator role
+     */
+    boolean existsByUsernameAndAdminTrue(String username);
+
+    /**
+     * Method to grant or revoke the administrator role of a user
+     *
+     * @param id    identifier of the user
+     * @param admin true to grant the role, false to revoke it
+     * @return number of updated rows, zero when the user does not exist
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE User u SET u.admin = :admin WHERE u.id = :id")
+    int updateAdmin(@Param("id") Long id, @Param("admin") boolean admin);
+
+    /**
+     * Method to search the users that own a book
+     *
+     * @param bookId identifier of the owned book
+     * @return return a page of users that own the book
+     */
+    Page<User> findByBooksId(Long bookId, Pageable pageable);
+
     /**
      * Method to search users by startDate or endDate or name
      *
@@ -58,4 +109,48 @@ public interface UsersRepository extends JpaRepository<User, Long> {
             @Param("endDate") LocalDate endDate,
             @Param("name") String name,
             Pageable pageable);
+
+    /**
+     * Method to update the profile of a user in a single statement, only when its version matches. The
+     * password and the books of the user are changed through their own operations
+     *
+     * @param id      identifier of the user to update
+     * @param version expected version of the user, null to update any version
+     * @param user    object with the new values
+     * @return number of updated rows, zero when the user does not exist or its version does not match
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.username = :#{#user.username}, u.name = :#{#user.name}, "
+            + " u.birthdate = :#{#user.birthdate}, u.version = u.version + 1, u.lastModified = CURRENT_TIMESTAMP"
+            + " WHERE u.id = :id AND (u.version = :version OR :version is null)")
+    int updateIfVersionMatches(@Param("id") Long id, @Param("version") Long version, @Param("user") User user);
+
+    /**
+     * Method to change the password of a user, its credentials version changes so the refresh tokens issued
+     * before are rejected
+     *
+     * @param id       identifier of the user
+     * @param password new password hash
+     * @return number of updated rows, zero when the user does not exist
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE User u SET u.password = :password, u.credentialsVersion = u.credentialsVersion + 1,"
+            + " u.version = u.version + 1, u.lastModified = CURRENT_TIMESTAMP WHERE u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
+
+    /**
+     * Method to store a new hash of the same password, encoded with the current settings. The password does not
+     * change, so the user and its refresh tokens keep their versions
+     *
+     * @param id       identifier of the user
+     * @param previous verified password hash, nothing is written when the hash changed meanwhile
+     * @param password new password hash
+     * @return number of updated rows, zero when the user does not exist or its hash changed
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE User u SET u.password = :password WHERE u.id = :id AND u.password = :previous")
+    int rehashPassword(@Param("id") Long id, @Param("previous") String previous, @Param("password") String password);
 }
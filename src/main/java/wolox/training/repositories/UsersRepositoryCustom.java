@@ -0,0 +1,21 @@
+package wolox.training.repositories;
+
+import java.util.Map;
+
+/**
+ * Users repository operations that are not derived by Spring Data
+ *
+ * @author luismiguelrodriguez
+ */
+public interface UsersRepositoryCustom {
+
+    /**
+     * Method to update only the given attributes of a user, only when its version matches
+     *
+     * @param id      identifier of the user to update
+     * @param version expected version of the user, null to update any version
+     * @param changes new values by attribute name
+     * @return number of updated rows, zero when the user does not exist or its version does not match
+     */
+    int patchIfVersionMatches(Long id, Long version, Map<String, Object> changes);
+}
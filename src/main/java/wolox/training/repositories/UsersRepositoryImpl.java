@@ -0,0 +1,20 @@
+package wolox.training.repositories;
+
+import org.springframework.transaction.annotation.Transactional;
+import wolox.training.models.User;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Map;
+
+public class UsersRepositoryImpl implements UsersRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int patchIfVersionMatches(Long id, Long version, Map<String, Object> changes) {
+        return PartialUpdates.update(entityManager, User.class, id, version, changes);
+    }
+}
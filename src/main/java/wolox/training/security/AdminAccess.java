@@ -0,0 +1,31 @@
+package wolox.training.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import wolox.training.repositories.UsersRepository;
+
+/**
+ * Administrators of the application, the users with the administrator role. The role is stored with the user and
+ * only an administrator can grant it, the first one is granted in the database. It is read on every request of
+ * the administration endpoints, so a revoked role takes effect on the next request
+ *
+ * @author luismiguelrodriguez
+ */
+@Component
+public class AdminAccess {
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    /**
+     * Method to check if a user is an administrator
+     *
+     * @param authentication authentication of the request
+     * @return return true when the authenticated user has the administrator role
+     */
+    public boolean isAdmin(Authentication authentication) {
+        return authentication != null && authentication.isAuthenticated()
+                && usersRepository.existsByUsernameAndAdminTrue(authentication.getName());
+    }
+}
@@ -0,0 +1,169 @@
+package wolox.training.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import wolox.training.models.dto.AuthenticationCacheStatsDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Short lived cache of verified credentials, so the password hash is not checked again on every request.
+ * Credentials are stored as a keyed hash of username and password, the key is random and never leaves the process.
+ * Users are invalidated when their transaction commits, and a verification that overlaps an invalidation is not
+ * stored since it may have read the user before the change
+ *
+ * @author luismiguelrodriguez
+ */
+@Component
+public class AuthenticationCache {
+
+    private static final int KEY_BYTES = 32;
+
+    private final HashFunction credentialsHash;
+
+    /**
+     * Identifier of the user by hash of verified credentials
+     */
+    private final Cache<HashCode, Long> verifiedCredentials;
+
+    /**
+     * Number of invalidations, the user is loaded by username so the generation is shared by every user
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder verificationNanos = new LongAdder();
+    private final LongAdder savedNanos = new LongAdder();
+
+    public AuthenticationCache(@Value("${auth.cache.ttl-seconds:60}") long ttlSeconds,
+                               @Value("${auth.cache.maximum-size:10000}") long maximumSize) {
+        byte[] key = new byte[KEY_BYTES];
+        new SecureRandom().nextBytes(key);
+        this.credentialsHash = Hashing.hmacSha256(key);
+        this.verifiedCredentials = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Method to know if the credentials were verified recently
+     *
+     * @param username name of the user
+     * @param password password sent by the user
+     * @return return true when the credentials are in the cache
+     */
+    public boolean isVerified(String username, String password) {
+        boolean verified = verifiedCredentials.getIfPresent(hash(username, password)) != null;
+        if (verified) {
+            savedNanos.add(averageVerificationNanos());
+        }
+        return verified;
+    }
+
+    /**
+     * Method to get the current generation, it must be read before loading the user to verify
+     *
+     * @return return the number of invalidations so far
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Method to store credentials that were verified against the password hash, they are dropped when a user was
+     * invalidated since the generation was read
+     *
+     * @param username          name of the user
+     * @param password          password sent by the user
+     * @param userId            identifier of the user
+     * @param generation        generation read before loading the user
+     * @param verificationNanos time spent verifying the credentials
+     */
+    public void verified(String username, String password, Long userId, long generation, long verificationNanos) {
+        verifications.increment();
+        this.verificationNanos.add(verificationNanos);
+        HashCode key = hash(username, password);
+        verifiedCredentials.put(key, userId);
+        if (this.generation.get() != generation) {
+            verifiedCredentials.asMap().remove(key, userId);
+        }
+    }
+
+    /**
+     * Method to forget every verified credential of a user, used when the user changes or is deleted. Inside a
+     * transaction they are forgotten when it commits, so a concurrent login can not store the previous credentials
+     *
+     * @param userId identifier of the user
+     */
+    public void invalidate(Long userId) {
+        afterCommit(() -> {
+            generation.incrementAndGet();
+            verifiedCredentials.asMap().values().removeIf(userId::equals);
+        });
+    }
+
+    /**
+     * Method to forget every verified credential, used when the changed users are not known
+     */
+    public void invalidateAll() {
+        afterCommit(() -> {
+            generation.incrementAndGet();
+            verifiedCredentials.invalidateAll();
+        });
+    }
+
+    /**
+     * Method to get the statistics of the cache
+     *
+     * @return return hits, misses and time saved by the cache
+     */
+    public AuthenticationCacheStatsDTO stats() {
+        return AuthenticationCacheStatsDTO.builder()
+                .hits(verifiedCredentials.stats().hitCount())
+                .misses(verifiedCredentials.stats().missCount())
+                .hitRatio(verifiedCredentials.stats().hitRate())
+                .size(verifiedCredentials.size())
+                .averageVerificationMillis(averageVerificationNanos() / 1_000_000d)
+                .savedMillis(TimeUnit.NANOSECONDS.toMillis(savedNanos.sum()))
+                .build();
+    }
+
+    private long averageVerificationNanos() {
+        long count = verifications.sum();
+        return count == 0 ? 0 : verificationNanos.sum() / count;
+    }
+
+    private HashCode hash(String username, String password) {
+        return credentialsHash.newHasher()
+                .putInt(username.length())
+                .putString(username, StandardCharsets.UTF_8)
+                .putString(password, StandardCharsets.UTF_8)
+                .hash();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
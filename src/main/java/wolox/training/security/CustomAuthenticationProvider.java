@@ -1,15 +1,20 @@
 package wolox.training.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
+import wolox.training.config.RequestTimings;
+import wolox.training.models.User;
 import wolox.training.repositories.UsersRepository;
 
+import javax.annotation.PostConstruct;
 import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class CustomAuthenticationProvider implements AuthenticationProvider {
@@ -18,15 +23,47 @@ public class CustomAuthenticationProvider implements AuthenticationProvider {
     private UsersRepository usersRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private AuthenticationCache authenticationCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer cached;
+    private Timer verified;
+    private Timer rejected;
+
+    @PostConstruct
+    public void registerMeters() {
+        cached = timer("cached");
+        verified = timer("verified");
+        rejected = timer("rejected");
+    }
 
     @Override
     public Authentication authenticate(Authentication authentication) {
+        long start = System.nanoTime();
         String name = authentication.getName();
         String password = authentication.getCredentials().toString();
-        usersRepository.findByUsername(name)
-                .filter(user -> passwordEncoder.matches(password, user.getPassword()))
-                .orElseThrow(() -> new BadCredentialsException("Bad Credencial"));
+        if (authenticationCache.isVerified(name, password)) {
+            record(cached, start);
+        } else {
+            long generation = authenticationCache.generation();
+            User user = usersRepository.findByUsername(name)
+                    .filter(candidate -> passwordHashingService.matches(password, candidate.getPassword()))
+                    .orElse(null);
+            if (user == null) {
+                record(rejected, start);
+                throw new BadCredentialsException("Bad Credencial");
+            }
+            authenticationCache.verified(name, password, user.getId(), generation, System.nanoTime() - start);
+            if (passwordHashingService.upgradeEncoding(user.getPassword())) {
+                usersRepository.rehashPassword(user.getId(), user.getPassword(), passwordHashingService.encode(password));
+            }
+            record(verified, start);
+        }
 
         return new UsernamePasswordAuthenticationToken(name, password, new ArrayList<>());
     }
@@ -35,4 +72,17 @@ public class CustomAuthenticationProvider implements AuthenticationProvider {
     public boolean supports(Class<?> authentication) {
         return authentication.equals(UsernamePasswordAuthenticationToken.class);
     }
+
+    private static void record(Timer timer, long start) {
+        long elapsed = System.nanoTime() - start;
+        timer.record(elapsed, TimeUnit.NANOSECONDS);
+        RequestTimings.add(RequestTimings.Phase.AUTH, elapsed);
+    }
+
+    private Timer timer(String outcome) {
+        return Timer.builder("authentication")
+                .description("Time of the password authentications, cached ones skip the password hash")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
 }
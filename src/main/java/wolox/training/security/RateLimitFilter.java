@@ -0,0 +1,93 @@
+package wolox.training.security;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects with 429 the requests of a client that spent its limit, the client key is resolved by every subclass
+ *
+ * @author luismiguelrodriguez
+ */
+public abstract class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+
+    protected RateLimitFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Method to get the key of the client of a request
+     *
+     * @param request current request
+     * @return return the client key, or null when the request is not limited by this filter
+     */
+    protected abstract String clientKey(HttpServletRequest request);
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String client = clientKey(request);
+        if (client != null) {
+            String path = request.getRequestURI().substring(request.getContextPath().length());
+            long waitNanos = rateLimiter.tryAcquire(path, client);
+            if (waitNanos > 0) {
+                long retryAfter = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+                response.sendError(HttpStatus.TOO_MANY_REQUESTS.value());
+                return;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Limits by client address, it runs before the authentication so anonymous floods never reach BCrypt. Behind
+     * a proxy the remote address is the client sent in X-Forwarded-For, resolved by the forward headers strategy
+     * only for trusted proxies, so a client can not pick its own bucket
+     */
+    public static class ClientIp extends RateLimitFilter {
+
+        public ClientIp(RateLimiter rateLimiter) {
+            super(rateLimiter);
+        }
+
+        @Override
+        protected String clientKey(HttpServletRequest request) {
+            return "ip:" + request.getRemoteAddr();
+        }
+    }
+
+    /**
+     * Limits by authenticated principal, it runs after the authentication
+     */
+    public static class Principal extends RateLimitFilter {
+
+        private final IAuthenticationFacede authenticationFacede;
+
+        public Principal(RateLimiter rateLimiter, IAuthenticationFacede authenticationFacede) {
+            super(rateLimiter);
+            this.authenticationFacede = authenticationFacede;
+        }
+
+        @Override
+        protected String clientKey(HttpServletRequest request) {
+            Authentication authentication = authenticationFacede.getAutentication();
+            if (authentication == null || !authentication.isAuthenticated()
+                    || authentication instanceof AnonymousAuthenticationToken) {
+                return null;
+            }
+            return "user:" + authentication.getName();
+        }
+    }
+}
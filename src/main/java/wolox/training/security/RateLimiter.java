@@ -0,0 +1,100 @@
+package wolox.training.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.util.AntPathMatcher;
+import wolox.training.config.RateLimitProperties;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limiter with one token bucket by client and route. The buckets are lock free and live in a bounded cache
+ * that evicts the idle ones, so memory does not grow with the number of clients
+ *
+ * @author luismiguelrodriguez
+ */
+public class RateLimiter {
+
+    private static final String DEFAULT_ROUTE = "*";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final List<RateLimitProperties.Route> routes;
+    private final RateLimitProperties.Limit defaults;
+    private final Cache<String, TokenBucket> buckets;
+
+    public RateLimiter(RateLimitProperties properties) {
+        this.routes = properties.getRoutes();
+        this.defaults = properties.getDefaults();
+        this.buckets = CacheBuilder.newBuilder()
+                .expireAfterAccess(properties.getIdleExpirySeconds(), TimeUnit.SECONDS)
+                .maximumSize(properties.getMaximumBuckets())
+                .build();
+    }
+
+    /**
+     * Method to take a request from the bucket of a client
+     *
+     * @param path   path of the request
+     * @param client key of the client
+     * @return return zero when the request is allowed, otherwise the nanoseconds to wait before retrying
+     */
+    public long tryAcquire(String path, String client) {
+        RateLimitProperties.Limit limit = defaults;
+        String route = DEFAULT_ROUTE;
+        for (RateLimitProperties.Route candidate : routes) {
+            if (pathMatcher.match(candidate.getPattern(), path)) {
+                limit = candidate;
+                route = candidate.getPattern();
+                break;
+            }
+        }
+        String key = route + ' ' + client;
+        TokenBucket bucket = buckets.getIfPresent(key);
+        if (bucket == null) {
+            bucket = newBucket(key, limit);
+        }
+        return bucket.tryAcquire(System.nanoTime());
+    }
+
+    private TokenBucket newBucket(String key, RateLimitProperties.Limit limit) {
+        try {
+            return buckets.get(key, () -> new TokenBucket(limit.getCapacity(), limit.getRefillPerSecond()));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Token bucket kept as the theoretical arrival time of the next request (GCRA), a single atomic value that is
+     * updated with compare and set
+     */
+    static class TokenBucket {
+
+        private final long emissionIntervalNanos;
+        private final long burstToleranceNanos;
+        private final AtomicLong theoreticalArrival;
+
+        TokenBucket(long capacity, double refillPerSecond) {
+            this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refillPerSecond);
+            this.burstToleranceNanos = emissionIntervalNanos * Math.max(capacity - 1, 0);
+            this.theoreticalArrival = new AtomicLong(System.nanoTime());
+        }
+
+        long tryAcquire(long now) {
+            while (true) {
+                long arrival = theoreticalArrival.get();
+                long earliest = arrival - burstToleranceNanos;
+                if (now - earliest < 0) {
+                    return earliest - now;
+                }
+                long next = Math.max(arrival - now, 0) + now + emissionIntervalNanos;
+                if (theoreticalArrival.compareAndSet(arrival, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -1,20 +1,46 @@
 package wolox.training.security;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusScrapeEndpoint;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import wolox.training.config.RateLimitProperties;
 
 @Configuration
 @EnableWebSecurity
+@EnableConfigurationProperties(RateLimitProperties.class)
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Autowired
     private CustomAuthenticationProvider authProvider;
 
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private IAuthenticationFacede authenticationFacede;
+
+    @Autowired
+    private RateLimitProperties rateLimitProperties;
+
+    /**
+     * HTTP Basic sends the password on every request, it is only kept as an opt-in fallback of the tokens
+     */
+    @Value("${auth.basic.enabled:false}")
+    private boolean basicEnabled;
+
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
         auth.authenticationProvider(authProvider);
@@ -24,13 +50,32 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     protected void configure(HttpSecurity http) throws Exception {
         http
                 .authorizeRequests()
-                .antMatchers(HttpMethod.POST, "/api/users", "/api/books").permitAll()
+                .antMatchers(HttpMethod.POST, "/api/users", "/api/books", "/api/auth/login", "/api/auth/refresh").permitAll()
+                .requestMatchers(EndpointRequest.to(HealthEndpoint.class, PrometheusScrapeEndpoint.class)).permitAll()
+                .antMatchers("/api/admin/**").access("@adminAccess.isAdmin(authentication)")
                 .anyRequest()
                 .authenticated()
                 .and()
-                .httpBasic()
+                .addFilterBefore(new TokenAuthenticationFilter(tokenService), BasicAuthenticationFilter.class)
+                .sessionManagement()
+                .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 .and()
                 .csrf().disable();
 
+        if (rateLimitProperties.isEnabled()) {
+            RateLimiter rateLimiter = new RateLimiter(rateLimitProperties);
+            http
+                    .addFilterBefore(new RateLimitFilter.ClientIp(rateLimiter), TokenAuthenticationFilter.class)
+                    .addFilterAfter(new RateLimitFilter.Principal(rateLimiter, authenticationFacede), BasicAuthenticationFilter.class);
+        }
+
+        if (basicEnabled) {
+            http
+                    .httpBasic()
+                    .and()
+                    .addFilterBefore(new HashingSaturatedFilter(), BasicAuthenticationFilter.class);
+        } else {
+            http.exceptionHandling().authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED));
+        }
     }
 }
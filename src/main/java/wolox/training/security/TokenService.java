@@ -0,0 +1,174 @@
+package wolox.training.security;
+
+import com.google.common.base.Splitter;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import wolox.training.models.dto.TokenDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Issues and verifies signed, self contained tokens, so an authenticated request is checked with an HMAC
+ * instead of a database query and a password hash. Refresh tokens carry a stamp of the identifier and the
+ * credentials version of the user, so they stop being accepted once the password changes or the user is deleted.
+ * A new hash of the same password keeps the credentials version
+ *
+ * @author luismiguelrodriguez
+ */
+@Component
+public class TokenService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenService.class);
+
+    static final String ACCESS = "access";
+    static final String REFRESH = "refresh";
+    private static final String TOKEN_TYPE = "Bearer";
+    private static final char FIELD_SEPARATOR = '|';
+    private static final char SIGNATURE_SEPARATOR = '.';
+    private static final int GENERATED_KEY_BYTES = 32;
+    private static final int STAMP_BYTES = 16;
+    private static final String STAMP_PREFIX = "stamp|";
+
+    private final HashFunction signature;
+    private final long accessTtlSeconds;
+    private final long refreshTtlSeconds;
+    private final Clock clock;
+
+    @Autowired
+    public TokenService(@Value("${auth.token.secret:}") String secret,
+                        @Value("${auth.token.access-ttl-seconds:900}") long accessTtlSeconds,
+                        @Value("${auth.token.refresh-ttl-seconds:86400}") long refreshTtlSeconds) {
+        this(secret, accessTtlSeconds, refreshTtlSeconds, Clock.systemUTC());
+    }
+
+    TokenService(String secret, long accessTtlSeconds, long refreshTtlSeconds, Clock clock) {
+        this.signature = Hashing.hmacSha256(key(secret));
+        this.accessTtlSeconds = accessTtlSeconds;
+        this.refreshTtlSeconds = refreshTtlSeconds;
+        this.clock = clock;
+    }
+
+    /**
+     * Method to issue the tokens of an authenticated user
+     *
+     * @param username           name of the authenticated user
+     * @param userId             identifier of the user, the refresh token is bound to it
+     * @param credentialsVersion credentials version of the user, the refresh token is bound to it
+     * @return return an access token and a refresh token
+     */
+    public TokenDTO issue(String username, Long userId, long credentialsVersion) {
+        return TokenDTO.builder()
+                .accessToken(sign(ACCESS, username, "", accessTtlSeconds))
+                .refreshToken(sign(REFRESH, username, stamp(userId, credentialsVersion), refreshTtlSeconds))
+                .tokenType(TOKEN_TYPE)
+                .expiresIn(accessTtlSeconds)
+                .build();
+    }
+
+    /**
+     * Method to verify an access token
+     *
+     * @param token token sent by the client
+     * @return return the username when the token is valid and not expired
+     */
+    public Optional<String> verifyAccess(String token) {
+        return verify(ACCESS, token).map(fields -> fields.get(3));
+    }
+
+    /**
+     * Method to read the user of a refresh token, the token must be checked against the credentials of the user
+     * before trusting it
+     *
+     * @param token token sent by the client
+     * @return return the username when the token is valid and not expired
+     */
+    public Optional<String> verifyRefresh(String token) {
+        return verify(REFRESH, token).map(fields -> fields.get(3));
+    }
+
+    /**
+     * Method to verify a refresh token against the current credentials of its user
+     *
+     * @param token              token sent by the client
+     * @param userId             identifier of the user
+     * @param credentialsVersion current credentials version of the user
+     * @return return the username when the token is valid, not expired and issued for the same credentials
+     */
+    public Optional<String> verifyRefresh(String token, Long userId, long credentialsVersion) {
+        String stamp = stamp(userId, credentialsVersion);
+        return verify(REFRESH, token)
+                .filter(fields -> MessageDigest.isEqual(
+                        fields.get(2).getBytes(StandardCharsets.UTF_8), stamp.getBytes(StandardCharsets.UTF_8)))
+                .map(fields -> fields.get(3));
+    }
+
+    private String sign(String type, String username, String stamp, long ttlSeconds) {
+        long expiresAt = clock.instant().getEpochSecond() + ttlSeconds;
+        String payload = type + FIELD_SEPARATOR + expiresAt + FIELD_SEPARATOR + stamp + FIELD_SEPARATOR + username;
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8))
+                + SIGNATURE_SEPARATOR
+                + encoder.encodeToString(mac(payload));
+    }
+
+    /**
+     * Verify the signature, the type and the expiration of a token
+     *
+     * @return return the type, expiration, stamp and username of a valid token
+     */
+    private Optional<List<String>> verify(String type, String token) {
+        int separator = token == null ? -1 : token.indexOf(SIGNATURE_SEPARATOR);
+        if (separator < 0) {
+            return Optional.empty();
+        }
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            String payload = new String(decoder.decode(token.substring(0, separator)), StandardCharsets.UTF_8);
+            byte[] sent = decoder.decode(token.substring(separator + 1));
+            if (!MessageDigest.isEqual(sent, mac(payload))) {
+                return Optional.empty();
+            }
+            List<String> fields = Splitter.on(FIELD_SEPARATOR).limit(4).splitToList(payload);
+            boolean valid = fields.size() == 4
+                    && type.equals(fields.get(0))
+                    && Long.parseLong(fields.get(1)) > clock.instant().getEpochSecond();
+            return valid ? Optional.of(fields) : Optional.empty();
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stamp of the credentials of a user, a truncated HMAC
+     */
+    private String stamp(Long userId, long credentialsVersion) {
+        byte[] mac = mac(STAMP_PREFIX + userId + FIELD_SEPARATOR + credentialsVersion);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(mac, STAMP_BYTES));
+    }
+
+    private byte[] mac(String payload) {
+        return signature.hashString(payload, StandardCharsets.UTF_8).asBytes();
+    }
+
+    private static byte[] key(String secret) {
+        if (secret != null && !secret.isEmpty()) {
+            return secret.getBytes(StandardCharsets.UTF_8);
+        }
+        LOGGER.warn("auth.token.secret is not set, tokens are signed with a random key and are only valid in this instance");
+        byte[] key = new byte[GENERATED_KEY_BYTES];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+}
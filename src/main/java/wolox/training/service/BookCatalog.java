@@ -0,0 +1,576 @@
+package wolox.training.service;
+
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import wolox.training.models.Book;
+import wolox.training.models.ChangeEvent;
+import wolox.training.models.dto.EntityVersion;
+import wolox.training.repositories.ChangeEventRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Read model of every book kept in memory by column, it answers the reads of the catalog without a round trip
+ * to the database. It is loaded from a memory mapped snapshot, or from the table when there is no recent
+ * snapshot, and then follows the change feed, so every write of any instance reaches it a moment after its
+ * commit. The versions are compared with the table every reconcile-minutes, so a change the feed skipped is
+ * recovered. Until it is loaded, when it is disabled or for an order it can not sort, the reads go to the fallback.
+ * The bean is never lazy, the load starts with the application and not with the first read
+ *
+ * @author luismiguelrodriguez
+ */
+@Service
+@Lazy(false)
+public class BookCatalog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookCatalog.class);
+
+    private static final String SELECT_BOOKS = "SELECT id, genre, author, image, title, subtitle, publisher, year,"
+            + " pages, isbn, version, last_modified, owners_count FROM book";
+
+    private static final String SELECT_VERSIONS = "SELECT id, version FROM book";
+
+    /**
+     * Maximum number of books read again in one query
+     */
+    private static final int REFRESH_BATCH = 500;
+
+    /**
+     * Filters of findByParameters compared with a case insensitive pattern
+     */
+    private static final BookColumns.Column[] PATTERN_FILTERS = {
+            BookColumns.Column.ISBN, BookColumns.Column.GENRE, BookColumns.Column.AUTHOR, BookColumns.Column.IMAGE,
+            BookColumns.Column.TITLE, BookColumns.Column.SUBTITLE, BookColumns.Column.PUBLISHER};
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private ChangeEventRepository changeEventRepository;
+
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
+    @Autowired
+    private BookJsonCache bookJsonCache;
+
+    @Value("${catalog.enabled:false}")
+    private boolean enabled;
+
+    @Value("${catalog.snapshot-path:}")
+    private String snapshotPath;
+
+    @Value("${catalog.snapshot-minutes:10}")
+    private long snapshotMinutes;
+
+    @Value("${catalog.reconcile-minutes:10}")
+    private long reconcileMinutes;
+
+    @Value("${changes.retention-hours:168}")
+    private long retentionHours;
+
+    /**
+     * Longest transaction, a change commits before this time passes since it was recorded
+     */
+    @Value("${spring.transaction.default-timeout:30s}")
+    private Duration transactionTimeout;
+
+    @Value("${changes.gap-margin-millis:5000}")
+    private long gapMarginMillis;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private BookColumns columns;
+
+    /**
+     * Offset of the outbox when the catalog was loaded, the catalog answers once it applied the changes up to it
+     */
+    private long head;
+
+    /**
+     * Books removed from the catalog, the identifiers are not reused so a row of them read before the delete is
+     * never put back
+     */
+    private final Set<Long> deleted = new HashSet<>();
+
+    private volatile boolean ready;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("book-catalog-%d").setDaemon(true).build());
+        scheduler.execute(this::load);
+        if (snapshot() != null) {
+            scheduler.scheduleWithFixedDelay(this::writeSnapshot, snapshotMinutes, snapshotMinutes, TimeUnit.MINUTES);
+        }
+        scheduler.scheduleWithFixedDelay(this::reconcile, reconcileMinutes, reconcileMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        if (ready) {
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * Method to check if the catalog is loaded
+     *
+     * @return return true when the catalog answers the reads
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Method to find a book
+     *
+     * @param id       identifier of the book
+     * @param fallback query to run when the catalog is not ready or the book is not in the catalog
+     * @return return the book
+     */
+    public Optional<Book> findById(Long id, Supplier<Optional<Book>> fallback) {
+        if (!ready) {
+            return fallback.get();
+        }
+        return read(() -> {
+            int row = columns.rowOf(id);
+            return row == BookColumns.NULL ? null : Optional.of(columns.book(row));
+        }, fallback);
+    }
+
+    /**
+     * Method to get the version of a book
+     *
+     * @param id       identifier of the book
+     * @param fallback query to run when the catalog is not ready or the book is not in the catalog
+     * @return return the version and last modification date of the book
+     */
+    public Optional<EntityVersion> findVersionById(Long id, Supplier<Optional<EntityVersion>> fallback) {
+        if (!ready) {
+            return fallback.get();
+        }
+        return read(() -> {
+            int row = columns.rowOf(id);
+            if (row == BookColumns.NULL) {
+                return null;
+            }
+            Long version = columns.version(row);
+            Instant lastModified = columns.lastModified(row);
+            return Optional.of(new EntityVersion() {
+                @Override
+                public Long getVersion() {
+                    return version;
+                }
+
+                @Override
+                public Instant getLastModified() {
+                    return lastModified;
+                }
+            });
+        }, fallback);
+    }
+
+    /**
+     * Method to find a book by isbn
+     *
+     * @param isbn     isbn of the book
+     * @param fallback query to run when the catalog is not ready or the book is not in the catalog
+     * @return return the book
+     */
+    public Optional<Book> findByIsbn(String isbn, Supplier<Optional<Book>> fallback) {
+        if (!ready) {
+            return fallback.get();
+        }
+        return read(() -> {
+            int row = columns.rowOfIsbn(isbn);
+            return row == BookColumns.NULL ? null : Optional.of(columns.book(row));
+        }, fallback);
+    }
+
+    /**
+     * Method to get a page of the search by publisher, genre and year
+     *
+     * @param publisher exact publisher, null for any
+     * @param genre     exact genre, null for any
+     * @param year      exact year, null for any
+     * @param fields    selected attributes of the books, null for whole books
+     * @param pageable  requested page
+     * @param fallback  query to run when the catalog can not answer
+     * @return return the page of books, or of the selected attributes
+     */
+    public <T> Page<T> findBy(String publisher, String genre, String year, List<String> fields, Pageable pageable,
+                              Supplier<Page<T>> fallback) {
+        if (!ready || !BookColumns.isSortable(pageable.getSort())) {
+            return fallback.get();
+        }
+        return read(() -> {
+            boolean[][] filters = new boolean[BookColumns.COLUMNS.length][];
+            equal(filters, BookColumns.Column.PUBLISHER, publisher);
+            equal(filters, BookColumns.Column.GENRE, genre);
+            equal(filters, BookColumns.Column.YEAR, year);
+            return page(filters, fields, pageable);
+        });
+    }
+
+    /**
+     * Method to get a page of the search by all parameters, with the semantics of the query of the repository
+     *
+     * @param filters  filters by name, an empty filter matches any value
+     * @param fields   selected attributes of the books, null for whole books
+     * @param pageable requested page
+     * @param fallback query to run when the catalog can not answer
+     * @return return the page of books, or of the selected attributes
+     */
+    public <T> Page<T> findByParameters(Map<String, String> filters, List<String> fields, Pageable pageable,
+                                        Supplier<Page<T>> fallback) {
+        if (!ready || !BookColumns.isSortable(pageable.getSort())) {
+            return fallback.get();
+        }
+        return read(() -> {
+            boolean[][] matches = new boolean[BookColumns.COLUMNS.length][];
+            for (BookColumns.Column column : PATTERN_FILTERS) {
+                String filter = filters.getOrDefault(column.attribute(), "");
+                if (!filter.isEmpty()) {
+                    Pattern pattern = BookColumns.like(filter);
+                    matches[column.ordinal()] = columns.matching(column,
+                            value -> pattern.matcher(value.toUpperCase(Locale.ROOT)).matches());
+                }
+            }
+            String startYear = filters.getOrDefault("startYear", "");
+            String endYear = filters.getOrDefault("endYear", "");
+            if (!startYear.isEmpty() || !endYear.isEmpty()) {
+                matches[BookColumns.Column.YEAR.ordinal()] = columns.matching(BookColumns.Column.YEAR,
+                        value -> (startYear.isEmpty() || value.compareTo(startYear) >= 0)
+                                && (endYear.isEmpty() || value.compareTo(endYear) <= 0));
+            }
+            equal(matches, BookColumns.Column.PAGES, filters.getOrDefault("pages", ""));
+            return page(matches, fields, pageable);
+        });
+    }
+
+    /**
+     * Method to apply a batch of changes of the feed, the changed books are read again from the table so the
+     * catalog holds their last committed state whatever the order of the changes
+     *
+     * @param changes changes sorted by offset
+     */
+    void apply(List<ChangeEvent> changes) {
+        Set<Long> ids = changes.stream()
+                .filter(change -> ChangeEvent.BOOK.equals(change.getEntityType()))
+                .map(ChangeEvent::getEntityId)
+                .collect(Collectors.toSet());
+        long offset = changes.get(changes.size() - 1).getId();
+        refresh(ids);
+        lock.writeLock().lock();
+        try {
+            columns.setOffset(offset);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!ready && offset >= head) {
+            ready = true;
+            LOGGER.info("Book catalog caught up with the change feed at offset {}", offset);
+        }
+    }
+
+    /**
+     * Method to apply a change of a book once the transaction that writes it commits, so the instance that made
+     * the change reads it on the next request. The change feed applies it again, and applies the changes of the
+     * other instances
+     *
+     * @param id identifier of the changed book
+     */
+    public void applyAfterCommit(Long id) {
+        if (!ready || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<Long> ids = (Set<Long>) TransactionSynchronizationManager.getResource(this);
+        if (ids == null) {
+            Set<Long> committed = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(this, committed);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    try {
+                        refresh(committed);
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Book catalog could not apply committed books {}, the change feed applies them",
+                                committed, e);
+                    }
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(BookCatalog.this);
+                }
+            });
+            ids = committed;
+        }
+        ids.add(id);
+    }
+
+    /**
+     * Method to compare the versions of the catalog with the table and read again the books that differ. It
+     * recovers the changes the feed skipped, those of a transaction that outlived the timeout
+     */
+    void reconcile() {
+        if (!ready) {
+            return;
+        }
+        try {
+            Map<Long, Long> versions = new HashMap<>();
+            jdbcTemplate.query(SELECT_VERSIONS, (RowCallbackHandler) rs -> versions.put(rs.getLong(1), rs.getLong(2)));
+            Set<Long> stale = new HashSet<>();
+            lock.readLock().lock();
+            try {
+                versions.forEach((id, version) -> {
+                    int row = columns.rowOf(id);
+                    if (row == BookColumns.NULL || columns.version(row) != version) {
+                        stale.add(id);
+                    }
+                });
+                columns.bookIds().stream().filter(id -> !versions.containsKey(id)).forEach(stale::add);
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (!stale.isEmpty()) {
+                refresh(stale);
+                LOGGER.warn("Book catalog reconciled {} books the change feed did not apply", stale.size());
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Book catalog reconciliation failed, it is retried in {} minutes", reconcileMinutes, e);
+        }
+    }
+
+    /**
+     * Method to read books again from the table, the missing ones were deleted. The feed, the committed writes and
+     * the reconciliation all refresh books, so a row older than the one in the catalog, or of a deleted book, is
+     * not put back
+     *
+     * @param ids identifiers of the books
+     */
+    private void refresh(Set<Long> ids) {
+        for (List<Long> batch : Iterables.partition(ids, REFRESH_BATCH)) {
+            List<Object[]> rows = namedParameterJdbcTemplate.query(SELECT_BOOKS + " WHERE id IN (:ids)",
+                    Collections.singletonMap("ids", batch), (rs, rowNum) -> row(rs));
+            lock.writeLock().lock();
+            try {
+                Set<Long> missing = new HashSet<>(batch);
+                for (Object[] row : rows) {
+                    missing.remove(row[0]);
+                    int existing = columns.rowOf((Long) row[0]);
+                    if (!deleted.contains(row[0])
+                            && (existing == BookColumns.NULL || columns.version(existing) <= (Long) row[2])) {
+                        put(row);
+                    }
+                }
+                missing.forEach(columns::remove);
+                deleted.addAll(missing);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            batch.forEach(bookJsonCache::invalidate);
+        }
+    }
+
+    /**
+     * Method to load the catalog from the snapshot or the table and follow the change feed from its offset
+     */
+    void load() {
+        try {
+            long start = System.nanoTime();
+            Instant started = Instant.now();
+            head = changeEventRepository.findLastId().orElse(0L);
+            BookColumns loaded = readSnapshot();
+            String source = "snapshot";
+            if (loaded == null) {
+                source = "database";
+                loaded = new BookColumns();
+                loaded.setOffset(committedBefore(started));
+                BookColumns target = loaded;
+                jdbcTemplate.query(SELECT_BOOKS, (RowCallbackHandler) rs -> put(target, row(rs)));
+            }
+            columns = loaded;
+            LOGGER.info("Book catalog loaded {} books from the {} at offset {} in {} ms", loaded.rows(), source,
+                    loaded.getOffset(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            if (loaded.getOffset() >= head) {
+                ready = true;
+            }
+            changeFeedService.listen(loaded.getOffset(), this::apply);
+        } catch (RuntimeException e) {
+            LOGGER.error("Book catalog could not be loaded, the reads go to the database", e);
+        }
+    }
+
+    /**
+     * A change with an offset below the head may commit after the scan of the table, so the feed is followed
+     * from the last change that surely committed before the scan. The changes after it are applied again, which
+     * is harmless since the books are read again from the table
+     *
+     * @param started date of the start of the scan
+     * @return return the offset of the last change committed before the date
+     */
+    private long committedBefore(Instant started) {
+        Instant before = started.minus(transactionTimeout).minusMillis(gapMarginMillis);
+        return changeEventRepository.findLastIdCreatedBefore(before)
+                .orElseGet(() -> changeEventRepository.findFirstId().map(first -> first - 1).orElse(head));
+    }
+
+    private BookColumns readSnapshot() {
+        Path file = snapshot();
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            BookColumns loaded = BookColumns.read(file, TimeUnit.HOURS.toMillis(retentionHours));
+            if (loaded == null || !changeFeedService.isRetained(loaded.getOffset())) {
+                LOGGER.info("Book catalog snapshot {} is older than the change feed, it is not used", file);
+                return null;
+            }
+            return loaded;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Book catalog snapshot {} could not be read", file, e);
+            return null;
+        }
+    }
+
+    private void writeSnapshot() {
+        Path file = snapshot();
+        if (file == null || columns == null) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            columns.write(file);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Book catalog snapshot {} could not be written", file, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Path snapshot() {
+        return snapshotPath.isEmpty() ? null : Paths.get(snapshotPath);
+    }
+
+    private <T> T read(Supplier<T> query) {
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A book that is not in the catalog may have been created a moment ago, it is looked up in the fallback
+     */
+    private <T> Optional<T> read(Supplier<Optional<T>> query, Supplier<Optional<T>> fallback) {
+        Optional<T> found = read(query);
+        return found != null ? found : fallback.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Page<T> page(boolean[][] filters, List<String> fields, Pageable pageable) {
+        int[] rows = columns.select(filters, pageable.getSort());
+        int from = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), rows.length) : 0;
+        int to = pageable.isPaged() ? Math.min(from + pageable.getPageSize(), rows.length) : rows.length;
+        List<Object> content = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            content.add(fields == null ? columns.book(rows[i]) : fields(rows[i], fields));
+        }
+        return (Page<T>) new PageImpl<>(content, pageable, rows.length);
+    }
+
+    private Map<String, Object> fields(int row, List<String> fields) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        fields.forEach(field -> values.put(field, columns.attribute(field, row)));
+        return values;
+    }
+
+    private void equal(boolean[][] filters, BookColumns.Column column, String value) {
+        if (value != null && !value.isEmpty()) {
+            filters[column.ordinal()] = columns.matching(column, value::equals);
+        }
+    }
+
+    private Long put(Object[] row) {
+        return put(columns, row);
+    }
+
+    private static Long put(BookColumns target, Object[] row) {
+        Timestamp lastModified = (Timestamp) row[3];
+        target.put((Long) row[0], (String[]) row[1], (Long) row[2],
+                lastModified == null ? null : lastModified.toInstant(), (Long) row[4]);
+        return (Long) row[0];
+    }
+
+    /**
+     * Method to read a book of the result, as id, values of the string columns, version, last modification date
+     * and owners counter
+     */
+    private static Object[] row(ResultSet rs) throws SQLException {
+        String[] values = new String[BookColumns.COLUMNS.length];
+        for (BookColumns.Column column : BookColumns.COLUMNS) {
+            values[column.ordinal()] = rs.getString(column.attribute());
+        }
+        return new Object[]{rs.getLong("id"), values, rs.getLong("version"), rs.getTimestamp("last_modified"),
+                rs.getLong("owners_count")};
+    }
+}
@@ -0,0 +1,531 @@
+package wolox.training.service;
+
+import org.springframework.data.domain.Sort;
+import wolox.training.models.Book;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Book rows stored by column. The strings are replaced by codes of a dictionary of each column, so a filter is
+ * evaluated once by distinct value and then by comparing integers. It is not thread safe, the BookCatalog guards
+ * it with a lock
+ *
+ * @author luismiguelrodriguez
+ */
+final class BookColumns {
+
+    /**
+     * String columns of the book
+     */
+    enum Column {
+        GENRE("genre"),
+        AUTHOR("author"),
+        IMAGE("image"),
+        TITLE("title"),
+        SUBTITLE("subtitle"),
+        PUBLISHER("publisher"),
+        YEAR("year"),
+        PAGES("pages"),
+        ISBN("isbn");
+
+        private final String attribute;
+
+        Column(String attribute) {
+            this.attribute = attribute;
+        }
+
+        String attribute() {
+            return attribute;
+        }
+
+        static Column of(String attribute) {
+            for (Column column : COLUMNS) {
+                if (column.attribute.equals(attribute)) {
+                    return column;
+                }
+            }
+            return null;
+        }
+    }
+
+    static final Column[] COLUMNS = Column.values();
+
+    /**
+     * Code of the null values
+     */
+    static final int NULL = -1;
+
+    private static final int MAGIC = 0x424B4331;
+    private static final int FORMAT = 1;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Dictionary[] dictionaries = new Dictionary[COLUMNS.length];
+    private final Map<Long, Integer> rowsById = new HashMap<>();
+    private final Map<Integer, Integer> rowsByIsbn = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+
+    private int size;
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] versions = new long[INITIAL_CAPACITY];
+    private long[] ownersCounts = new long[INITIAL_CAPACITY];
+    private long[] modifiedSeconds = new long[INITIAL_CAPACITY];
+    private int[] modifiedNanos = new int[INITIAL_CAPACITY];
+    private final int[][] codes = new int[COLUMNS.length][INITIAL_CAPACITY];
+
+    /**
+     * Offset of the last change of the outbox applied to the rows
+     */
+    private long offset;
+
+    BookColumns() {
+        for (int i = 0; i < dictionaries.length; i++) {
+            dictionaries[i] = new Dictionary();
+        }
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    int rows() {
+        return rowsById.size();
+    }
+
+    /**
+     * @return return the identifiers of the books, a view of the rows that must be read under the lock
+     */
+    Set<Long> bookIds() {
+        return rowsById.keySet();
+    }
+
+    /**
+     * Method to add or replace a book
+     *
+     * @param id           identifier of the book
+     * @param values       values of the string columns, in the order of COLUMNS
+     * @param version      version of the book
+     * @param lastModified date of the last change, may be null
+     * @param ownersCount  number of owners of the book
+     */
+    void put(long id, String[] values, long version, Instant lastModified, long ownersCount) {
+        Integer existing = rowsById.get(id);
+        int row;
+        if (existing != null) {
+            row = existing;
+            unindexIsbn(row);
+        } else {
+            row = size++;
+            ensureCapacity(size);
+            rowsById.put(id, row);
+        }
+        ids[row] = id;
+        versions[row] = version;
+        ownersCounts[row] = ownersCount;
+        modifiedSeconds[row] = lastModified == null ? NO_DATE : lastModified.getEpochSecond();
+        modifiedNanos[row] = lastModified == null ? 0 : lastModified.getNano();
+        for (Column column : COLUMNS) {
+            codes[column.ordinal()][row] = dictionaries[column.ordinal()].encode(values[column.ordinal()]);
+        }
+        rowsByIsbn.putIfAbsent(codes[Column.ISBN.ordinal()][row], row);
+    }
+
+    /**
+     * Method to remove a book, its row is left empty
+     *
+     * @param id identifier of the book
+     */
+    void remove(long id) {
+        Integer row = rowsById.remove(id);
+        if (row != null) {
+            deleted.set(row);
+            unindexIsbn(row);
+        }
+    }
+
+    /**
+     * The isbn is not unique in the table, when the indexed row of an isbn changes another row with the same
+     * isbn takes its place
+     */
+    private void unindexIsbn(int row) {
+        int code = codes[Column.ISBN.ordinal()][row];
+        if (rowsByIsbn.remove(code, row)) {
+            for (int other = deleted.nextClearBit(0); other < size; other = deleted.nextClearBit(other + 1)) {
+                if (other != row && codes[Column.ISBN.ordinal()][other] == code) {
+                    rowsByIsbn.put(code, other);
+                    return;
+                }
+            }
+        }
+    }
+
+    int rowOf(long id) {
+        return rowsById.getOrDefault(id, NULL);
+    }
+
+    int rowOfIsbn(String isbn) {
+        int code = dictionaries[Column.ISBN.ordinal()].code(isbn);
+        return code == NULL ? NULL : rowsByIsbn.getOrDefault(code, NULL);
+    }
+
+    /**
+     * Method to evaluate a condition on the distinct values of a column
+     *
+     * @param column    column to filter
+     * @param condition condition on the values, the null values never match
+     * @return return the matching codes, indexed by code
+     */
+    boolean[] matching(Column column, Predicate<String> condition) {
+        List<String> values = dictionaries[column.ordinal()].values;
+        boolean[] matches = new boolean[values.size()];
+        for (int code = 0; code < matches.length; code++) {
+            matches[code] = condition.test(values.get(code));
+        }
+        return matches;
+    }
+
+    /**
+     * Method to find the rows that match every filter
+     *
+     * @param filters matching codes by column, null for the columns without filter
+     * @param sort    order of the rows, by identifier when it is unsorted
+     * @return return the matching rows in order
+     */
+    int[] select(boolean[][] filters, Sort sort) {
+        int[] rows = new int[rowsById.size()];
+        int count = 0;
+        for (int row = deleted.nextClearBit(0); row < size; row = deleted.nextClearBit(row + 1)) {
+            if (matches(filters, row)) {
+                rows[count++] = row;
+            }
+        }
+        Integer[] sorted = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = rows[i];
+        }
+        Arrays.sort(sorted, comparator(sort));
+        return Arrays.stream(sorted).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Method to check if the rows can be sorted in memory
+     *
+     * @param sort requested order
+     * @return return true when every property of the order is an attribute of the rows
+     */
+    static boolean isSortable(Sort sort) {
+        for (Sort.Order order : sort) {
+            String property = order.getProperty();
+            if (order.isIgnoreCase() || Column.of(property) == null && !"id".equals(property) && !"version".equals(property)
+                    && !"ownersCount".equals(property) && !"lastModified".equals(property)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method to build a book from a row
+     */
+    Book book(int row) {
+        Book book = new Book();
+        book.setId(ids[row]);
+        book.setGenre(value(Column.GENRE, row));
+        book.setAuthor(value(Column.AUTHOR, row));
+        book.setImage(value(Column.IMAGE, row));
+        book.setTitle(value(Column.TITLE, row));
+        book.setSubtitle(value(Column.SUBTITLE, row));
+        book.setPublisher(value(Column.PUBLISHER, row));
+        book.setYear(value(Column.YEAR, row));
+        book.setPages(value(Column.PAGES, row));
+        book.setIsbn(value(Column.ISBN, row));
+        book.setVersion(versions[row]);
+        book.setLastModified(lastModified(row));
+        book.setOwnersCount(ownersCounts[row]);
+        return book;
+    }
+
+    /**
+     * Method to get the value of an attribute of a row, as the selection of the attribute in the database
+     */
+    Object attribute(String attribute, int row) {
+        Column column = Column.of(attribute);
+        if (column != null) {
+            return value(column, row);
+        }
+        switch (attribute) {
+            case "id":
+                return ids[row];
+            case "version":
+                return versions[row];
+            case "ownersCount":
+                return ownersCounts[row];
+            case "lastModified":
+                return lastModified(row);
+            default:
+                throw new IllegalArgumentException("Unknown attribute " + attribute);
+        }
+    }
+
+    long version(int row) {
+        return versions[row];
+    }
+
+    Instant lastModified(int row) {
+        return modifiedSeconds[row] == NO_DATE ? null : Instant.ofEpochSecond(modifiedSeconds[row], modifiedNanos[row]);
+    }
+
+    /**
+     * Method to convert a pattern of a LIKE comparison into a regular expression
+     *
+     * @param like pattern with the % and _ wildcards
+     * @return return the equivalent case insensitive pattern, to match against upper case values
+     */
+    static Pattern like(String like) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : like.toUpperCase(Locale.ROOT).toCharArray()) {
+            if (c == '%' || c == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '%' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    /**
+     * Method to write the rows to a file, the file is written aside and then moved over the previous one. The
+     * deleted rows are left out
+     *
+     * @param file snapshot file
+     */
+    void write(Path file) throws IOException {
+        int rows = rowsById.size();
+        List<byte[][]> encoded = new ArrayList<>(COLUMNS.length);
+        long bytes = 4 + 4 + 8 + 8 + 4;
+        for (Dictionary dictionary : dictionaries) {
+            byte[][] values = new byte[dictionary.values.size()][];
+            bytes += 4;
+            for (int code = 0; code < values.length; code++) {
+                values[code] = dictionary.values.get(code).getBytes(StandardCharsets.UTF_8);
+                bytes += 4 + values[code].length;
+            }
+            encoded.add(values);
+        }
+        bytes += (long) rows * (8 * 4 + 4 + 4 * COLUMNS.length);
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("The catalog does not fit a single mapped snapshot, " + bytes + " bytes");
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(FORMAT).putLong(offset).putLong(System.currentTimeMillis()).putInt(rows);
+            for (byte[][] values : encoded) {
+                buffer.putInt(values.length);
+                for (byte[] value : values) {
+                    buffer.putInt(value.length).put(value);
+                }
+            }
+            int[] live = new int[rows];
+            int count = 0;
+            for (int row = deleted.nextClearBit(0); row < size; row = deleted.nextClearBit(row + 1)) {
+                live[count++] = row;
+            }
+            for (long[] column : new long[][]{ids, versions, ownersCounts, modifiedSeconds}) {
+                for (int row : live) {
+                    buffer.putLong(column[row]);
+                }
+            }
+            for (int row : live) {
+                buffer.putInt(modifiedNanos[row]);
+            }
+            for (int[] column : codes) {
+                for (int row : live) {
+                    buffer.putInt(column[row]);
+                }
+            }
+            buffer.force();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Method to read the rows of a snapshot file, the columns are copied from the mapped file in bulk
+     *
+     * @param file         snapshot file
+     * @param maxAgeMillis oldest snapshot accepted
+     * @return return the rows, or null when the file is not a snapshot or it is too old
+     */
+    static BookColumns read(Path file, long maxAgeMillis) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < 28 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) {
+                return null;
+            }
+            long offset = buffer.getLong();
+            long createdAt = buffer.getLong();
+            if (System.currentTimeMillis() - createdAt > maxAgeMillis) {
+                return null;
+            }
+            int rows = buffer.getInt();
+
+            BookColumns columns = new BookColumns();
+            columns.offset = offset;
+            for (Dictionary dictionary : columns.dictionaries) {
+                int values = buffer.getInt();
+                for (int code = 0; code < values; code++) {
+                    byte[] value = new byte[buffer.getInt()];
+                    buffer.get(value);
+                    dictionary.add(new String(value, StandardCharsets.UTF_8));
+                }
+            }
+            columns.size = rows;
+            columns.ensureCapacity(rows);
+            for (long[] column : new long[][]{columns.ids, columns.versions, columns.ownersCounts, columns.modifiedSeconds}) {
+                buffer.asLongBuffer().get(column, 0, rows);
+                buffer.position(buffer.position() + rows * 8);
+            }
+            buffer.asIntBuffer().get(columns.modifiedNanos, 0, rows);
+            buffer.position(buffer.position() + rows * 4);
+            for (int[] column : columns.codes) {
+                buffer.asIntBuffer().get(column, 0, rows);
+                buffer.position(buffer.position() + rows * 4);
+            }
+            for (int row = 0; row < rows; row++) {
+                columns.rowsById.put(columns.ids[row], row);
+                columns.rowsByIsbn.putIfAbsent(columns.codes[Column.ISBN.ordinal()][row], row);
+            }
+            return columns;
+        }
+    }
+
+    private String value(Column column, int row) {
+        return dictionaries[column.ordinal()].decode(codes[column.ordinal()][row]);
+    }
+
+    private boolean matches(boolean[][] filters, int row) {
+        for (int column = 0; column < filters.length; column++) {
+            boolean[] filter = filters[column];
+            if (filter != null) {
+                int code = codes[column][row];
+                if (code == NULL || !filter[code]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Comparator<Integer> comparator(Sort sort) {
+        Comparator<Integer> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<Integer> next = comparator(order.getProperty());
+            next = order.isAscending() ? next : next.reversed();
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        Comparator<Integer> byId = Comparator.comparingLong(row -> ids[row]);
+        return comparator == null ? byId : comparator.thenComparing(byId);
+    }
+
+    /**
+     * The null values go last in ascending order, as in the database
+     */
+    private Comparator<Integer> comparator(String property) {
+        Column column = Column.of(property);
+        if (column != null) {
+            return Comparator.comparing(row -> value(column, row), Comparator.nullsLast(Comparator.naturalOrder()));
+        }
+        switch (property) {
+            case "id":
+                return Comparator.comparingLong(row -> ids[row]);
+            case "version":
+                return Comparator.comparingLong(row -> versions[row]);
+            case "ownersCount":
+                return Comparator.comparingLong(row -> ownersCounts[row]);
+            default:
+                return Comparator.comparing(this::lastModified, Comparator.nullsLast(Comparator.naturalOrder()));
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int length = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, length);
+        versions = Arrays.copyOf(versions, length);
+        ownersCounts = Arrays.copyOf(ownersCounts, length);
+        modifiedSeconds = Arrays.copyOf(modifiedSeconds, length);
+        modifiedNanos = Arrays.copyOf(modifiedNanos, length);
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = Arrays.copyOf(codes[i], length);
+        }
+    }
+
+    /**
+     * Distinct values of a column, the code of a value is its position
+     */
+    private static final class Dictionary {
+
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        int encode(String value) {
+            if (value == null) {
+                return NULL;
+            }
+            Integer code = codes.get(value);
+            return code != null ? code : add(value);
+        }
+
+        int code(String value) {
+            return value == null ? NULL : codes.getOrDefault(value, NULL);
+        }
+
+        String decode(int code) {
+            return code == NULL ? null : values.get(code);
+        }
+
+        int add(String value) {
+            values.add(value);
+            codes.put(value, values.size() - 1);
+            return values.size() - 1;
+        }
+    }
+}
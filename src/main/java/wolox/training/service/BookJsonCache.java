@@ -0,0 +1,221 @@
+package wolox.training.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import wolox.training.models.Book;
+import wolox.training.models.dto.JsonCacheStatsDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of the JSON bytes of the most read books, so a book that did not change is not serialized again.
+ * The bytes may be kept off heap, and also compressed for the clients that accept gzip. The entries expire after
+ * a while, as a bound of a missed invalidation
+ *
+ * @author luismiguelrodriguez
+ */
+@Service
+public class BookJsonCache {
+
+    private static final String GZIP = "gzip";
+
+    /**
+     * Heap bytes of an entry besides its buffers
+     */
+    private static final int ENTRY_BYTES = 128;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Cache<Long, EncodedBook> encodedBooks;
+    private final boolean enabled;
+    private final boolean offHeap;
+    private final boolean gzip;
+    private final int maximumEntryBytes;
+
+    /**
+     * Number of invalidations, a book read while an invalidation happened is not kept
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public BookJsonCache(@Value("${books.json-cache.enabled:true}") boolean enabled,
+                         @Value("${books.json-cache.maximum-bytes:67108864}") long maximumBytes,
+                         @Value("${books.json-cache.maximum-entry-bytes:65536}") int maximumEntryBytes,
+                         @Value("${books.json-cache.off-heap:false}") boolean offHeap,
+                         @Value("${books.json-cache.gzip:true}") boolean gzip,
+                         @Value("${books.json-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.offHeap = offHeap;
+        this.gzip = gzip;
+        this.maximumEntryBytes = maximumEntryBytes;
+        this.encodedBooks = CacheBuilder.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((Long id, EncodedBook book) -> book.weight())
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Method to get the encoded book
+     *
+     * @param id identifier of the book
+     * @return return the encoded book, or empty when it is not cached
+     */
+    public Optional<EncodedBook> get(Long id) {
+        return enabled ? Optional.ofNullable(encodedBooks.getIfPresent(id)) : Optional.empty();
+    }
+
+    /**
+     * Method to get the stamp to take before reading a book that will be cached
+     *
+     * @return return the current stamp
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * Method to encode and cache a book
+     *
+     * @param book  book read from the repository
+     * @param stamp stamp taken before reading the book
+     * @return return the encoded book, or empty when the cache is disabled or the book is too large
+     */
+    public Optional<EncodedBook> put(Book book, long stamp) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        byte[] json = encode(book);
+        if (json.length > maximumEntryBytes) {
+            return Optional.empty();
+        }
+        EncodedBook encoded = new EncodedBook(book.getVersion(), book.getLastModified(),
+                buffer(json), gzip ? buffer(compress(json)) : null);
+        encodedBooks.put(book.getId(), encoded);
+        if (invalidations.get() != stamp) {
+            encodedBooks.invalidate(book.getId());
+        }
+        return Optional.of(encoded);
+    }
+
+    /**
+     * Forget the bytes of a changed book
+     *
+     * @param id identifier of the book
+     */
+    public void invalidate(Long id) {
+        invalidations.incrementAndGet();
+        encodedBooks.invalidate(id);
+    }
+
+    /**
+     * Forget the bytes of a book changed on another instance, unless they already hold the given version or a
+     * later one
+     *
+     * @param id      identifier of the book
+     * @param version version of the book after the change, null when it is not known
+     */
+    public void invalidate(Long id, Long version) {
+        invalidations.incrementAndGet();
+        encodedBooks.asMap().computeIfPresent(id, (key, cached) -> version != null && cached.getVersion() != null
+                && cached.getVersion() >= version ? cached : null);
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        encodedBooks.invalidateAll();
+    }
+
+    /**
+     * Method to get the statistics of the cache
+     *
+     * @return return hits, misses and size of the cache
+     */
+    public JsonCacheStatsDTO stats() {
+        CacheStats stats = encodedBooks.stats();
+        return JsonCacheStatsDTO.builder()
+                .hits(stats.hitCount())
+                .misses(stats.missCount())
+                .hitRatio(stats.hitRate())
+                .evictions(stats.evictionCount())
+                .size(encodedBooks.size())
+                .offHeap(offHeap)
+                .build();
+    }
+
+    private byte[] encode(Book book) {
+        try {
+            return objectMapper.writeValueAsBytes(book);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ByteBuffer buffer(byte[] bytes) {
+        if (!offHeap) {
+            return ByteBuffer.wrap(bytes);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer;
+    }
+
+    private static byte[] compress(byte[] json) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 2);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Encoded version of a book
+     */
+    @Getter
+    public static class EncodedBook {
+
+        private final Long version;
+        private final Instant lastModified;
+        private final ByteBuffer json;
+        private final ByteBuffer gzipJson;
+
+        EncodedBook(Long version, Instant lastModified, ByteBuffer json, ByteBuffer gzipJson) {
+            this.version = version;
+            this.lastModified = lastModified;
+            this.json = json;
+            this.gzipJson = gzipJson;
+        }
+
+        /**
+         * Method to get the bytes to send
+         *
+         * @param acceptsGzip true when the client accepts gzip
+         * @return return the compressed bytes when they exist and the client accepts them
+         */
+        public EncodedJson body(boolean acceptsGzip) {
+            return acceptsGzip && gzipJson != null ? new EncodedJson(gzipJson, GZIP) : new EncodedJson(json, null);
+        }
+
+        private int weight() {
+            return ENTRY_BYTES + json.capacity() + (gzipJson == null ? 0 : gzipJson.capacity());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package wolox.training.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import wolox.training.models.Book;
+import wolox.training.models.ChangeEvent;
+import wolox.training.models.dto.BookDTO;
+import wolox.training.repositories.BookRepository;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Service that looks up books by isbn without holding the request thread, the database work runs on a bounded
+ * executor and the external api call does not hold any thread while it waits
+ *
+ * @author luismiguelrodriguez
+ */
+@Service
+public class BookLookupService {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private OpenLibraryService openLibraryService;
+
+    @Autowired
+    private BookSearchCache bookSearchCache;
+
+    @Autowired
+    private ChangeOutbox changeOutbox;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    @Qualifier("lookupExecutor")
+    private Executor lookupExecutor;
+
+    @Value("${books.lookup.timeout-millis:5000}")
+    private long timeoutMillis;
+
+    /**
+     * Method to search a stored book by isbn
+     *
+     * @param isbn isbn of the book
+     * @return return a future completed with the stored book, if any
+     */
+    public CompletableFuture<Optional<Book>> findStored(String isbn) {
+        return CompletableFuture.supplyAsync(() -> bookRepository.findByIsbn(isbn), lookupExecutor);
+    }
+
+    /**
+     * Method to get the deadline of a lookup that starts now
+     *
+     * @return return the deadline, in the time of System.nanoTime
+     */
+    public long deadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * Method to search a book in the external api and store it, the request to the external api is abandoned
+     * at the deadline
+     *
+     * @param isbn     isbn of the book
+     * @param deadline deadline of the lookup
+     * @return return a future completed with the stored book, or with TimeoutException when the deadline passes
+     */
+    public CompletableFuture<Book> importBook(String isbn, long deadline) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return CompletableFuture.failedFuture(new TimeoutException("Lookup deadline exceeded"));
+        }
+        return openLibraryService.findInfoBookAsync(isbn, Duration.ofNanos(remaining))
+                .thenApplyAsync(this::store, lookupExecutor);
+    }
+
+    /**
+     * Method to store a book found in the external api, the book and its change are written in one transaction
+     * that does not include the call to the external api
+     *
+     * @param bookDTO book found in the external api
+     * @return return the stored book
+     */
+    public Book store(BookDTO bookDTO) {
+        Book book = transactionTemplate.execute(status -> {
+            Book created = bookDTO.setBook();
+            bookRepository.saveAndFlush(created);
+            changeOutbox.record(ChangeEvent.BOOK, created.getId(), ChangeEvent.CREATED, created.getVersion());
+            return created;
+        });
+        bookSearchCache.evict(book);
+        return book;
+    }
+
+    /**
+     * Method to bound a lookup by the request deadline
+     *
+     * @param lookup   future of the lookup
+     * @param deadline deadline of the lookup
+     * @return return the same future, completed with TimeoutException when the deadline is exceeded
+     */
+    public <T> CompletableFuture<T> withDeadline(CompletableFuture<T> lookup, long deadline) {
+        return lookup.orTimeout(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+}
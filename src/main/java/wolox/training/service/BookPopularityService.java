@@ -0,0 +1,159 @@
+package wolox.training.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import wolox.training.models.ChangeEvent;
+import wolox.training.models.dto.BookOwnersDTO;
+import wolox.training.repositories.BookRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service that keeps the number of owners of every book, the counters are persisted in the book table and
+ * mirrored in memory so the reads never touch the database. The encoded JSON of a book carries its counter,
+ * so it is invalidated when the counter changes and the change is recorded in the outbox
+ *
+ * @author luismiguelrodriguez
+ */
+@Service
+public class BookPopularityService {
+
+    private static final Comparator<BookOwnersDTO> BY_OWNERS = Comparator
+            .comparingLong(BookOwnersDTO::getOwners)
+            .thenComparing(BookOwnersDTO::getBookId, Comparator.reverseOrder());
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookJsonCache bookJsonCache;
+
+    @Autowired
+    private ChangeOutbox changeOutbox;
+
+    /**
+     * Owners counter by book identifier, books without owners are not present
+     */
+    private final Map<Long, Long> ownersByBook = new ConcurrentHashMap<>();
+
+    /**
+     * Load the counters of every owned book, the counters of the books that are no longer owned are removed
+     */
+    @PostConstruct
+    public void load() {
+        Map<Long, Long> counts = new HashMap<>();
+        bookRepository.findAllOwnersCounts()
+                .forEach(count -> counts.put(count.getBookId(), count.getOwners()));
+        ownersByBook.keySet().retainAll(counts.keySet());
+        ownersByBook.putAll(counts);
+    }
+
+    /**
+     * Read again the counter of a book changed on another instance. A change of this instance committed while
+     * the counter is read can be overwritten, it is corrected by the next change of the book
+     *
+     * @param bookId identifier of the changed book
+     */
+    public void refresh(Long bookId) {
+        long owners = bookRepository.findOwnersCountById(bookId).orElse(0L);
+        if (owners > 0) {
+            ownersByBook.put(bookId, owners);
+        } else {
+            ownersByBook.remove(bookId);
+        }
+    }
+
+    /**
+     * Register a new owner of a book
+     *
+     * @param bookId identifier of the owned book
+     */
+    public void ownerAdded(Long bookId) {
+        bookRepository.addToOwnersCount(bookId, 1);
+        changeOutbox.record(ChangeEvent.BOOK, bookId, ChangeEvent.UPDATED, null);
+        afterCommit(() -> {
+            ownersByBook.merge(bookId, 1L, Long::sum);
+            bookJsonCache.invalidate(bookId);
+        });
+    }
+
+    /**
+     * Unregister an owner of a book
+     *
+     * @param bookId identifier of the book no longer owned
+     */
+    public void ownerRemoved(Long bookId) {
+        bookRepository.addToOwnersCount(bookId, -1);
+        changeOutbox.record(ChangeEvent.BOOK, bookId, ChangeEvent.UPDATED, null);
+        afterCommit(() -> {
+            ownersByBook.computeIfPresent(bookId, (id, owners) -> owners > 1 ? owners - 1 : null);
+            bookJsonCache.invalidate(bookId);
+        });
+    }
+
+    /**
+     * Forget the counter of a deleted book
+     *
+     * @param bookId identifier of the deleted book
+     */
+    public void bookRemoved(Long bookId) {
+        afterCommit(() -> ownersByBook.remove(bookId));
+    }
+
+    /**
+     * Method to get the number of owners of a book
+     *
+     * @param bookId identifier of the book
+     * @return return the number of users that own the book
+     */
+    public BookOwnersDTO getOwners(Long bookId) {
+        return BookOwnersDTO.builder()
+                .bookId(bookId)
+                .owners(ownersByBook.getOrDefault(bookId, 0L))
+                .build();
+    }
+
+    /**
+     * Method to get the most owned books
+     *
+     * @param limit maximum number of books to return
+     * @return return the books with more owners sorted by descending owners
+     */
+    public List<BookOwnersDTO> getMostOwned(int limit) {
+        PriorityQueue<BookOwnersDTO> top = new PriorityQueue<>(limit + 1, BY_OWNERS);
+        ownersByBook.forEach((bookId, owners) -> {
+            top.offer(BookOwnersDTO.builder().bookId(bookId).owners(owners).build());
+            if (top.size() > limit) {
+                top.poll();
+            }
+        });
+        List<BookOwnersDTO> mostOwned = new ArrayList<>(top);
+        mostOwned.sort(BY_OWNERS.reversed());
+        return mostOwned;
+    }
+
+    /**
+     * The memory counters only change when the database transaction that changed the stored counter commits
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
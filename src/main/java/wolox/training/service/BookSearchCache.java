@@ -0,0 +1,306 @@
+package wolox.training.service;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import wolox.training.models.Book;
+import wolox.training.models.dto.SearchCacheStatsDTO;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the pages returned by the book searches. Every entry is tagged by the genre, publisher or year that
+ * every book of its result must have, so a change of a book evicts only the searches that could contain it.
+ * The owners counter of the cached books is refreshed by the time to live of the entries
+ *
+ * @author luismiguelrodriguez
+ */
+@Service
+public class BookSearchCache {
+
+    private static final String ANY = "*";
+    private static final String GENRE = "genre=";
+    private static final String PUBLISHER = "publisher=";
+    private static final String YEAR = "year=";
+
+    /**
+     * Estimated heap bytes of a book and of every character of its attributes
+     */
+    private static final int BOOK_BYTES = 160;
+    private static final int CHAR_BYTES = 2;
+    private static final int PAGE_BYTES = 200;
+    private static final int FIELD_BYTES = 48;
+
+    private final Cache<String, CachedPage> pages;
+    private final int maximumPageSize;
+
+    /**
+     * Cached entries by tag, they are tracked by identity so the removal of an old entry of a key never untags
+     * the entry that replaced it
+     */
+    private final Map<String, Set<CachedPage>> entriesByTag = new ConcurrentHashMap<>();
+
+    /**
+     * Number of book changes, a search that saw a change while it was running is not kept
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder estimatedBytes = new LongAdder();
+
+    @Autowired
+    public BookSearchCache(@Value("${books.search-cache.maximum-bytes:33554432}") long maximumBytes,
+                           @Value("${books.search-cache.ttl-seconds:30}") long ttlSeconds,
+                           @Value("${books.search-cache.maximum-page-size:200}") int maximumPageSize) {
+        this(maximumBytes, ttlSeconds, maximumPageSize, Ticker.systemTicker());
+    }
+
+    BookSearchCache(long maximumBytes, long ttlSeconds, int maximumPageSize, Ticker ticker) {
+        this.maximumPageSize = maximumPageSize;
+        this.pages = CacheBuilder.newBuilder()
+                .ticker(ticker)
+                .maximumWeight(maximumBytes)
+                .weigher((String key, CachedPage page) -> page.weight)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .removalListener(this::removed)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Method to get a page of the search by publisher, genre and year
+     *
+     * @param publisher exact publisher, null for any
+     * @param genre     exact genre, null for any
+     * @param year      exact year, null for any
+     * @param fields    selected attributes of the books, null for whole books
+     * @param pageable  requested page
+     * @param search    query to run when the page is not cached
+     * @return return the cached or found page
+     */
+    public <T> Page<T> findBy(String publisher, String genre, String year, List<String> fields, Pageable pageable,
+                              Supplier<Page<T>> search) {
+        String key = "findby|" + publisher + '|' + genre + '|' + year + '|' + fields + '|' + pageable;
+        String tag = genre != null ? GENRE + normalize(genre)
+                : publisher != null ? PUBLISHER + normalize(publisher)
+                : year != null ? YEAR + normalize(year)
+                : ANY;
+        return get(key, tag, pageable, search);
+    }
+
+    /**
+     * Method to get a page of the search by all parameters, the filters are case insensitive patterns
+     *
+     * @param filters  filters by name, an empty filter matches any value
+     * @param fields   selected attributes of the books, null for whole books
+     * @param pageable requested page
+     * @param search   query to run when the page is not cached
+     * @return return the cached or found page
+     */
+    public <T> Page<T> findByParameters(Map<String, String> filters, List<String> fields, Pageable pageable,
+                                        Supplier<Page<T>> search) {
+        StringBuilder key = new StringBuilder("parameters");
+        new TreeMap<>(filters).forEach((name, value) -> key.append('|').append(name).append('=')
+                .append(value.toUpperCase(Locale.ROOT)));
+        key.append('|').append(fields).append('|').append(pageable);
+        String genre = filters.getOrDefault("genre", "");
+        String publisher = filters.getOrDefault("publisher", "");
+        String startYear = filters.getOrDefault("startYear", "");
+        String tag = isExact(genre) ? GENRE + normalize(genre)
+                : isExact(publisher) ? PUBLISHER + normalize(publisher)
+                : isExact(startYear) && startYear.equals(filters.get("endYear")) ? YEAR + normalize(startYear)
+                : ANY;
+        return get(key.toString(), tag, pageable, search);
+    }
+
+    /**
+     * Evict the searches that could contain a book with the given attributes. In a transaction they are evicted
+     * now and again when it commits, a search that ran before the commit could cache the previous rows
+     *
+     * @param genre     genre of the book
+     * @param publisher publisher of the book
+     * @param year      year of the book
+     */
+    public void evict(String genre, String publisher, String year) {
+        evictTags(genre, publisher, year);
+        afterCommit(() -> evictTags(genre, publisher, year));
+    }
+
+    /**
+     * Evict the searches that could contain a book
+     *
+     * @param book changed book
+     */
+    public void evict(Book book) {
+        evict(book.getGenre(), book.getPublisher(), book.getYear());
+    }
+
+    /**
+     * Evict every search, used when the changed books are not known. In a transaction they are evicted now and
+     * again when it commits
+     */
+    public void evictAll() {
+        invalidateAll();
+        afterCommit(this::invalidateAll);
+    }
+
+    private void evictTags(String genre, String publisher, String year) {
+        invalidations.incrementAndGet();
+        evictTag(ANY);
+        if (genre != null) {
+            evictTag(GENRE + normalize(genre));
+        }
+        if (publisher != null) {
+            evictTag(PUBLISHER + normalize(publisher));
+        }
+        if (year != null) {
+            evictTag(YEAR + normalize(year));
+        }
+    }
+
+    private void invalidateAll() {
+        invalidations.incrementAndGet();
+        pages.invalidateAll();
+    }
+
+    /**
+     * Method to get the statistics of the cache
+     *
+     * @return return hits, misses, evictions and the estimated memory of the cache
+     */
+    public SearchCacheStatsDTO stats() {
+        CacheStats stats = pages.stats();
+        return SearchCacheStatsDTO.builder()
+                .hits(stats.hitCount())
+                .misses(stats.missCount())
+                .hitRatio(stats.hitRate())
+                .evictions(stats.evictionCount())
+                .invalidations(invalidations.get())
+                .size(pages.size())
+                .estimatedBytes(estimatedBytes.sum())
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Page<T> get(String key, String tag, Pageable pageable, Supplier<Page<T>> search) {
+        CachedPage cached = pages.getIfPresent(key);
+        if (cached != null) {
+            return (Page<T>) cached.page;
+        }
+        long invalidationsBefore = invalidations.get();
+        Page<T> page = search.get();
+        if (page == null || pageable.isPaged() && pageable.getPageSize() > maximumPageSize
+                || page.getNumberOfElements() > maximumPageSize) {
+            return page;
+        }
+        CachedPage entry = new CachedPage(key, page, tag, weigh(page));
+        entriesByTag.compute(tag, (t, entries) -> {
+            Set<CachedPage> tagged = entries == null ? ConcurrentHashMap.newKeySet() : entries;
+            tagged.add(entry);
+            return tagged;
+        });
+        estimatedBytes.add(entry.weight);
+        pages.put(key, entry);
+        if (invalidations.get() != invalidationsBefore) {
+            pages.invalidate(key);
+        }
+        return page;
+    }
+
+    /**
+     * Run an action when the current transaction commits, or now when there is none
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    private void evictTag(String tag) {
+        Set<CachedPage> entries = entriesByTag.get(tag);
+        if (entries != null) {
+            entries.forEach(entry -> pages.asMap().remove(entry.key, entry));
+        }
+    }
+
+    private void removed(RemovalNotification<String, CachedPage> notification) {
+        CachedPage entry = notification.getValue();
+        estimatedBytes.add(-entry.weight);
+        entriesByTag.computeIfPresent(entry.tag, (t, entries) -> {
+            entries.remove(entry);
+            return entries.isEmpty() ? null : entries;
+        });
+    }
+
+    private static int weigh(Page<?> page) {
+        long bytes = PAGE_BYTES;
+        for (Object element : page.getContent()) {
+            if (element instanceof Book) {
+                Book book = (Book) element;
+                bytes += BOOK_BYTES + CHAR_BYTES * (length(book.getGenre()) + length(book.getAuthor())
+                        + length(book.getImage()) + length(book.getTitle()) + length(book.getSubtitle())
+                        + length(book.getPublisher()) + length(book.getYear()) + length(book.getPages())
+                        + length(book.getIsbn()));
+            } else if (element instanceof Map) {
+                bytes += BOOK_BYTES;
+                for (Object value : ((Map<?, ?>) element).values()) {
+                    bytes += FIELD_BYTES + (value instanceof String ? CHAR_BYTES * ((String) value).length() : 0);
+                }
+            } else {
+                bytes += BOOK_BYTES;
+            }
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    /**
+     * A filter without wildcards only matches one value, ignoring case
+     */
+    private static boolean isExact(String filter) {
+        return !filter.isEmpty() && filter.indexOf('%') < 0 && filter.indexOf('_') < 0;
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static class CachedPage {
+
+        private final String key;
+        private final Page<?> page;
+        private final String tag;
+        private final int weight;
+
+        CachedPage(String key, Page<?> page, String tag, int weight) {
+            this.key = key;
+            this.page = page;
+            this.tag = tag;
+            this.weight = weight;
+        }
+    }
+}
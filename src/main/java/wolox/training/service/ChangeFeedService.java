@@ -0,0 +1,389 @@
+package wolox.training.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import wolox.training.exception.ChangesExpiredException;
+import wolox.training.models.ChangeEvent;
+import wolox.training.repositories.ChangeEventRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams the changes of the outbox to the subscribers as Server-Sent Events, and to the listeners of the
+ * application. A single thread tails the outbox for every subscriber, the subscribers at the same offset share
+ * the query. The events of each subscriber wait in a bounded queue and are written by a thread of their own, so a
+ * slow client never delays the others, and a client that falls a whole queue behind is disconnected. Each event
+ * carries a batch of changes and its id is the offset of the last one, so a client resumes from the
+ * Last-Event-ID it received. Lazy initialization is turned off for it, the outbox is tailed for the
+ * listeners of the application from startup
+ *
+ * @author luismiguelrodriguez
+ */
+@Service
+@Lazy(false)
+public class ChangeFeedService {
+
+    public static final String EVENT_NAME = "changes";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeFeedService.class);
+
+    private static final String LISTENER_FAILED = "Change listener failed, the changes are sent again in the next poll";
+
+    /**
+     * Receiver of the changes inside the application
+     */
+    public interface ChangeListener {
+
+        /**
+         * Method to receive a batch of changes, when it fails the same changes are sent again in the next poll
+         *
+         * @param changes changes sorted by offset
+         */
+        void changes(List<ChangeEvent> changes);
+    }
+
+    @Autowired
+    private ChangeEventRepository changeEventRepository;
+
+    @Value("${changes.batch-size:500}")
+    private int batchSize;
+
+    @Value("${changes.max-batches-per-poll:10}")
+    private int maxBatchesPerPoll;
+
+    @Value("${changes.poll-millis:1000}")
+    private long pollMillis;
+
+    /**
+     * Longest transaction, a change commits before this time passes since its offset was taken
+     */
+    @Value("${spring.transaction.default-timeout:30s}")
+    private Duration transactionTimeout;
+
+    @Value("${changes.gap-margin-millis:5000}")
+    private long gapMarginMillis;
+
+    @Value("${changes.heartbeat-seconds:15}")
+    private long heartbeatSeconds;
+
+    @Value("${changes.emitter-timeout-minutes:30}")
+    private long emitterTimeoutMinutes;
+
+    @Value("${changes.max-subscribers:100}")
+    private int maxSubscribers;
+
+    /**
+     * Events queued for a subscriber, a subscriber with a full queue is disconnected
+     */
+    @Value("${changes.subscriber-queue-size:64}")
+    private int subscriberQueueSize;
+
+    @Value("${changes.retention-hours:168}")
+    private long retentionHours;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Offsets missing in the outbox and when they were first seen, see deliverable
+     */
+    private final Map<Long, Long> gaps = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Writers of the events, at most one per subscriber at a time
+     */
+    private ExecutorService senders;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("change-feed-%d").setDaemon(true).build());
+        senders = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("change-feed-sender-%d").setDaemon(true).build());
+        scheduler.scheduleWithFixedDelay(this::tail, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::prune, 1, 1, TimeUnit.HOURS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        senders.shutdownNow();
+        subscribers.stream().filter(subscriber -> subscriber.emitter != null)
+                .forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    /**
+     * Method to subscribe to the changes
+     *
+     * @param since offset of the last change already received, the next change when it is null
+     * @return return the emitter of the changes
+     * @throws ChangesExpiredException when the changes after the offset were pruned
+     */
+    public SseEmitter subscribe(Long since) {
+        if (getSubscribers() >= maxSubscribers) {
+            throw new TaskRejectedException("Too many change feed subscribers");
+        }
+        if (since != null && !isRetained(since)) {
+            throw new ChangesExpiredException();
+        }
+        long offset = since != null ? since : changeEventRepository.findLastId().orElse(0L);
+        return subscribe(new SseEmitter(TimeUnit.MINUTES.toMillis(emitterTimeoutMinutes)), offset);
+    }
+
+    /**
+     * Method to send the changes after an offset to an emitter
+     *
+     * @param emitter emitter of the subscriber
+     * @param offset  offset of the last change already received
+     * @return return the same emitter
+     */
+    SseEmitter subscribe(SseEmitter emitter, long offset) {
+        Subscriber subscriber = new Subscriber(emitter, null, offset, subscriberQueueSize);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        wakeUp();
+        return emitter;
+    }
+
+    /**
+     * Method to receive the changes in the application, the listener is called from the thread of the feed
+     *
+     * @param since    offset of the last change already received
+     * @param listener receiver of the changes
+     */
+    public void listen(long since, ChangeListener listener) {
+        subscribers.add(new Subscriber(null, listener, since, 0));
+        wakeUp();
+    }
+
+    /**
+     * Method to send the new changes without waiting for the next poll, the calls made while a tail is pending
+     * are merged
+     */
+    public void wakeUp() {
+        if (scheduler != null && wakeUpPending.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                wakeUpPending.set(false);
+                tail();
+            });
+        }
+    }
+
+    /**
+     * Method to know if the changes after an offset are still in the outbox. The changes are pruned from the
+     * oldest and the last change is never pruned, so they are retained when the offset is between the oldest
+     * and the last retained change. An empty outbox never had a change
+     *
+     * @param since offset of the last change already received
+     * @return return true when no change after the offset was pruned
+     */
+    public boolean isRetained(long since) {
+        Optional<Long> first = changeEventRepository.findFirstId();
+        if (!first.isPresent()) {
+            return since <= 0;
+        }
+        return since >= first.get() - 1 && since <= changeEventRepository.findLastId().orElse(first.get());
+    }
+
+    /**
+     * @return return the number of subscribers
+     */
+    public int getSubscribers() {
+        return (int) subscribers.stream().filter(subscriber -> subscriber.emitter != null).count();
+    }
+
+    private void tail() {
+        try {
+            Map<Long, List<ChangeEvent>> batches = new HashMap<>();
+            long now = System.nanoTime();
+            for (Subscriber subscriber : subscribers) {
+                send(subscriber, batches, now);
+            }
+            long oldest = subscribers.stream().mapToLong(subscriber -> subscriber.offset).min().orElse(Long.MAX_VALUE);
+            gaps.keySet().removeIf(offset -> offset <= oldest);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Change feed tail failed", e);
+        }
+    }
+
+    private void send(Subscriber subscriber, Map<Long, List<ChangeEvent>> batches, long now) {
+        try {
+            for (int i = 0; i < maxBatchesPerPoll; i++) {
+                List<ChangeEvent> batch = batches.computeIfAbsent(subscriber.offset,
+                        offset -> changeEventRepository.findBatch(offset, PageRequest.of(0, batchSize)));
+                List<ChangeEvent> changes = deliverable(subscriber.offset, batch, now);
+                if (changes.isEmpty()) {
+                    break;
+                }
+                long last = changes.get(changes.size() - 1).getId();
+                if (subscriber.listener != null) {
+                    subscriber.listener.changes(changes);
+                } else if (!enqueue(subscriber, SseEmitter.event()
+                        .id(String.valueOf(last))
+                        .name(EVENT_NAME)
+                        .data(changes, MediaType.APPLICATION_JSON))) {
+                    return;
+                }
+                subscriber.offset = last;
+                subscriber.lastSent = now;
+                if (changes.size() < batchSize) {
+                    break;
+                }
+            }
+            if (subscriber.emitter != null && now - subscriber.lastSent > TimeUnit.SECONDS.toNanos(heartbeatSeconds)
+                    && enqueue(subscriber, SseEmitter.event().comment("heartbeat"))) {
+                subscriber.lastSent = now;
+            }
+        } catch (RuntimeException e) {
+            if (subscriber.listener == null) {
+                throw e;
+            }
+            LOGGER.warn(LISTENER_FAILED, e);
+        }
+    }
+
+    /**
+     * Queue an event for a subscriber, a subscriber whose queue is full is disconnected and resumes from the
+     * last event it received when it reconnects
+     *
+     * @return return false when the subscriber was disconnected
+     */
+    private boolean enqueue(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (!subscriber.pending.offer(event)) {
+            LOGGER.info("Change feed subscriber fell {} events behind, disconnecting it", subscriber.pending.size());
+            subscribers.remove(subscriber);
+            subscriber.pending.clear();
+            subscriber.dropped = true;
+            drain(subscriber);
+            return false;
+        }
+        drain(subscriber);
+        return true;
+    }
+
+    /**
+     * Write the queued events of a subscriber in a thread of the senders, the emitter is completed once a
+     * disconnected subscriber is no longer being written
+     */
+    private void drain(Subscriber subscriber) {
+        if (!subscriber.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            senders.execute(() -> {
+                try {
+                    SseEmitter.SseEventBuilder event;
+                    while (!subscriber.dropped && (event = subscriber.pending.poll()) != null) {
+                        subscriber.emitter.send(event);
+                    }
+                    if (subscriber.dropped && !subscriber.closed) {
+                        subscriber.closed = true;
+                        subscriber.emitter.complete();
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    subscribers.remove(subscriber);
+                    subscriber.pending.clear();
+                    subscriber.dropped = true;
+                    subscriber.closed = true;
+                    subscriber.emitter.completeWithError(e);
+                } finally {
+                    subscriber.draining.set(false);
+                }
+                if (subscriber.dropped ? !subscriber.closed : !subscriber.pending.isEmpty()) {
+                    drain(subscriber);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            subscriber.draining.set(false);
+        }
+    }
+
+    /**
+     * The offsets are taken from a sequence when the changes are written, so a change can commit after a change
+     * with a higher offset. Only the changes that follow the offset without gaps are delivered. A gap is skipped
+     * as a rolled back change once no transaction can commit it anymore, after the transaction timeout and a margin
+     *
+     * @param offset offset of the last delivered change
+     * @param batch  changes after the offset sorted by offset
+     * @param now    current time in nanoseconds
+     * @return return the changes that can be delivered
+     */
+    List<ChangeEvent> deliverable(long offset, List<ChangeEvent> batch, long now) {
+        List<ChangeEvent> changes = new ArrayList<>(batch.size());
+        long expected = offset + 1;
+        for (ChangeEvent change : batch) {
+            if (change.getId() != expected) {
+                long firstSeen = gaps.computeIfAbsent(expected, missing -> now);
+                if (now - firstSeen < transactionTimeout.toNanos() + TimeUnit.MILLISECONDS.toNanos(gapMarginMillis)) {
+                    break;
+                }
+            }
+            changes.add(change);
+            expected = change.getId() + 1;
+        }
+        return changes;
+    }
+
+    private void prune() {
+        try {
+            int deleted = changeEventRepository.deleteCreatedBefore(Instant.now().minus(Duration.ofHours(retentionHours)));
+            LOGGER.info("Pruned {} changes older than {} hours", deleted, retentionHours);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Change outbox pruning failed", e);
+        }
+    }
+
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final ChangeListener listener;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> pending;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean dropped;
+        private boolean closed;
+        private long offset;
+        private long lastSent = System.nanoTime();
+
+        private Subscriber(SseEmitter emitter, ChangeListener listener, long offset, int queueSize) {
+            this.emitter = emitter;
+            this.listener = listener;
+            this.offset = offset;
+            this.pending = emitter != null ? new ArrayBlockingQueue<>(queueSize) : null;
+        }
+    }
+}
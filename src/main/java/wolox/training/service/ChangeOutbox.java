@@ -0,0 +1,63 @@
+package wolox.training.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import wolox.training.models.ChangeEvent;
+import wolox.training.repositories.ChangeEventRepository;
+
+/**
+ * Writes the changes of the books and users to the outbox and publishes them to the invalidation bus. It must be
+ * called in the transaction of the change, so a change is in the outbox if and only if it was committed. The
+ * change must be flushed before it is recorded: the offset is taken when it is recorded, and a flush that fails
+ * afterwards rolls back an offset the feed waits for until the transaction timeout passes. A change of a book is
+ * also applied to the catalog of this instance after the commit, without waiting for the feed
+ *
+ * @author luismiguelrodriguez
+ */
+@Service
+public class ChangeOutbox {
+
+    @Autowired
+    private ChangeEventRepository changeEventRepository;
+
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @Autowired
+    private BookCatalog bookCatalog;
+
+    /**
+     * Method to record a change
+     *
+     * @param entityType kind of the changed element, ChangeEvent.BOOK or ChangeEvent.USER
+     * @param entityId   identifier of the changed element
+     * @param operation  ChangeEvent.CREATED, ChangeEvent.UPDATED or ChangeEvent.DELETED
+     * @param version    version of the element after the change, null when it is not known
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(String entityType, Long entityId, String operation, Long version) {
+        ChangeEvent change = new ChangeEvent();
+        change.setEntityType(entityType);
+        change.setEntityId(entityId);
+        change.setOperation(operation);
+        change.setVersion(version);
+        changeEventRepository.save(change);
+        invalidationBus.publish(change);
+        if (ChangeEvent.BOOK.equals(entityType)) {
+            bookCatalog.applyAfterCommit(entityId);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                changeFeedService.wakeUp();
+            }
+        });
+    }
+}
@@ -0,0 +1,44 @@
+package wolox.training.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+/**
+ * JSON document already encoded, written to the response as it is
+ *
+ * @author luismiguelrodriguez
+ */
+public final class EncodedJson {
+
+    private final ByteBuffer content;
+    private final String contentEncoding;
+
+    EncodedJson(ByteBuffer content, String contentEncoding) {
+        this.content = content.asReadOnlyBuffer();
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Method to get the content coding of the bytes
+     *
+     * @return return the content coding, null when the bytes are not compressed
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public int length() {
+        return content.remaining();
+    }
+
+    /**
+     * Method to write the bytes, the buffer may be off heap
+     *
+     * @param out stream to write
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        Channels.newChannel(out).write(content.duplicate());
+    }
+}
@@ -0,0 +1,66 @@
+package wolox.training.service;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Transport of the invalidation bus inside one process, for a single instance and for the tests. It keeps the
+ * semantics of NOTIFY, a notification is delivered to every receiver once its transaction commits, and the
+ * notifications published while it is disconnected are lost
+ *
+ * @author luismiguelrodriguez
+ */
+public class InMemoryInvalidationTransport implements InvalidationTransport {
+
+    private final List<Receiver> receivers = new CopyOnWriteArrayList<>();
+
+    private volatile boolean connected = true;
+
+    @Override
+    public void publish(String payload) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    deliver(payload);
+                }
+            });
+        } else {
+            deliver(payload);
+        }
+    }
+
+    @Override
+    public void listen(Receiver receiver) {
+        receivers.add(receiver);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Method to simulate a dropped connection
+     */
+    public void disconnect() {
+        connected = false;
+    }
+
+    /**
+     * Method to simulate the connection coming back, the receivers are told to resynchronize
+     */
+    public void reconnect() {
+        connected = true;
+        receivers.forEach(Receiver::reconnected);
+    }
+
+    private void deliver(String payload) {
+        if (connected) {
+            receivers.forEach(receiver -> receiver.notified(payload));
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package wolox.training.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import wolox.training.models.ChangeEvent;
+import wolox.training.security.AuthenticationCache;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the in-process caches of every instance consistent with the writes of the other instances. The changes
+ * are published to the transport in the transaction that writes them to the outbox, and every instance evicts
+ * the changed books and users from its caches. The notifications of a burst are merged by element and applied
+ * together, and when the transport reconnects every cache is cleared since the notifications sent meanwhile are
+ * lost. It is created on startup even with lazy initialization, an instance that has not served a request yet
+ * still receives the notifications of the others
+ *
+ * @author luismiguelrodriguez
+ */
+@Service
+@Lazy(false)
+public class InvalidationBus implements InvalidationTransport.Receiver {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InvalidationBus.class);
+
+    private static final String SEPARATOR = ":";
+
+    @Autowired
+    private InvalidationTransport invalidationTransport;
+
+    @Autowired
+    private BookJsonCache bookJsonCache;
+
+    @Autowired
+    private BookSearchCache bookSearchCache;
+
+    @Autowired
+    private AuthenticationCache authenticationCache;
+
+    /**
+     * Provider of the popularity counters, they record their own changes in the outbox
+     */
+    @Autowired
+    private ObjectProvider<BookPopularityService> bookPopularityService;
+
+    @Value("${invalidation.coalesce-millis:100}")
+    private long coalesceMillis;
+
+    /**
+     * Identifier of this instance, its own notifications are skipped since it evicts its caches when it writes
+     */
+    private final String node = UUID.randomUUID().toString();
+
+    /**
+     * Latest version notified by changed element, the key is the entity type and the identifier
+     */
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean resyncPending = new AtomicBoolean();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        invalidationTransport.listen(this);
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("invalidation-%d").setDaemon(true).build());
+        scheduler.scheduleWithFixedDelay(this::flush, coalesceMillis, coalesceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Method to publish a change to the other instances, it must be called in the transaction of the change
+     *
+     * @param change change written to the outbox
+     */
+    public void publish(ChangeEvent change) {
+        invalidationTransport.publish(String.join(SEPARATOR, node, change.getEntityType(),
+                String.valueOf(change.getEntityId()), change.getVersion() == null ? "" : String.valueOf(change.getVersion())));
+    }
+
+    @Override
+    public void notified(String payload) {
+        String[] parts = payload.split(SEPARATOR, -1);
+        if (parts.length != 4) {
+            LOGGER.warn("Invalid invalidation payload {}", payload);
+            return;
+        }
+        if (node.equals(parts[0])) {
+            return;
+        }
+        received.increment();
+        long version = parts[3].isEmpty() ? Long.MAX_VALUE : Long.parseLong(parts[3]);
+        pending.merge(parts[1] + SEPARATOR + parts[2], version, Math::max);
+    }
+
+    @Override
+    public void reconnected() {
+        resyncPending.set(true);
+    }
+
+    /**
+     * @return return true when the notifications of the other instances are being received
+     */
+    public boolean isConnected() {
+        return invalidationTransport.isConnected();
+    }
+
+    /**
+     * @return return the number of notifications received from the other instances
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+
+    /**
+     * @return return the number of evictions after merging the notifications
+     */
+    public long getApplied() {
+        return applied.sum();
+    }
+
+    /**
+     * @return return the number of times every cache was cleared after a reconnection
+     */
+    public long getResyncs() {
+        return resyncs.sum();
+    }
+
+    /**
+     * Method to apply the pending notifications, a change of books evicts the searches only once
+     */
+    void flush() {
+        try {
+            if (resyncPending.getAndSet(false)) {
+                pending.clear();
+                resync();
+                return;
+            }
+            List<String> keys = new ArrayList<>(pending.keySet());
+            boolean books = false;
+            for (String key : keys) {
+                Long version = pending.remove(key);
+                if (version != null) {
+                    books |= evict(key, version);
+                    applied.increment();
+                }
+            }
+            if (books) {
+                bookSearchCache.evictAll();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Invalidation failed, every cache is cleared in the next flush", e);
+            resyncPending.set(true);
+        }
+    }
+
+    /**
+     * Evict an element from the caches
+     *
+     * @return return true when the element is a book
+     */
+    private boolean evict(String key, long version) {
+        int separator = key.indexOf(SEPARATOR);
+        String entityType = key.substring(0, separator);
+        Long id = Long.valueOf(key.substring(separator + 1));
+        if (ChangeEvent.BOOK.equals(entityType)) {
+            bookJsonCache.invalidate(id, version == Long.MAX_VALUE ? null : version);
+            bookPopularityService.ifAvailable(service -> service.refresh(id));
+            return true;
+        }
+        if (ChangeEvent.USER.equals(entityType)) {
+            authenticationCache.invalidate(id);
+        }
+        return false;
+    }
+
+    private void resync() {
+        resyncs.increment();
+        bookJsonCache.invalidateAll();
+        bookSearchCache.evictAll();
+        authenticationCache.invalidateAll();
+        bookPopularityService.ifAvailable(BookPopularityService::load);
+    }
+}
@@ -0,0 +1,46 @@
+package wolox.training.service;
+
+/**
+ * Channel between the instances that carries the notifications of the invalidation bus
+ *
+ * @author luismiguelrodriguez
+ */
+public interface InvalidationTransport {
+
+    /**
+     * Receiver of the notifications of the other instances
+     */
+    interface Receiver {
+
+        /**
+         * Method to receive a notification, it is called from the thread of the transport and must not block
+         *
+         * @param payload published payload
+         */
+        void notified(String payload);
+
+        /**
+         * Method called when the connection is back after a drop, the notifications sent meanwhile are lost
+         */
+        void reconnected();
+    }
+
+    /**
+     * Method to publish a notification, inside a transaction it is delivered only when the transaction commits
+     *
+     * @param payload payload of the notification
+     */
+    void publish(String payload);
+
+    /**
+     * Method to register a receiver of the notifications
+     *
+     * @param receiver receiver of the notifications
+     */
+    void listen(Receiver receiver);
+
+    /**
+     * @return return true when the notifications are being received
+     */
+    boolean isConnected();
+}
@@ -1,15 +1,31 @@
 package wolox.training.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
+import wolox.training.config.RequestTimings;
 import wolox.training.exception.BookNotFoundException;
 import wolox.training.models.dto.BookDTO;
 
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class OpenLibraryService {
@@ -17,12 +33,62 @@ public class OpenLibraryService {
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private HttpClient httpClient;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Value("${urlExternal}")
     private String urlOpenLibrary;
 
+    private Outcomes syncRequests;
+    private Outcomes asyncRequests;
+
+    @PostConstruct
+    public void registerMeters() {
+        syncRequests = new Outcomes(meterRegistry, "sync");
+        asyncRequests = new Outcomes(meterRegistry, "async");
+    }
+
     public BookDTO findInfoBook(String isbn) {
+        long start = System.nanoTime();
+        try {
+            ObjectNode node = restTemplate.getForObject(bookUri(isbn), ObjectNode.class);
+            BookDTO bookDTO = toBookDto(node, isbn);
+            syncRequests.record(start, null, RequestTimings.current());
+            return bookDTO;
+        } catch (RuntimeException e) {
+            syncRequests.record(start, e, RequestTimings.current());
+            throw e;
+        }
+    }
+
+    /**
+     * Method to search a book in the external api without blocking the calling thread
+     *
+     * @param isbn    isbn of the book
+     * @param timeout longest wait for the answer, the request and its connection are abandoned after it
+     * @return return a future completed with the book, with BookNotFoundException when the book does not exist or
+     * with TimeoutException when the timeout passes
+     */
+    public CompletableFuture<BookDTO> findInfoBookAsync(String isbn, Duration timeout) {
+        HttpRequest request = HttpRequest.newBuilder(bookUri(isbn)).timeout(timeout).GET().build();
+        RequestTimings timings = RequestTimings.current();
+        long start = System.nanoTime();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> toBookDto(readNode(response.body()), isbn))
+                .orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS)
+                .exceptionally(OpenLibraryService::timedOut)
+                .whenComplete((bookDTO, error) -> asyncRequests.record(start, error, timings));
+    }
+
+    private URI bookUri(String isbn) {
         final String isbnQuery = "ISBN:" + isbn;
-        URI uri = UriComponentsBuilder
+        return UriComponentsBuilder
                 .fromHttpUrl(urlOpenLibrary)
                 .path("books")
                 .queryParam("bibkeys", isbnQuery)
@@ -30,11 +96,70 @@ public class OpenLibraryService {
                 .queryParam("jscmd", "data")
                 .build()
                 .toUri();
-        ObjectNode node = restTemplate.getForObject(uri, ObjectNode.class);
+    }
+
+    private ObjectNode readNode(byte[] body) {
+        try {
+            return objectMapper.readValue(body, ObjectNode.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The timeout of the request of the http client is reported as the timeout of the lookup
+     */
+    private static BookDTO timedOut(Throwable error) {
+        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+        if (cause instanceof HttpTimeoutException) {
+            throw new CompletionException(new TimeoutException(cause.getMessage()));
+        }
+        throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+    }
+
+    private static BookDTO toBookDto(ObjectNode node, String isbn) {
         if (!node.isEmpty()) {
             return BookDTO.setBookDto(node, isbn);
         }
 
         throw new BookNotFoundException();
     }
+
+    /**
+     * Timers of the requests to the external api by outcome, the error rate is the count of the error timer over
+     * the count of all of them
+     */
+    private static class Outcomes {
+
+        private final Timer found;
+        private final Timer notFound;
+        private final Timer error;
+
+        Outcomes(MeterRegistry meterRegistry, String mode) {
+            this.found = timer(meterRegistry, mode, "found");
+            this.notFound = timer(meterRegistry, mode, "not_found");
+            this.error = timer(meterRegistry, mode, "error");
+        }
+
+        /**
+         * The asynchronous requests complete in other threads, so the timings of the request are passed along
+         */
+        void record(long start, Throwable failure, RequestTimings timings) {
+            long elapsed = System.nanoTime() - start;
+            Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            Timer timer = cause == null ? found : cause instanceof BookNotFoundException ? notFound : error;
+            timer.record(elapsed, TimeUnit.NANOSECONDS);
+            if (timings != null) {
+                timings.record(RequestTimings.Phase.UPSTREAM, elapsed);
+            }
+        }
+
+        private static Timer timer(MeterRegistry meterRegistry, String mode, String outcome) {
+            return Timer.builder("openlibrary.requests")
+                    .description("Time of the requests to the OpenLibrary api")
+                    .tag("mode", mode)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+    }
 }
@@ -0,0 +1,137 @@
+package wolox.training.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport of the invalidation bus over Postgres LISTEN/NOTIFY. The notifications are sent with pg_notify in the
+ * transaction of the change, so Postgres delivers them when it commits and drops them when it rolls back. They
+ * are received on a dedicated connection outside of the pool, which is opened again when it drops
+ *
+ * @author luismiguelrodriguez
+ */
+public class PostgresInvalidationTransport implements InvalidationTransport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PostgresInvalidationTransport.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String channel;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int pollMillis;
+    private final long reconnectMillis;
+
+    private final List<Receiver> receivers = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private volatile boolean connected;
+    private Thread listener;
+
+    public PostgresInvalidationTransport(JdbcTemplate jdbcTemplate, String channel, String url, String username,
+                                         String password, int pollMillis, long reconnectMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.channel = channel;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.pollMillis = pollMillis;
+        this.reconnectMillis = reconnectMillis;
+    }
+
+    public void start() {
+        running = true;
+        listener = new ThreadFactoryBuilder().setNameFormat("invalidation-listener-%d").setDaemon(true).build()
+                .newThread(this::listenLoop);
+        listener.start();
+    }
+
+    public void stop() throws InterruptedException {
+        running = false;
+        listener.interrupt();
+        listener.join(2L * pollMillis);
+    }
+
+    @Override
+    public void publish(String payload) {
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", (RowCallbackHandler) rs -> {
+        }, channel, payload);
+    }
+
+    @Override
+    public void listen(Receiver receiver) {
+        receivers.add(receiver);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * The receivers resynchronize on every connection, also on the first one, since the caches may have been
+     * filled before the listener could connect. Waiting for notifications does not send anything to the server,
+     * so an idle poll checks the connection with a query that fails once the socket timeout expires
+     */
+    private void listenLoop() {
+        Properties properties = new Properties();
+        if (username != null) {
+            properties.setProperty("user", username);
+        }
+        if (password != null) {
+            properties.setProperty("password", password);
+        }
+        properties.setProperty("tcpKeepAlive", "true");
+        properties.setProperty("socketTimeout", String.valueOf(Math.max(1, 3 * pollMillis / 1000)));
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, properties);
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + channel);
+                PGConnection notifications = connection.unwrap(PGConnection.class);
+                connected = true;
+                LOGGER.info("Invalidation listener connected, the local caches are resynchronized");
+                receivers.forEach(Receiver::reconnected);
+                while (running) {
+                    PGNotification[] received = notifications.getNotifications(pollMillis);
+                    if (received == null || received.length == 0) {
+                        statement.execute("SELECT 1");
+                        continue;
+                    }
+                    for (PGNotification notification : received) {
+                        receivers.forEach(receiver -> receiver.notified(notification.getParameter()));
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                connected = false;
+                if (running) {
+                    LOGGER.warn("Invalidation listener disconnected, connecting again in {} ms", reconnectMillis, e);
+                    sleep();
+                }
+            }
+        }
+        connected = false;
+    }
+
+    private void sleep() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(reconnectMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
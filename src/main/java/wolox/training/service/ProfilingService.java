@@ -0,0 +1,211 @@
+package wolox.training.service;
+
+import com.google.common.collect.ImmutableSet;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import wolox.training.exception.InvalidQueryException;
+import wolox.training.exception.ProfilingInProgressException;
+import wolox.training.models.dto.ProfileEntryDTO;
+import wolox.training.models.dto.ProfileSummaryDTO;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Takes Java Flight Recorder recordings of the running application for diagnosis. Only one recording runs at a
+ * time and its length is bounded, so the overhead of the recorder is limited to the requested window
+ *
+ * @author luismiguelrodriguez
+ */
+@Service
+public class ProfilingService {
+
+    /**
+     * Configurations shipped with the JDK, default has an overhead of about 1% and profile of about 2%
+     */
+    public static final Set<String> PROFILES = ImmutableSet.of("default", "profile");
+
+    private static final String APPLICATION_PACKAGE = "wolox.training.";
+    private static final int TOP_SITES = 20;
+
+    private static final String EXECUTION_SAMPLE = "jdk.ExecutionSample";
+    private static final String ALLOCATION_IN_TLAB = "jdk.ObjectAllocationInNewTLAB";
+    private static final String ALLOCATION_OUTSIDE_TLAB = "jdk.ObjectAllocationOutsideTLAB";
+    private static final String MONITOR_ENTER = "jdk.JavaMonitorEnter";
+    private static final String THREAD_PARK = "jdk.ThreadPark";
+
+    /**
+     * Events that copy the environment, the system properties and the command line of the process, they may hold
+     * the credentials of the application and a recording leaves the server
+     */
+    private static final Set<String> SECRET_EVENTS = ImmutableSet.of("jdk.InitialEnvironmentVariable",
+            "jdk.InitialSystemProperty", "jdk.JVMInformation");
+
+    private final Semaphore recording = new Semaphore(1);
+    private final int maxSeconds;
+
+    public ProfilingService(@Value("${profiling.max-seconds:120}") int maxSeconds) {
+        this.maxSeconds = maxSeconds;
+    }
+
+    /**
+     * Method to record the application for a while
+     *
+     * @param seconds length of the recording
+     * @param profile configuration of the recorder, one of PROFILES
+     * @return return a temporary file with the recording, the caller deletes it
+     */
+    public Path record(int seconds, String profile) {
+        if (seconds < 1 || seconds > maxSeconds) {
+            throw new InvalidQueryException("The recording must last between 1 and " + maxSeconds + " seconds");
+        }
+        if (!PROFILES.contains(profile)) {
+            throw new InvalidQueryException("Unknown profile " + profile + ", expected one of " + PROFILES);
+        }
+        if (!recording.tryAcquire()) {
+            throw new ProfilingInProgressException();
+        }
+        try (Recording jfr = new Recording(Configuration.getConfiguration(profile))) {
+            jfr.setName("training-diagnosis");
+            SECRET_EVENTS.forEach(jfr::disable);
+            jfr.setToDisk(true);
+            jfr.start();
+            try {
+                TimeUnit.SECONDS.sleep(seconds);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            jfr.stop();
+            Path file = Files.createTempFile("training-", ".jfr");
+            jfr.dump(file);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Invalid recorder configuration " + profile, e);
+        } finally {
+            recording.release();
+        }
+    }
+
+    /**
+     * Method to record the application and summarize the recording
+     *
+     * @param seconds length of the recording
+     * @param profile configuration of the recorder, one of PROFILES
+     * @return return the hot methods, allocation sites and lock contention of the application
+     */
+    public ProfileSummaryDTO summarize(int seconds, String profile) {
+        Path file = record(seconds, profile);
+        try {
+            return summarize(file, seconds, profile);
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Method to summarize a recording. Every event is attributed to the first frame of the application on its
+     * stack, the events without such frame are only counted
+     *
+     * @param file    recording to read
+     * @param seconds length of the recording
+     * @param profile configuration of the recorder
+     * @return return the sites of the application sorted by descending total
+     */
+    public static ProfileSummaryDTO summarize(Path file, int seconds, String profile) {
+        Map<String, long[]> hotMethods = new HashMap<>();
+        Map<String, long[]> allocationSites = new HashMap<>();
+        Map<String, long[]> lockContention = new HashMap<>();
+        long executionSamples = 0;
+        long attributedSamples = 0;
+        try (RecordingFile recordingFile = new RecordingFile(file)) {
+            while (recordingFile.hasMoreEvents()) {
+                RecordedEvent event = recordingFile.readEvent();
+                String type = event.getEventType().getName();
+                if (EXECUTION_SAMPLE.equals(type)) {
+                    executionSamples++;
+                    String site = applicationSite(event.getStackTrace());
+                    if (site != null) {
+                        attributedSamples++;
+                        add(hotMethods, site, 1);
+                    }
+                } else if (ALLOCATION_IN_TLAB.equals(type) || ALLOCATION_OUTSIDE_TLAB.equals(type)) {
+                    String site = applicationSite(event.getStackTrace());
+                    if (site != null) {
+                        long bytes = event.getLong(ALLOCATION_IN_TLAB.equals(type) ? "tlabSize" : "allocationSize");
+                        add(allocationSites, site + " allocates " + event.getClass("objectClass").getName(), bytes);
+                    }
+                } else if (MONITOR_ENTER.equals(type) || THREAD_PARK.equals(type)) {
+                    String site = applicationSite(event.getStackTrace());
+                    if (site != null) {
+                        add(lockContention, site, event.getDuration().toMillis());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return ProfileSummaryDTO.builder()
+                .profile(profile)
+                .seconds(seconds)
+                .executionSamples(executionSamples)
+                .attributedSamples(attributedSamples)
+                .hotMethods(top(hotMethods))
+                .allocationSites(top(allocationSites))
+                .lockContention(top(lockContention))
+                .build();
+    }
+
+    private static String applicationSite(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return null;
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frame.isJavaFrame() && frame.getMethod().getType().getName().startsWith(APPLICATION_PACKAGE)) {
+                return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                        + ":" + frame.getLineNumber();
+            }
+        }
+        return null;
+    }
+
+    private static void add(Map<String, long[]> sites, String site, long value) {
+        long[] totals = sites.computeIfAbsent(site, key -> new long[2]);
+        totals[0]++;
+        totals[1] += value;
+    }
+
+    private static List<ProfileEntryDTO> top(Map<String, long[]> sites) {
+        return sites.entrySet().stream()
+                .map(entry -> ProfileEntryDTO.builder()
+                        .site(entry.getKey())
+                        .events(entry.getValue()[0])
+                        .total(entry.getValue()[1])
+                        .build())
+                .sorted(Comparator.comparingLong(ProfileEntryDTO::getTotal).reversed())
+                .limit(TOP_SITES)
+                .collect(Collectors.toList());
+    }
+}
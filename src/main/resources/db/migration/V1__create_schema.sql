@@ -0,0 +1,40 @@
+-- Tables and sequences of the book and user models as ddl-auto=update created them before the schema was managed
+-- by migrations, the databases created then are baselined at this version. The identifiers are pooled by
+-- Hibernate in blocks of 50
+
+CREATE SEQUENCE book_sq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE user_sq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE book (
+    id            BIGINT       NOT NULL,
+    genre         VARCHAR(255),
+    author        VARCHAR(255) NOT NULL,
+    image         VARCHAR(255) NOT NULL,
+    title         VARCHAR(255) NOT NULL,
+    subtitle      VARCHAR(255) NOT NULL,
+    publisher     VARCHAR(255) NOT NULL,
+    year          VARCHAR(255) NOT NULL,
+    pages         VARCHAR(255) NOT NULL,
+    isbn          VARCHAR(255) NOT NULL,
+    CONSTRAINT book_pkey PRIMARY KEY (id)
+);
+
+-- Single table for every kind of user, user_type tells apart users, students and professors
+CREATE TABLE users (
+    user_type     VARCHAR(31)  NOT NULL,
+    id            BIGINT       NOT NULL,
+    username      VARCHAR(255) NOT NULL,
+    password      VARCHAR(255),
+    name          VARCHAR(255) NOT NULL,
+    birthdate     DATE         NOT NULL,
+    year          VARCHAR(255),
+    subject       VARCHAR(255),
+    CONSTRAINT users_pkey PRIMARY KEY (id)
+);
+
+CREATE TABLE users_books (
+    users_id BIGINT NOT NULL,
+    books_id BIGINT NOT NULL,
+    CONSTRAINT users_books_users_fk FOREIGN KEY (users_id) REFERENCES users (id),
+    CONSTRAINT users_books_books_fk FOREIGN KEY (books_id) REFERENCES book (id)
+);
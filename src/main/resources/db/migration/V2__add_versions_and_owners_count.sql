@@ -0,0 +1,23 @@
+-- Versions and last modification dates of books and users, and the owners counter of books. The databases
+-- created by ddl-auto=update after these columns were mapped may already have them
+
+ALTER TABLE book ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE book ADD COLUMN IF NOT EXISTS last_modified TIMESTAMP;
+ALTER TABLE book ADD COLUMN IF NOT EXISTS owners_count BIGINT DEFAULT 0 NOT NULL;
+
+ALTER TABLE users ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS last_modified TIMESTAMP;
+
+-- A user can not own a book twice, so the pair is the key and its index serves the books of a user. The table
+-- had no key, the repeated pairs are removed first
+DELETE FROM users_books a
+    USING users_books b
+    WHERE a.users_id = b.users_id AND a.books_id = b.books_id AND a.ctid < b.ctid;
+
+ALTER TABLE users_books ADD CONSTRAINT users_books_pkey PRIMARY KEY (users_id, books_id);
+
+-- The counter changes with every book added to or removed from a user, the books owned before it existed are
+-- counted here
+UPDATE book b
+    SET owners_count = (SELECT count(*) FROM users_books ub WHERE ub.books_id = b.id)
+    WHERE owners_count <> (SELECT count(*) FROM users_books ub WHERE ub.books_id = b.id);
@@ -0,0 +1,2 @@
+-- Trigram operators, they let the case insensitive LIKE searches of books use an index whatever the pattern
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
@@ -0,0 +1,26 @@
+-- Indexes of the repository queries, built concurrently so the tables stay writable while they are built.
+-- CREATE INDEX CONCURRENTLY can not run inside a transaction, so this migration must only hold these statements.
+-- An interrupted build leaves an INVALID index that IF NOT EXISTS skips, it must be dropped before repairing
+-- the migration.
+
+-- BookRepository.findByIsbn, every isbn lookup and import checks it first
+CREATE INDEX CONCURRENTLY IF NOT EXISTS book_isbn_idx ON book (isbn);
+
+-- BookRepository.findByAuthor
+CREATE INDEX CONCURRENTLY IF NOT EXISTS book_author_idx ON book (author);
+
+-- BookRepository.findByPublisherAndGenreAndYear and findAllByPublisherAndGenreAndYearQuery
+CREATE INDEX CONCURRENTLY IF NOT EXISTS book_publisher_genre_year_idx ON book (publisher, genre, year);
+
+-- BookRepository.findByAllParameters, UPPER(column) LIKE UPPER(:pattern) on the usual search terms
+CREATE INDEX CONCURRENTLY IF NOT EXISTS book_title_trgm_idx ON book USING gin (upper(title) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS book_author_trgm_idx ON book USING gin (upper(author) gin_trgm_ops);
+
+-- BookRepository.findAllOwnersCounts, read on startup, only the owned books are indexed
+CREATE INDEX CONCURRENTLY IF NOT EXISTS book_owned_idx ON book (id, owners_count) WHERE owners_count > 0;
+
+-- UsersRepository.findByUsername, run by the authentication of every request
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_username_idx ON users (username);
+
+-- UsersRepository.findByBooksId, the primary key of users_books only serves the books of a user
+CREATE INDEX CONCURRENTLY IF NOT EXISTS users_books_books_id_idx ON users_books (books_id, users_id);
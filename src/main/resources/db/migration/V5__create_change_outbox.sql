@@ -0,0 +1,17 @@
+-- Outbox of the book and user changes, written in the transaction of each change. The identifier is the offset
+-- of the change feed, so it is not pooled and follows the order of the inserts
+
+CREATE SEQUENCE change_outbox_sq START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE change_outbox (
+    id          BIGINT       NOT NULL,
+    entity_type VARCHAR(16)  NOT NULL,
+    entity_id   BIGINT       NOT NULL,
+    operation   VARCHAR(16)  NOT NULL,
+    version     BIGINT,
+    created_at  TIMESTAMP    NOT NULL,
+    CONSTRAINT change_outbox_pkey PRIMARY KEY (id)
+);
+
+-- Pruning by age
+CREATE INDEX change_outbox_created_at_idx ON change_outbox (created_at);
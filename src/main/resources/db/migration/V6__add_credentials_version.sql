@@ -0,0 +1,3 @@
+-- Version of the password of a user, the refresh tokens are bound to it. It changes with the password and not
+-- when the same password is hashed again with the current settings
+ALTER TABLE users ADD COLUMN credentials_version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,8 @@
+-- Administrator role of a user, granted by another administrator. The administrators are found by username,
+-- so the usernames become unique: the users that repeat the username of an older user are renamed to
+-- username#id, they could not log in since the lookup by username found several users
+ALTER TABLE users ADD COLUMN admin BOOLEAN DEFAULT FALSE NOT NULL;
+
+UPDATE users u
+    SET username = u.username || '#' || u.id
+    WHERE EXISTS (SELECT 1 FROM users o WHERE o.username = u.username AND o.id < u.id);
@@ -0,0 +1,5 @@
+-- Unique usernames, built concurrently like the query indexes so this migration must only hold these statements.
+-- It replaces the plain index of UsersRepository.findByUsername
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS users_username_key ON users (username);
+
+DROP INDEX CONCURRENTLY IF EXISTS users_username_idx;
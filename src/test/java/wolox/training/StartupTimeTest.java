@@ -0,0 +1,141 @@
+package wolox.training;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import wolox.training.security.TokenService;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Startup benchmark, the application is started in a new JVM several times and the time from the launch to the
+ * first successful request is measured. The database must be running:
+ * gradle startupTest -Dstartup.runs=5 -Dstartup.budget-millis=10000
+ *
+ * @author luismiguelrodriguez
+ */
+@Tag("startup")
+public class StartupTimeTest {
+
+    private static final String CLASSPATH = System.getProperty("startup.classpath", System.getProperty("java.class.path"));
+    private static final String CDS_ARCHIVE = System.getProperty("startup.cds-archive", "build/cds/training.jsa");
+    private static final String PROBE_PATH = System.getProperty("startup.probe-path", "/api/books?page=0&size=1");
+    private static final int RUNS = Integer.getInteger("startup.runs", 5);
+    private static final long BUDGET_MILLIS = Long.getLong("startup.budget-millis", 10_000);
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+    private static final String SECRET = "startup-benchmark";
+    private static final String PROD_PROFILE = "--spring.profiles.active=prod";
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+    private final String token = new TokenService(SECRET, 900, 86400).issue("startup", 1L, 0).getAccessToken();
+
+    @Test
+    @DisplayName("Startup, the startup profile answers its first request within the budget")
+    void measureTimeToFirstSuccessfulRequest() throws Exception {
+        Result defaults = run("default", Collections.emptyList(), Collections.emptyList());
+        Result startup = run("prod", Collections.emptyList(), Collections.singletonList(PROD_PROFILE));
+        System.out.println(defaults);
+        System.out.println(startup);
+        if (Files.exists(Paths.get(CDS_ARCHIVE))) {
+            startup = run("prod+cds", Arrays.asList("-Xshare:auto", "-XX:SharedArchiveFile=" + CDS_ARCHIVE),
+                    Collections.singletonList(PROD_PROFILE));
+            System.out.println(startup);
+        }
+        assertTrue(startup.median <= BUDGET_MILLIS,
+                String.format("median startup of %s is %dms, the budget is %dms", startup.name, startup.median, BUDGET_MILLIS));
+    }
+
+    private Result run(String name, List<String> jvmArgs, List<String> args) throws Exception {
+        long[] millis = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            millis[i] = launch(new File("build/startup/" + name.replace('+', '-') + "-" + i + ".log"), jvmArgs, args);
+        }
+        Arrays.sort(millis);
+        return new Result(name, millis[0], millis[RUNS / 2], millis[RUNS - 1]);
+    }
+
+    /**
+     * Method to start the application and wait for its first successful request
+     *
+     * @return return the milliseconds from the launch of the JVM to the first successful response
+     */
+    private long launch(File log, List<String> jvmArgs, List<String> args) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.addAll(Arrays.asList("-cp", CLASSPATH, TrainingApplication.class.getName(),
+                "--server.port=" + port, "--management.server.port=0", "--auth.token.secret=" + SECRET,
+                "--rate-limit.enabled=false"));
+        command.addAll(args);
+        log.getParentFile().mkdirs();
+        HttpRequest probe = HttpRequest.newBuilder(URI.create("http://localhost:" + port + PROBE_PATH))
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(5))
+                .build();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+        try {
+            while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+                assertTrue(process.isAlive(), "the application exited, see " + log);
+                try {
+                    if (client.send(probe, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (IOException e) {
+                    // not listening yet
+                }
+                Thread.sleep(10);
+            }
+            throw new AssertionError("no successful request in " + TIMEOUT + ", see " + log);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static class Result {
+
+        private final String name;
+        private final long min;
+        private final long median;
+        private final long max;
+
+        Result(String name, long min, long median, long max) {
+            this.name = name;
+            this.min = min;
+            this.median = median;
+            this.max = max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s first successful request  min=%dms  median=%dms  max=%dms", name, min, median, max);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package wolox.training.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.repository.Repository;
+import wolox.training.models.Book;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class RepositoryMetricsPostProcessorTest {
+
+    interface IsbnRepository extends Repository<Book, Long> {
+
+        Optional<Book> findByIsbn(String isbn);
+    }
+
+    private MeterRegistry meterRegistry;
+    private IsbnRepository repository;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ObjectProvider<MeterRegistry> provider = mock(ObjectProvider.class);
+        given(provider.getObject()).willReturn(meterRegistry);
+
+        IsbnRepository target = isbn -> {
+            if (isbn == null) {
+                throw new IllegalArgumentException();
+            }
+            return Optional.empty();
+        };
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addInterface(IsbnRepository.class);
+        repository = (IsbnRepository) new RepositoryMetricsPostProcessor(provider)
+                .postProcessAfterInitialization(proxyFactory.getProxy(), "isbnRepository");
+    }
+
+    @Test
+    @DisplayName("Test, when a repository method is called ,its timer of the outcome counts the call")
+    void whenRepositoryMethodCalledThenTimerRecorded() {
+        repository.findByIsbn("1");
+        repository.findByIsbn("2");
+        assertThrows(IllegalArgumentException.class, () -> repository.findByIsbn(null));
+
+        assertEquals(2, timer("success").count());
+        assertEquals(1, timer("error").count());
+    }
+
+    private Timer timer(String outcome) {
+        return meterRegistry.get(RepositoryMetricsPostProcessor.METRIC)
+                .tag("repository", "IsbnRepository")
+                .tag("method", "findByIsbn")
+                .tag("outcome", outcome)
+                .timer();
+    }
+}
@@ -0,0 +1,59 @@
+package wolox.training.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ServerTimingFilterTest {
+
+    private static final String BODY = "{\"title\":\"Dune\"}";
+
+    private final HttpServlet servlet = new HttpServlet() {
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            RequestTimings.add(RequestTimings.Phase.DB, TimeUnit.MILLISECONDS.toNanos(3));
+            RequestTimings.add(RequestTimings.Phase.DB, TimeUnit.MILLISECONDS.toNanos(2));
+            RequestTimings.current().startSerialization();
+            response.getWriter().write(BODY);
+        }
+    };
+
+    @Test
+    @DisplayName("Test, when the header is enabled ,the phases are sent and the body is copied")
+    void whenHeaderEnabledThenPhasesAreSent() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new ServerTimingFilter(true, 0).doFilter(new MockHttpServletRequest("GET", "/api/books"), response,
+                new MockFilterChain(servlet));
+
+        String header = response.getHeader(ServerTimingFilter.SERVER_TIMING);
+        assertTrue(header.startsWith("db;dur=5.00;desc=\"2 calls\", serialization;dur="));
+        assertTrue(header.contains("total;dur="));
+        assertEquals(BODY, response.getContentAsString());
+        assertNull(RequestTimings.current());
+    }
+
+    @Test
+    @DisplayName("Test, when the header is disabled ,the response is not buffered")
+    void whenHeaderDisabledThenResponseIsNotBuffered() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new ServerTimingFilter(false, 0).doFilter(new MockHttpServletRequest("GET", "/api/books"), response,
+                new MockFilterChain(servlet));
+
+        assertNull(response.getHeader(ServerTimingFilter.SERVER_TIMING));
+        assertEquals(BODY, response.getContentAsString());
+    }
+}
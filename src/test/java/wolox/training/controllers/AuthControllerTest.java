@@ -0,0 +1,96 @@
+package wolox.training.controllers;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import wolox.training.models.User;
+import wolox.training.models.dto.TokenDTO;
+import wolox.training.repositories.UsersRepository;
+import wolox.training.security.CustomAuthenticationProvider;
+import wolox.training.security.IAuthenticationFacede;
+import wolox.training.security.TokenService;
+import wolox.training.util.TestEntities;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(controllers = AuthController.class)
+class AuthControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @MockBean
+    private CustomAuthenticationProvider customAuthenticationProvider;
+
+    @MockBean
+    private TokenService tokenService;
+
+    @MockBean
+    private UsersRepository mockUsersRepository;
+
+    @MockBean
+    private IAuthenticationFacede iAuthenticationFacede;
+
+    private static final String AUTH_PATH = "/api/auth";
+
+    @Test
+    @DisplayName("Test, When a user logs in with valid credentials , it return the tokens")
+    void whenLoginWithValidCredentialsThenReturnTokens() throws Exception {
+        User user = TestEntities.mockOneUser();
+        given(mockUsersRepository.findByUsername("miguel")).willReturn(Optional.of(user));
+        given(tokenService.issue(user.getUsername(), user.getId(), user.getCredentialsVersion())).willReturn(TokenDTO.builder().accessToken("access").refreshToken("refresh").build());
+        mvc.perform(post(AUTH_PATH + "/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\": \"miguel\", \"password\": \"123\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accessToken").value("access"));
+    }
+
+    @Test
+    @DisplayName("Test, When a user logs in with bad credentials , it return status Unauthorized")
+    void whenLoginWithBadCredentialsThenReturnUnauthorized() throws Exception {
+        given(customAuthenticationProvider.authenticate(any(Authentication.class))).willThrow(new BadCredentialsException("Bad Credencial"));
+        mvc.perform(post(AUTH_PATH + "/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"username\": \"miguel\", \"password\": \"bad\"}"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @DisplayName("Test, When the tokens are refreshed with an invalid token , it return status Unauthorized")
+    void whenRefreshWithInvalidTokenThenReturnUnauthorized() throws Exception {
+        given(tokenService.verifyRefresh("invalid")).willReturn(Optional.empty());
+        mvc.perform(post(AUTH_PATH + "/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"refreshToken\": \"invalid\"}"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @DisplayName("Test, When the tokens are refreshed after the password changed , it return status Unauthorized")
+    void whenRefreshAfterPasswordChangedThenReturnUnauthorized() throws Exception {
+        User user = TestEntities.mockOneUser();
+        given(tokenService.verifyRefresh("refresh")).willReturn(Optional.of(user.getUsername()));
+        given(mockUsersRepository.findByUsername(user.getUsername())).willReturn(Optional.of(user));
+        given(tokenService.verifyRefresh("refresh", user.getId(), user.getCredentialsVersion())).willReturn(Optional.empty());
+        mvc.perform(post(AUTH_PATH + "/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"refreshToken\": \"refresh\"}"))
+                .andExpect(status().isUnauthorized());
+    }
+}
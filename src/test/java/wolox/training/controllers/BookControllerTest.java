@@ -2,6 +2,7 @@ package wolox.training.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
@@ -12,28 +13,63 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import wolox.training.models.Book;
 import wolox.training.models.dto.BookDTO;
+import wolox.training.models.dto.BookOwnersDTO;
+import wolox.training.models.dto.EntityVersion;
 import wolox.training.repositories.BookRepository;
+import wolox.training.repositories.UsersRepository;
 import wolox.training.security.CustomAuthenticationProvider;
+import wolox.training.security.IAuthenticationFacede;
+import wolox.training.security.TokenService;
+import wolox.training.service.BookCatalog;
+import wolox.training.service.BookJsonCache;
+import wolox.training.service.BookLookupService;
+import wolox.training.service.BookPopularityService;
+import wolox.training.service.BookSearchCache;
+import wolox.training.service.ChangeOutbox;
 import wolox.training.service.OpenLibraryService;
 import wolox.training.util.TestEntities;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -49,9 +85,36 @@ public class BookControllerTest {
     @MockBean
     private CustomAuthenticationProvider customAuthenticationProvider;
 
+    @MockBean
+    private TokenService tokenService;
+
     @MockBean
     private OpenLibraryService openLibraryService;
 
+    @MockBean
+    private UsersRepository mockUsersRepository;
+
+    @MockBean
+    private BookPopularityService bookPopularityService;
+
+    @MockBean
+    private IAuthenticationFacede iAuthenticationFacede;
+
+    @MockBean
+    private BookLookupService bookLookupService;
+
+    @MockBean
+    private BookSearchCache bookSearchCache;
+
+    @MockBean
+    private BookJsonCache bookJsonCache;
+
+    @MockBean
+    private ChangeOutbox changeOutbox;
+
+    @MockBean
+    private BookCatalog bookCatalog;
+
     private static Book testBook;
     private static List<Book> testBooks;
     private static BookDTO testBookDTO;
@@ -64,6 +127,18 @@ public class BookControllerTest {
         testBookDTO = TestEntities.mockBookDTO();
     }
 
+    /**
+     * The catalog is not loaded in these tests, every read goes to its fallback
+     */
+    @BeforeEach
+    void setUpCatalog() {
+        given(bookCatalog.findById(any(), any())).willAnswer(invocation -> invocation.getArgument(1, Supplier.class).get());
+        given(bookCatalog.findVersionById(any(), any())).willAnswer(invocation -> invocation.getArgument(1, Supplier.class).get());
+        given(bookCatalog.findByIsbn(any(), any())).willAnswer(invocation -> invocation.getArgument(1, Supplier.class).get());
+        given(bookCatalog.findBy(any(), any(), any(), any(), any(), any())).willAnswer(invocation -> invocation.getArgument(5, Supplier.class).get());
+        given(bookCatalog.findByParameters(anyMap(), any(), any(), any())).willAnswer(invocation -> invocation.getArgument(3, Supplier.class).get());
+    }
+
     @WithMockUser(value = "miguel")
     @Test
     @DisplayName("Test find all book ,return status OK")
@@ -75,6 +150,104 @@ public class BookControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When an encoded book is cached , it is written compressed without reading the repository")
+    void whenBookEncodedThenReturnCachedBytes() throws Exception {
+        BookJsonCache encoder = new BookJsonCache(true, 1_000_000, 65_536, false, true, 300);
+        ReflectionTestUtils.setField(encoder, "objectMapper", new ObjectMapper());
+        Book book = TestEntities.mockBook();
+        book.setId(1L);
+        book.setVersion(3L);
+        given(bookJsonCache.get(1L)).willReturn(encoder.put(book, encoder.stamp()));
+        String url = (USER_PATH + "/1");
+        mvc.perform(get(url)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3-gzip\""));
+        verify(mockBookRepository, never()).findById(1L);
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When the client refuses gzip with q=0 , the cached bytes are written uncompressed")
+    void whenGzipRefusedThenReturnUncompressedBytes() throws Exception {
+        BookJsonCache encoder = new BookJsonCache(true, 1_000_000, 65_536, false, true, 300);
+        ReflectionTestUtils.setField(encoder, "objectMapper", new ObjectMapper());
+        Book book = TestEntities.mockBook();
+        book.setId(1L);
+        book.setVersion(3L);
+        given(bookJsonCache.get(1L)).willReturn(encoder.put(book, encoder.stamp()));
+        String url = (USER_PATH + "/1");
+        mvc.perform(get(url)
+                .header(HttpHeaders.ACCEPT_ENCODING, "br, gzip;q=0, *;q=0.5"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(jsonPath("$.id").value(1));
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When a book is searched with its current entity tag , it return status Not Modified")
+    void whenBookNotModifiedThenReturnStatusNotModified() throws Exception {
+        given(mockBookRepository.findVersionById(1L)).willReturn(Optional.of(new EntityVersion() {
+            @Override
+            public Long getVersion() {
+                return 2L;
+            }
+
+            @Override
+            public Instant getLastModified() {
+                return Instant.parse("2020-11-23T10:15:30Z");
+            }
+        }));
+        String url = (USER_PATH + "/1");
+        mvc.perform(get(url)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"2\"")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""));
+        verify(mockBookRepository, never()).findById(1L);
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When a book is searched with the entity tag of its compressed bytes , it return status Not Modified")
+    void whenCompressedBookNotModifiedThenReturnStatusNotModified() throws Exception {
+        given(mockBookRepository.findVersionById(1L)).willReturn(Optional.of(new EntityVersion() {
+            @Override
+            public Long getVersion() {
+                return 2L;
+            }
+
+            @Override
+            public Instant getLastModified() {
+                return Instant.parse("2020-11-23T10:15:30Z");
+            }
+        }));
+        String url = (USER_PATH + "/1");
+        mvc.perform(get(url)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"1\", \"2-gzip\"")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2-gzip\""));
+        verify(mockBookRepository, never()).findById(1L);
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When a book is requested as CBOR , it return the book in CBOR")
+    void whenFindBookByIdAsCborThenReturnCbor() throws Exception {
+        given(mockBookRepository.findById(1L)).willReturn(Optional.of(testBook));
+        String url = (USER_PATH + "/1");
+        mvc.perform(get(url)
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR));
+        verify(bookJsonCache, never()).get(1L);
+    }
+
     @WithMockUser(value = "miguel")
     @Test
     @DisplayName("Test, When a book is searched for its id,it return status not found")
@@ -103,6 +276,7 @@ public class BookControllerTest {
     @Test
     @DisplayName("Test, When a book is updated , it return status OK")
     void whenUpdateBookThenReturnStatusCreated() throws Exception {
+        given(mockBookRepository.updateIfVersionMatches(eq(1L), isNull(), any(Book.class))).willReturn(1);
         given(mockBookRepository.findById(1L)).willReturn(Optional.of(testBook));
         String json = new ObjectMapper().writeValueAsString(testBook);
         String url = (USER_PATH + "/1");
@@ -129,11 +303,57 @@ public class BookControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When a book is updated with an old entity tag , it return status Precondition Failed")
+    void whenUpdateBookWithOldVersionThenReturnStatusPreconditionFailed() throws Exception {
+        given(mockBookRepository.updateIfVersionMatches(eq(1L), eq(3L), any(Book.class))).willReturn(0);
+        given(mockBookRepository.existsById(1L)).willReturn(true);
+        String json = new ObjectMapper().writeValueAsString(testBook);
+        String url = (USER_PATH + "/1");
+        mvc.perform(put(url)
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8")
+                .content(json))
+                .andDo(print())
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When a book is patched , it return status OK")
+    void whenPatchBookThenReturnStatusOK() throws Exception {
+        given(mockBookRepository.patchIfVersionMatches(eq(1L), isNull(), anyMap())).willReturn(1);
+        given(mockBookRepository.findById(1L)).willReturn(Optional.of(testBook));
+        String url = (USER_PATH + "/1");
+        mvc.perform(patch(url)
+                .contentType("application/merge-patch+json")
+                .characterEncoding("utf-8")
+                .content("{\"title\": \"new title\", \"genre\": null}"))
+                .andDo(print())
+                .andExpect(status().isOk());
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When a book is patched with an invalid value , it return status Bad Request")
+    void whenPatchBookWithInvalidValueThenReturnStatusBadRequest() throws Exception {
+        String url = (USER_PATH + "/1");
+        mvc.perform(patch(url)
+                .contentType("application/merge-patch+json")
+                .characterEncoding("utf-8")
+                .content("{\"pages\": \"0\"}"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+        verify(mockBookRepository, never()).patchIfVersionMatches(eq(1L), isNull(), anyMap());
+    }
+
     @WithMockUser(value = "miguel")
     @Test
     @DisplayName("Test, When a book is deleted , it return status No Content")
     void whenDeleteBookThenReturnStatusNoContent() throws Exception {
-        given(mockBookRepository.findById(1L)).willReturn(Optional.of(testBook));
+        given(mockBookRepository.deleteIfVersionMatches(1L, null)).willReturn(1);
         String url = (USER_PATH + "/1");
         mvc.perform(delete(url)
                 .contentType(MediaType.APPLICATION_JSON))
@@ -171,6 +391,7 @@ public class BookControllerTest {
     void whenFindBookByIsbnThenRetunrStatusCreated() throws Exception {
         given(mockBookRepository.findByIsbn(anyString())).willReturn(Optional.empty());
         given(openLibraryService.findInfoBook(anyString())).willReturn((testBookDTO));
+        given(bookLookupService.store(testBookDTO)).willReturn(testBook);
         String url = (USER_PATH + "/find-by-isbn?isbn=22");
         mvc.perform(get(url)
                 .contentType(MediaType.APPLICATION_JSON))
@@ -178,6 +399,33 @@ public class BookControllerTest {
                 .andExpect(status().isCreated());
     }
 
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When find a book by isbn asynchronously , it return status Created")
+    void whenFindBookByIsbnAsyncThenReturnStatusCreated() throws Exception {
+        given(bookLookupService.findStored(anyString())).willReturn(CompletableFuture.completedFuture(Optional.empty()));
+        given(bookLookupService.importBook(anyString(), anyLong())).willReturn(CompletableFuture.completedFuture(testBook));
+        given(bookLookupService.withDeadline(any(), anyLong())).willAnswer(invocation -> invocation.getArgument(0));
+        MvcResult result = mvc.perform(get(USER_PATH + "/find-by-isbn-async?isbn=22"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isCreated());
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When the asynchronous isbn lookup exceeds the deadline , it return status Gateway Timeout")
+    void whenFindBookByIsbnAsyncTimesOutThenReturnGatewayTimeout() throws Exception {
+        given(bookLookupService.findStored(anyString())).willReturn(new CompletableFuture<>());
+        given(bookLookupService.withDeadline(any(), anyLong())).willReturn(CompletableFuture.failedFuture(new TimeoutException()));
+        MvcResult result = mvc.perform(get(USER_PATH + "/find-by-isbn-async?isbn=22"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isGatewayTimeout());
+    }
+
     @WithMockUser(value = "miguel")
     @Test
     @DisplayName("Test , When a book is seached by publisher , genre and year ,it return status OK")
@@ -185,6 +433,7 @@ public class BookControllerTest {
         Pageable pageable = PageRequest.of(1, 4);
         Page<Book> books = new PageImpl<>(testBooks);
         given(mockBookRepository.findAllByPublisherAndGenreAndYearQuery(testBook.getPublisher(), testBook.getGenre(), testBook.getYear(), pageable)).willReturn(books);
+        given(bookSearchCache.findBy(any(), any(), any(), any(), any(), any())).willAnswer(invocation -> invocation.getArgument(5, Supplier.class).get());
         String url = (USER_PATH + "/findby?publisher=publisher&genre=genre&year=22");
         mvc.perform(get(url)
                 .contentType(MediaType.APPLICATION_JSON))
@@ -200,9 +449,77 @@ public class BookControllerTest {
         books.add(testBook);
         Page<Book> bookPage = new PageImpl<>(books);
         given(mockBookRepository.findByAllParameters("genre", "author", "image", "title", "subtitle", "publisher", "startYear", "endYear", "pages", "22", pageable)).willReturn(bookPage);
+        given(bookSearchCache.findByParameters(anyMap(), any(), any(), any())).willAnswer(invocation -> invocation.getArgument(3, Supplier.class).get());
         String url = (USER_PATH + "?genre=genre&author=author&image=image&title=title&subtitle=subtitle&publisher=publisher&startYear=10&endYear=2019&pages=22&isbn=22&page=1&size=4");
         mvc.perform(get(url)
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
     }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test , When a book is seached with fields and compact envelope ,it return only those fields")
+    void whenFindByAllParametersWithFieldsThenReturnCompactPage() throws Exception {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("isbn", testBook.getIsbn());
+        row.put("title", testBook.getTitle());
+        Page<Map<String, Object>> rows = new PageImpl<>(Collections.singletonList(row));
+        given(mockBookRepository.findFieldsByAllParameters(eq(Arrays.asList("isbn", "title")), anyMap(), any())).willReturn(rows);
+        given(bookSearchCache.findByParameters(anyMap(), any(), any(), any())).willAnswer(invocation -> invocation.getArgument(3, Supplier.class).get());
+        String url = (USER_PATH + "?title=title&fields=isbn,title,isbn&envelope=compact");
+        mvc.perform(get(url)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].isbn").value(testBook.getIsbn()))
+                .andExpect(jsonPath("$.content[0].author").doesNotExist())
+                .andExpect(jsonPath("$.totalElements").value(1))
+                .andExpect(jsonPath("$.pageable").doesNotExist());
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test , When a book is seached with an unknown field ,it return status Bad Request")
+    void whenFindByAllParametersWithUnknownFieldThenReturnBadRequest() throws Exception {
+        String url = (USER_PATH + "?fields=isbn,users");
+        mvc.perform(get(url)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        verify(mockBookRepository, never()).findFieldsByAllParameters(any(), anyMap(), any());
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When the owners of a book are counted , it return status OK")
+    void whenCountBookOwnersThenReturnStatusOK() throws Exception {
+        given(bookPopularityService.getOwners(1L)).willReturn(BookOwnersDTO.builder().bookId(1L).owners(3).build());
+        String url = (USER_PATH + "/1/owners-count");
+        mvc.perform(get(url)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.owners").value(3));
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When the owners of a missing book are counted , it return status Not Found")
+    void whenCountOwnersOfMissingBookThenReturnStatusNotFound() throws Exception {
+        given(bookPopularityService.getOwners(99L)).willReturn(BookOwnersDTO.builder().bookId(99L).owners(0).build());
+        given(mockBookRepository.existsById(99L)).willReturn(false);
+        mvc.perform(get(USER_PATH + "/99/owners-count")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When the most owned books are searched , it return status OK")
+    void whenFindMostOwnedBooksThenReturnStatusOK() throws Exception {
+        given(bookPopularityService.getMostOwned(5))
+                .willReturn(Collections.singletonList(BookOwnersDTO.builder().bookId(1L).owners(3).build()));
+        String url = (USER_PATH + "/most-owned?limit=5");
+        mvc.perform(get(url)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].bookId").value(1));
+    }
 }
@@ -0,0 +1,101 @@
+package wolox.training.controllers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import wolox.training.models.Book;
+import wolox.training.models.User;
+import wolox.training.repositories.BookRepository;
+import wolox.training.repositories.UsersRepository;
+import wolox.training.util.TestEntities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static wolox.training.util.QueryCounts.collectionFetches;
+import static wolox.training.util.QueryCounts.noRepeatedStatements;
+import static wolox.training.util.QueryCounts.statements;
+import static wolox.training.util.QueryCounts.statementsAtMost;
+
+/**
+ * Statements sent by the book and user endpoints, the controller tests mock the repositories so the queries are
+ * counted against an embedded database
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:queries;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.flyway.enabled=false",
+        "rate-limit.enabled=false",
+        "auth.token.secret=queries-test",
+        "hibernate-statistics.fail-on-repeated=true",
+        "invalidation.transport=memory"
+})
+@AutoConfigureMockMvc
+public class EndpointQueriesTest {
+
+    private static final int OWNERS = 3;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    private Book book;
+    private List<User> owners;
+
+    @BeforeEach
+    void setUp() {
+        book = bookRepository.save(TestEntities.mockBook());
+        owners = new ArrayList<>();
+        for (int i = 0; i < OWNERS; i++) {
+            User owner = TestEntities.mockOneUser();
+            owner.setUsername(owner.getUsername() + i);
+            owner.addBook(book);
+            owners.add(usersRepository.save(owner));
+        }
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, when a book is requested ,it is loaded in one statement")
+    void whenFindBookByIdThenOneStatement() throws Exception {
+        mvc.perform(get("/api/books/" + book.getId()))
+                .andExpect(status().isOk())
+                .andExpect(statements(1));
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, when a user is requested ,the user and its books are loaded in two statements")
+    void whenFindUserByIdThenUserAndBooksStatements() throws Exception {
+        mvc.perform(get("/api/users/" + owners.get(0).getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books.length()").value(1))
+                .andExpect(statements(2))
+                .andExpect(collectionFetches(1));
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, when the owners of a book are requested ,their books are fetched in one batch")
+    void whenFindOwnersThenBooksAreBatchFetched() throws Exception {
+        mvc.perform(get("/api/books/" + book.getId() + "/owners"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(OWNERS))
+                .andExpect(noRepeatedStatements())
+                .andExpect(statementsAtMost(3));
+    }
+}
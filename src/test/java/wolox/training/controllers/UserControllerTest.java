@@ -4,14 +4,17 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.hamcrest.Matchers;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -19,26 +22,44 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import wolox.training.models.Book;
+import wolox.training.models.ChangeEvent;
 import wolox.training.models.User;
+import wolox.training.models.dto.BookVersion;
+import wolox.training.models.dto.EntityVersion;
 import wolox.training.repositories.BookRepository;
 import wolox.training.repositories.UsersRepository;
+import wolox.training.security.AuthenticationCache;
 import wolox.training.security.CustomAuthenticationProvider;
+import wolox.training.security.TokenService;
 import wolox.training.security.IAuthenticationFacede;
+import wolox.training.security.PasswordHashingService;
+import wolox.training.service.BookPopularityService;
+import wolox.training.service.ChangeOutbox;
 import wolox.training.service.OpenLibraryService;
 import wolox.training.util.TestEntities;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -58,6 +79,9 @@ class UserControllerTest {
     @MockBean
     private CustomAuthenticationProvider customAuthenticationProvider;
 
+    @MockBean
+    private TokenService tokenService;
+
     @MockBean
     private PasswordEncoder passwordEncoder;
 
@@ -70,12 +94,25 @@ class UserControllerTest {
     @MockBean
     private Authentication authentication;
 
+    @MockBean
+    private BookPopularityService bookPopularityService;
+
+    @MockBean
+    private AuthenticationCache authenticationCache;
+
+    @MockBean
+    private PasswordHashingService passwordHashingService;
+
+    @MockBean
+    private ChangeOutbox changeOutbox;
+
     private static User testUser;
     private static User twoTestUser;
     private static Book testBook;
     private static List<User> testUsers;
     private static List<Book> testBooks;
     private static final String USER_PATH = "/api/users";
+    private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
 
     @BeforeAll
     static void setUp() {
@@ -88,6 +125,18 @@ class UserControllerTest {
         twoTestUser.setBooks(testBooks);
     }
 
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When a user is requested as Smile , it return the user in Smile")
+    void whenFindUserByIdAsSmileThenReturnSmile() throws Exception {
+        given(mockUsersRepository.findById(1L)).willReturn(Optional.of(testUser));
+        String url = (USER_PATH + "/1");
+        mvc.perform(get(url)
+                .accept(SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SMILE));
+    }
+
     @WithMockUser(value = "miguel")
     @Test
     @DisplayName("Test find all user ,return status OK")
@@ -100,6 +149,70 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.name").value(testUser.getName()));
     }
 
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When a user is searched with its current entity tag , it return status Not Modified")
+    void whenUserNotModifiedThenReturnStatusNotModified() throws Exception {
+        given(mockUsersRepository.findVersionById(1L)).willReturn(Optional.of(new EntityVersion() {
+            @Override
+            public Long getVersion() {
+                return 2L;
+            }
+
+            @Override
+            public Instant getLastModified() {
+                return Instant.parse("2020-11-23T10:15:30Z");
+            }
+        }));
+        String url = (USER_PATH + "/1");
+        mvc.perform(get(url)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"2\"")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""));
+        verify(mockUsersRepository, never()).findById(1L);
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When a book of a user changed since its entity tag , it return the user with a new tag")
+    void whenBookOfUserModifiedThenReturnStatusOK() throws Exception {
+        given(mockUsersRepository.findVersionById(1L)).willReturn(Optional.of(new EntityVersion() {
+            @Override
+            public Long getVersion() {
+                return 2L;
+            }
+
+            @Override
+            public Instant getLastModified() {
+                return Instant.parse("2020-11-23T10:15:30Z");
+            }
+        }));
+        given(mockUsersRepository.findBookVersionsById(1L)).willReturn(Collections.singletonList(new BookVersion() {
+            @Override
+            public Long getId() {
+                return 1L;
+            }
+
+            @Override
+            public Long getVersion() {
+                return 4L;
+            }
+
+            @Override
+            public Instant getLastModified() {
+                return Instant.parse("2020-11-24T10:15:30Z");
+            }
+        }));
+        given(mockUsersRepository.findById(1L)).willReturn(Optional.of(twoTestUser));
+        String url = (USER_PATH + "/1");
+        mvc.perform(get(url)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"2\"")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, Matchers.not("\"2\"")));
+    }
+
     @WithMockUser(value = "miguel")
     @Test
     @DisplayName("Test, When a user is searched for its id,it return status not found")
@@ -124,10 +237,23 @@ class UserControllerTest {
                 .andExpect(status().isCreated());
     }
 
+    @Test
+    @DisplayName("Test , When a user is created with a taken username , it return status Conflict")
+    void whenCreateUserWithTakenUsernameThenReturnStatusConflict() throws Exception {
+        given(mockUsersRepository.saveAndFlush(any(User.class))).willThrow(new DataIntegrityViolationException("users_username_key"));
+        String json = new ObjectMapper().writeValueAsString(testUser);
+        mvc.perform(post(USER_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8")
+                .content(json))
+                .andExpect(status().isConflict());
+    }
+
     @WithMockUser(value = "miguel")
     @Test
     @DisplayName("Test, When a user is updated , it return status OK")
     void whenUpdateUserThenReturnStatusCreated() throws Exception {
+        given(mockUsersRepository.updateIfVersionMatches(eq(1L), isNull(), any(User.class))).willReturn(1);
         given(mockUsersRepository.findById(1L)).willReturn(Optional.of(testUser));
         String json = new ObjectMapper().writeValueAsString(testUser);
         String url = (USER_PATH + "/1");
@@ -154,6 +280,47 @@ class UserControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When a user is deleted with an old entity tag , it return status Precondition Failed")
+    void whenDeleteUserWithOldVersionThenReturnStatusPreconditionFailed() throws Exception {
+        given(mockUsersRepository.findById(1L)).willReturn(Optional.of(testUser));
+        String url = (USER_PATH + "/1");
+        mvc.perform(delete(url)
+                .header(HttpHeaders.IF_MATCH, "\"7\"")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When a user is patched , it return status OK")
+    void whenPatchUserThenReturnStatusOK() throws Exception {
+        given(mockUsersRepository.patchIfVersionMatches(eq(1L), isNull(), anyMap())).willReturn(1);
+        given(mockUsersRepository.findById(1L)).willReturn(Optional.of(testUser));
+        String url = (USER_PATH + "/1");
+        mvc.perform(patch(url)
+                .contentType("application/merge-patch+json")
+                .characterEncoding("utf-8")
+                .content("{\"birthdate\": \"1993-11-23\"}"))
+                .andDo(print())
+                .andExpect(status().isOk());
+    }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When the books of a user are patched , it return status Bad Request")
+    void whenPatchUserBooksThenReturnStatusBadRequest() throws Exception {
+        String url = (USER_PATH + "/1");
+        mvc.perform(patch(url)
+                .contentType("application/merge-patch+json")
+                .characterEncoding("utf-8")
+                .content("{\"books\": []}"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
     @WithMockUser(value = "miguel")
     @Test
     @DisplayName("Test, When a user is deleted , it return status No Content")
@@ -192,6 +359,26 @@ class UserControllerTest {
                 .andExpect(status().isCreated());
     }
 
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("Test, When a book is added , the change is recorded with the flushed version of the user")
+    void whenAddBookThenRecordFlushedVersion() throws Exception {
+        User user = TestEntities.mockOneUser();
+        user.setVersion(3L);
+        given(mockUsersRepository.findById(1L)).willReturn(Optional.of(user));
+        given(mockBookRepository.findById(1L)).willReturn(Optional.of(testBook));
+        given(mockUsersRepository.saveAndFlush(user)).willAnswer(invocation -> {
+            user.setVersion(4L);
+            return user;
+        });
+        String url = (USER_PATH + "/1/add-books/1");
+        mvc.perform(patch(url)
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8"))
+                .andExpect(status().isCreated());
+        verify(changeOutbox).record(ChangeEvent.USER, 1L, ChangeEvent.UPDATED, 4L);
+    }
+
     @WithMockUser(value = "miguel")
     @Test
     @DisplayName("Test, When a book is added and its exists , it return status Conflict")
@@ -248,7 +435,7 @@ class UserControllerTest {
     @Test
     @DisplayName("test, When a password is update , it return status OK")
     void whenPasswordIsUpdateThenReturnStatusOK() throws Exception {
-        given(mockUsersRepository.findById(1L)).willReturn(Optional.of(testUser));
+        given(mockUsersRepository.updatePassword(eq(1L), any())).willReturn(1);
         String json = new ObjectMapper().writeValueAsString(testUser);
         String url = (USER_PATH + "/password/1");
         mvc.perform(put(url)
@@ -273,4 +460,19 @@ class UserControllerTest {
                 .andDo(print())
                 .andExpect(status().isNotFound());
     }
+
+    @WithMockUser(value = "miguel")
+    @Test
+    @DisplayName("test, When a password is update , the verified credentials of the user are forgotten")
+    void whenPasswordIsUpdateThenInvalidateAuthenticationCache() throws Exception {
+        given(mockUsersRepository.updatePassword(eq(1L), any())).willReturn(1);
+        String json = new ObjectMapper().writeValueAsString(testUser);
+        String url = (USER_PATH + "/password/1");
+        mvc.perform(put(url)
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding("utf-8")
+                .content(json))
+                .andExpect(status().isOk());
+        verify(authenticationCache).invalidate(1L);
+    }
 }
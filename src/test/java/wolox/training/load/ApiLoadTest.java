@@ -0,0 +1,325 @@
+package wolox.training.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import wolox.training.security.TokenService;
+import wolox.training.service.BookPopularityService;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * End to end load test of the book and user controllers. A synthetic dataset is generated in an embedded
+ * database, OpenLibrary is replaced by a local stand in, and a mix of reads and writes is sent by concurrent
+ * clients. The throughput and the latency percentiles of every endpoint are printed and written as JSON to
+ * build/reports/load/results.json:
+ * gradle loadTest -Dload.books=1000000 -Dload.users=100000 -Dload.duration-seconds=120
+ *
+ * @author luismiguelrodriguez
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1",
+        "spring.datasource.hikari.maximum-pool-size=32",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.flyway.enabled=false",
+        "rate-limit.enabled=false",
+        "auth.token.secret=load-test",
+        "invalidation.transport=memory"
+})
+public class ApiLoadTest {
+
+    private static final int BOOKS = Integer.getInteger("load.books", 1_000_000);
+    private static final int USERS = Integer.getInteger("load.users", 100_000);
+    private static final int BOOKS_BY_USER = Integer.getInteger("load.books-by-user", 10);
+    private static final long SEED = Long.getLong("load.seed", 42);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 64);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmup-seconds", 30);
+    private static final int DURATION_SECONDS = Integer.getInteger("load.duration-seconds", 120);
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("load.max-error-rate", "0.01"));
+
+    private static final OpenLibraryStandIn OPEN_LIBRARY = OpenLibraryStandIn.start(
+            Long.getLong("load.open-library.median-millis", 150),
+            Double.parseDouble(System.getProperty("load.open-library.sigma", "0.5")),
+            Double.parseDouble(System.getProperty("load.open-library.error-rate", "0.02")));
+
+    /**
+     * Operations of the mix and their weights
+     */
+    private static final Map<String, Integer> MIX = new LinkedHashMap<>();
+
+    static {
+        MIX.put("GET /api/books/{id}", 40);
+        MIX.put("GET /api/books?title", 10);
+        MIX.put("GET /api/books/findby", 10);
+        MIX.put("GET /api/books/find-by-isbn", 8);
+        MIX.put("GET /api/users/{id}", 10);
+        MIX.put("POST /api/books", 4);
+        MIX.put("PUT /api/books/{id}", 4);
+        MIX.put("PATCH /api/users/{id}/add-books", 5);
+        MIX.put("PATCH /api/users/{id}/remove-books", 3);
+        MIX.put("POST /api/auth/login", 2);
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private BookPopularityService bookPopularityService;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newFixedThreadPool(4))
+            .build();
+
+    private final AtomicLong newIsbns = new AtomicLong();
+
+    /**
+     * Signed with the secret of the application, valid for the whole run
+     */
+    private final String token = new TokenService("load-test", 86400, 86400).issue("load", 1L, 0).getAccessToken();
+
+    @DynamicPropertySource
+    static void openLibrary(DynamicPropertyRegistry registry) {
+        registry.add("urlExternal", OPEN_LIBRARY::baseUrl);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        OPEN_LIBRARY.stop();
+    }
+
+    @Test
+    @DisplayName("Load, a mix of book and user requests is served within the error budget")
+    void mixedReadWriteLoad() throws Exception {
+        long start = System.nanoTime();
+        new SyntheticDataGenerator(jdbcTemplate, passwordEncoder, SEED).generate(BOOKS, USERS, BOOKS_BY_USER);
+        bookPopularityService.load();
+        System.out.printf("generated %d books, %d users in %ds%n", BOOKS, USERS,
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+
+        run(WARMUP_SECONDS);
+        Map<String, Result> results = run(DURATION_SECONDS);
+
+        results.values().forEach(System.out::println);
+        write(results);
+        long requests = results.values().stream().mapToLong(result -> result.requests).sum();
+        long errors = results.values().stream().mapToLong(result -> result.errors).sum();
+        assertTrue(errors <= requests * MAX_ERROR_RATE, errors + " server errors in " + requests + " requests");
+    }
+
+    private Map<String, Result> run(int seconds) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(CONCURRENCY);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<Map<String, Recording>>> futures = new ArrayList<>();
+        for (int worker = 0; worker < CONCURRENCY; worker++) {
+            long workerSeed = SEED + worker;
+            futures.add(workers.submit(() -> work(new Random(workerSeed), end)));
+        }
+        Map<String, Recording> merged = new LinkedHashMap<>();
+        for (Future<Map<String, Recording>> future : futures) {
+            future.get().forEach((operation, recording) ->
+                    merged.computeIfAbsent(operation, key -> new Recording()).merge(recording));
+        }
+        workers.shutdown();
+
+        Map<String, Result> results = new LinkedHashMap<>();
+        merged.forEach((operation, recording) -> results.put(operation, new Result(operation, recording, seconds)));
+        return results;
+    }
+
+    private Map<String, Recording> work(Random random, long end) {
+        Map<String, Recording> recordings = new LinkedHashMap<>();
+        int totalWeight = MIX.values().stream().mapToInt(Integer::intValue).sum();
+        while (System.nanoTime() < end) {
+            String operation = pick(random.nextInt(totalWeight));
+            HttpRequest request = request(operation, random);
+            Recording recording = recordings.computeIfAbsent(operation, key -> new Recording());
+            long requestStart = System.nanoTime();
+            int status;
+            try {
+                status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            } catch (IOException e) {
+                status = 599;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            recording.record(System.nanoTime() - requestStart, status);
+        }
+        return recordings;
+    }
+
+    private static String pick(int point) {
+        for (Map.Entry<String, Integer> operation : MIX.entrySet()) {
+            point -= operation.getValue();
+            if (point < 0) {
+                return operation.getKey();
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private HttpRequest request(String operation, Random random) {
+        long bookId = 1 + random.nextInt(BOOKS);
+        long userId = 1 + random.nextInt(USERS);
+        String word = SyntheticDataGenerator.WORDS[random.nextInt(SyntheticDataGenerator.WORDS.length)];
+        switch (operation) {
+            case "GET /api/books/{id}":
+                return authorized("/api/books/" + bookId).GET().build();
+            case "GET /api/books?title":
+                return authorized("/api/books?title=" + encode("%" + word + "%") + "&page=" + random.nextInt(5) + "&size=20").GET().build();
+            case "GET /api/books/findby":
+                return authorized("/api/books/findby?publisher=" + encode("Publisher " + random.nextInt(500))
+                        + "&genre=" + SyntheticDataGenerator.GENRES[random.nextInt(SyntheticDataGenerator.GENRES.length)]
+                        + "&year=" + (1900 + random.nextInt(120)) + "&size=20").GET().build();
+            case "GET /api/books/find-by-isbn":
+                String isbn = random.nextInt(4) == 0 ? "979" + newIsbns.incrementAndGet() : SyntheticDataGenerator.isbn(bookId);
+                return authorized("/api/books/find-by-isbn?isbn=" + isbn).GET().build();
+            case "GET /api/users/{id}":
+                return authorized("/api/users/" + userId).GET().build();
+            case "POST /api/books":
+                return json(authorized("/api/books"), "POST", book("979" + newIsbns.incrementAndGet(), word));
+            case "PUT /api/books/{id}":
+                return json(authorized("/api/books/" + bookId), "PUT", book(SyntheticDataGenerator.isbn(bookId), word));
+            case "PATCH /api/users/{id}/add-books":
+                return authorized("/api/users/" + userId + "/add-books/" + bookId)
+                        .method("PATCH", HttpRequest.BodyPublishers.noBody()).build();
+            case "PATCH /api/users/{id}/remove-books":
+                return authorized("/api/users/" + userId + "/remove-books/" + bookId)
+                        .method("PATCH", HttpRequest.BodyPublishers.noBody()).build();
+            case "POST /api/auth/login":
+                return json(HttpRequest.newBuilder(uri("/api/auth/login")), "POST", String.format(
+                        "{\"username\": \"%s\", \"password\": \"%s\"}",
+                        SyntheticDataGenerator.username(userId), SyntheticDataGenerator.PASSWORD));
+            default:
+                throw new IllegalArgumentException(operation);
+        }
+    }
+
+    private HttpRequest.Builder authorized(String path) {
+        return HttpRequest.newBuilder(uri(path))
+                .timeout(Duration.ofSeconds(30))
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+    }
+
+    private static HttpRequest json(HttpRequest.Builder builder, String method, String body) {
+        return builder.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String book(String isbn, String word) {
+        return String.format("{\"genre\": \"Fiction\", \"author\": \"Author %s\", \"image\": \"No image\","
+                + " \"title\": \"%s\", \"subtitle\": \"%s\", \"publisher\": \"Publisher 1\", \"year\": \"2001\","
+                + " \"pages\": \"300\", \"isbn\": \"%s\"}", word, word, word, isbn);
+    }
+
+    private static void write(Map<String, Result> results) throws IOException {
+        File report = new File("build/reports/load/results.json");
+        report.getParentFile().mkdirs();
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(report, results.values());
+    }
+
+    /**
+     * Latencies and status classes of one operation
+     */
+    private static class Recording {
+
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private long clientErrors;
+        private long serverErrors;
+
+        void record(long nanos, int status) {
+            latencies.record(nanos);
+            if (status >= 500) {
+                serverErrors++;
+            } else if (status >= 400) {
+                clientErrors++;
+            }
+        }
+
+        void merge(Recording other) {
+            latencies.merge(other.latencies);
+            clientErrors += other.clientErrors;
+            serverErrors += other.serverErrors;
+        }
+    }
+
+    public static class Result {
+
+        public final String operation;
+        public final long requests;
+        public final long rejected;
+        public final long errors;
+        public final double throughput;
+        public final double p50;
+        public final double p99;
+        public final double p999;
+        public final double max;
+
+        Result(String operation, Recording recording, int seconds) {
+            this.operation = operation;
+            this.requests = recording.latencies.count();
+            this.rejected = recording.clientErrors;
+            this.errors = recording.serverErrors;
+            this.throughput = requests / (double) seconds;
+            this.p50 = recording.latencies.percentileMillis(0.50);
+            this.p99 = recording.latencies.percentileMillis(0.99);
+            this.p999 = recording.latencies.percentileMillis(0.999);
+            this.max = recording.latencies.maxMillis();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-36s %9.1f req/s  4xx=%d  5xx=%d  p50=%.2fms  p99=%.2fms  p999=%.2fms  max=%.2fms",
+                    operation, throughput, rejected, errors, p50, p99, p999, max);
+        }
+    }
+}
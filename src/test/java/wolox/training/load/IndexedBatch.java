@@ -0,0 +1,37 @@
+package wolox.training.load;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Batch of a fixed number of statements whose values are set by position
+ *
+ * @author luismiguelrodriguez
+ */
+class IndexedBatch implements BatchPreparedStatementSetter {
+
+    interface Values {
+
+        void set(PreparedStatement statement, int index) throws SQLException;
+    }
+
+    private final int size;
+    private final Values values;
+
+    IndexedBatch(int size, Values values) {
+        this.size = size;
+        this.values = values;
+    }
+
+    @Override
+    public void setValues(PreparedStatement statement, int index) throws SQLException {
+        values.set(statement, index);
+    }
+
+    @Override
+    public int getBatchSize() {
+        return size;
+    }
+}
@@ -0,0 +1,80 @@
+package wolox.training.load;
+
+/**
+ * Histogram of latencies in microseconds with linear buckets up to 64 and logarithmic buckets split in 32 linear
+ * sub buckets above it, the reported values keep an error below 4% whatever their magnitude. It is not thread safe, every worker records in its own histograms
+ * and they are merged for the report
+ *
+ * @author luismiguelrodriguez
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    private final long[] counts = new long[SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS];
+    private long total;
+    private long max;
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts[index(micros)]++;
+        total++;
+        max = Math.max(max, micros);
+    }
+
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    public long count() {
+        return total;
+    }
+
+    /**
+     * @return return the highest recorded latency in milliseconds
+     */
+    public double maxMillis() {
+        return max / 1000.0;
+    }
+
+    /**
+     * Method to get the latency below which the given fraction of the requests completed
+     *
+     * @param percentile fraction between 0 and 1
+     * @return return the latency in milliseconds, the upper bound of the bucket of the percentile
+     */
+    public double percentileMillis(double percentile) {
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(upperBound(i), max) / 1000.0;
+            }
+        }
+        return 0;
+    }
+
+    private static int index(long value) {
+        int magnitude = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        if (magnitude == 0) {
+            return (int) value;
+        }
+        return SUB_BUCKETS + (magnitude - 1) * HALF_SUB_BUCKETS + (int) (value >>> magnitude) - HALF_SUB_BUCKETS;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int magnitude = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << magnitude) - 1;
+    }
+}
@@ -0,0 +1,106 @@
+package wolox.training.load;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.common.FileSource;
+import com.github.tomakehurst.wiremock.extension.Parameters;
+import com.github.tomakehurst.wiremock.extension.ResponseDefinitionTransformer;
+import com.github.tomakehurst.wiremock.http.Request;
+import com.github.tomakehurst.wiremock.http.ResponseDefinition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+/**
+ * Local stand in of the OpenLibrary books api, it answers every isbn with a generated book after a log normal
+ * delay, and fails with 503 at the configured rate
+ *
+ * @author luismiguelrodriguez
+ */
+public class OpenLibraryStandIn {
+
+    private static final String TRANSFORMER = "open-library-books";
+
+    private final WireMockServer server;
+
+    private OpenLibraryStandIn(WireMockServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Method to start the stand in on a free port
+     *
+     * @param medianLatencyMillis median of the response delay
+     * @param latencySigma        spread of the log normal delay, 0 for a fixed delay
+     * @param errorRate           fraction of requests answered with 503
+     * @return return the running stand in
+     */
+    public static OpenLibraryStandIn start(long medianLatencyMillis, double latencySigma, double errorRate) {
+        WireMockServer server = new WireMockServer(options()
+                .dynamicPort()
+                .containerThreads(200)
+                .extensions(new BooksTransformer(errorRate)));
+        server.start();
+        server.stubFor(get(urlPathEqualTo("/api/books"))
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withLogNormalRandomDelay(medianLatencyMillis, latencySigma)
+                        .withTransformers(TRANSFORMER)));
+        return new OpenLibraryStandIn(server);
+    }
+
+    /**
+     * @return return the base url to set in urlExternal
+     */
+    public String baseUrl() {
+        return "http://localhost:" + server.port() + "/api/";
+    }
+
+    public void stop() {
+        server.stop();
+    }
+
+    private static class BooksTransformer extends ResponseDefinitionTransformer {
+
+        private final double errorRate;
+
+        BooksTransformer(double errorRate) {
+            this.errorRate = errorRate;
+        }
+
+        @Override
+        public ResponseDefinition transform(Request request, ResponseDefinition responseDefinition, FileSource files,
+                                            Parameters parameters) {
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                return ResponseDefinitionBuilder.like(responseDefinition).but().withStatus(503).build();
+            }
+            String bibkey = request.queryParameter("bibkeys").firstValue();
+            int hash = Math.abs(bibkey.hashCode());
+            String body = "{\"" + bibkey + "\": {"
+                    + "\"title\": \"" + SyntheticDataGenerator.WORDS[hash % SyntheticDataGenerator.WORDS.length] + " imported\","
+                    + "\"subtitle\": \"" + bibkey + "\","
+                    + "\"publishers\": [{\"name\": \"Publisher " + hash % 500 + "\"}],"
+                    + "\"publish_date\": \"" + (1900 + hash % 120) + "\","
+                    + "\"number_of_pages\": " + (50 + hash % 950) + ","
+                    + "\"authors\": [{\"name\": \"Author " + hash % 1000 + "\"}]"
+                    + "}}";
+            return ResponseDefinitionBuilder.like(responseDefinition).but().withStatus(200).withBody(body).build();
+        }
+
+        @Override
+        public String getName() {
+            return TRANSFORMER;
+        }
+
+        @Override
+        public boolean applyGlobally() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package wolox.training.load;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Generator of a repeatable dataset of books, users and ownership links, written with JDBC batches so millions
+ * of rows take seconds. Every user has the same password and the counters of the books match the links
+ *
+ * @author luismiguelrodriguez
+ */
+public class SyntheticDataGenerator {
+
+    public static final String PASSWORD = "load-test";
+
+    static final String[] GENRES = {"Fiction", "Mystery", "Fantasy", "Science", "History", "Poetry", "Horror", "Romance"};
+
+    static final String[] WORDS = {"night", "river", "stone", "garden", "empire", "shadow", "light", "winter",
+            "ocean", "mountain", "secret", "silent", "golden", "broken", "last", "first", "city", "forest", "storm",
+            "glass", "iron", "letters", "journey", "house", "war", "peace", "dream", "memory", "fire", "road"};
+
+    private static final int BATCH_SIZE = 10_000;
+
+    /**
+     * Identifiers are pooled by Hibernate in blocks of this size
+     */
+    private static final int ALLOCATION_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final long seed;
+
+    public SyntheticDataGenerator(JdbcTemplate jdbcTemplate, PasswordEncoder passwordEncoder, long seed) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.seed = seed;
+    }
+
+    /**
+     * Method to write the dataset, the identifiers of the books and the users start at 1
+     *
+     * @param books              number of books
+     * @param users              number of users
+     * @param averageBooksByUser average number of books owned by a user
+     */
+    public void generate(int books, int users, int averageBooksByUser) {
+        Random random = new Random(seed);
+        int[][] libraries = new int[users][];
+        long[] owners = new long[books];
+        for (int user = 0; user < users; user++) {
+            int size = Math.min(books, random.nextInt(2 * averageBooksByUser + 1));
+            BitSet owned = new BitSet(books);
+            libraries[user] = new int[size];
+            for (int i = 0; i < size; i++) {
+                int book;
+                do {
+                    book = random.nextInt(books);
+                } while (owned.get(book));
+                owned.set(book);
+                libraries[user][i] = book;
+                owners[book]++;
+            }
+        }
+
+        createIndexes();
+        insertBooks(books, owners, random);
+        insertUsers(users, random);
+        insertLinks(libraries);
+        jdbcTemplate.execute("ALTER SEQUENCE book_sq RESTART WITH " + (books + ALLOCATION_SIZE + 1));
+        jdbcTemplate.execute("ALTER SEQUENCE user_sq RESTART WITH " + (users + ALLOCATION_SIZE + 1));
+    }
+
+    public static String isbn(long bookId) {
+        return String.format("978%010d", bookId);
+    }
+
+    public static String username(long userId) {
+        return "load" + userId;
+    }
+
+    /**
+     * The same indexes as the migrations, so the queries run the same plans as in the deployed database
+     */
+    private void createIndexes() {
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS book_isbn_idx ON book (isbn)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS book_author_idx ON book (author)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS book_publisher_genre_year_idx ON book (publisher, genre, year)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS users_books_books_id_idx ON users_books (books_id, users_id)");
+    }
+
+    private void insertBooks(int books, long[] owners, Random random) {
+        Timestamp now = Timestamp.from(Instant.now());
+        String sql = "INSERT INTO book (id, genre, author, image, title, subtitle, publisher, year, pages, isbn,"
+                + " version, last_modified, owners_count) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0, ?, ?)";
+        for (int from = 0; from < books; from += BATCH_SIZE) {
+            int to = Math.min(books, from + BATCH_SIZE);
+            int start = from;
+            jdbcTemplate.batchUpdate(sql, new IndexedBatch(to - from, (statement, i) -> {
+                int book = start + i;
+                long id = book + 1L;
+                statement.setLong(1, id);
+                statement.setString(2, GENRES[random.nextInt(GENRES.length)]);
+                statement.setString(3, "Author " + random.nextInt(Math.max(1, books / 20)));
+                statement.setString(4, "https://covers.openlibrary.org/b/id/" + id + "-L.jpg");
+                statement.setString(5, title(random) + " " + id);
+                statement.setString(6, title(random));
+                statement.setString(7, "Publisher " + random.nextInt(500));
+                statement.setString(8, String.valueOf(1900 + random.nextInt(120)));
+                statement.setString(9, String.valueOf(50 + random.nextInt(950)));
+                statement.setString(10, isbn(id));
+                statement.setTimestamp(11, now);
+                statement.setLong(12, owners[book]);
+            }));
+        }
+    }
+
+    private void insertUsers(int users, Random random) {
+        String hash = passwordEncoder.encode(PASSWORD);
+        Timestamp now = Timestamp.from(Instant.now());
+        String sql = "INSERT INTO users (user_type, id, username, password, name, birthdate, version, last_modified)"
+                + " VALUES ('user', ?, ?, ?, ?, ?, 0, ?)";
+        for (int from = 0; from < users; from += BATCH_SIZE) {
+            int to = Math.min(users, from + BATCH_SIZE);
+            int start = from;
+            jdbcTemplate.batchUpdate(sql, new IndexedBatch(to - from, (statement, i) -> {
+                long id = start + i + 1L;
+                statement.setLong(1, id);
+                statement.setString(2, username(id));
+                statement.setString(3, hash);
+                statement.setString(4, "User " + WORDS[random.nextInt(WORDS.length)] + " " + id);
+                statement.setDate(5, Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(20_000))));
+                statement.setTimestamp(6, now);
+            }));
+        }
+    }
+
+    private void insertLinks(int[][] libraries) {
+        String sql = "INSERT INTO users_books (users_id, books_id) VALUES (?, ?)";
+        int[] pendingUsers = new int[BATCH_SIZE];
+        int[] pendingBooks = new int[BATCH_SIZE];
+        int pending = 0;
+        for (int user = 0; user < libraries.length; user++) {
+            for (int book : libraries[user]) {
+                pendingUsers[pending] = user;
+                pendingBooks[pending] = book;
+                if (++pending == BATCH_SIZE) {
+                    insertLinks(sql, pendingUsers, pendingBooks, pending);
+                    pending = 0;
+                }
+            }
+        }
+        insertLinks(sql, pendingUsers, pendingBooks, pending);
+    }
+
+    private void insertLinks(String sql, int[] users, int[] books, int size) {
+        if (size > 0) {
+            jdbcTemplate.batchUpdate(sql, new IndexedBatch(size, (statement, i) -> {
+                statement.setLong(1, users[i] + 1L);
+                statement.setLong(2, books[i] + 1L);
+            }));
+        }
+    }
+
+    private static String title(Random random) {
+        return WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " "
+                + WORDS[random.nextInt(WORDS.length)];
+    }
+}
@@ -14,13 +14,17 @@ import org.springframework.test.context.junit4.SpringRunner;
 import wolox.training.models.Book;
 import wolox.training.util.TestEntities;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @RunWith(SpringRunner.class)
-@DataJpaTest
+@DataJpaTest(properties = {"spring.flyway.enabled=false", "spring.jpa.hibernate.ddl-auto=create-drop"})
 public class BookRepositoryTest {
 
     @Autowired
@@ -101,4 +105,13 @@ public class BookRepositoryTest {
         assertEquals(books.getContent().iterator().next().getAuthor(), testBook.getAuthor());
     }
 
+    @Test
+    void whenCallFindFieldsByAllParametersThenReturnOnlyTheSelectedFields() {
+        bookRepository.save(testBook);
+        Map<String, String> filters = Collections.singletonMap("isbn", testBook.getIsbn());
+        Page<Map<String, Object>> books = bookRepository.findFieldsByAllParameters(Arrays.asList("isbn", "title"), filters, PageRequest.of(0, 5));
+        Map<String, Object> book = books.getContent().iterator().next();
+        assertEquals(Arrays.asList("isbn", "title"), new ArrayList<>(book.keySet()));
+        assertEquals(testBook.getTitle(), book.get("title"));
+    }
 }
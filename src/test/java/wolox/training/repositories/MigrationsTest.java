@@ -0,0 +1,83 @@
+package wolox.training.repositories;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import wolox.training.models.Book;
+import wolox.training.util.TestEntities;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Migrations of a database created before the schema was managed by them, the context validates the mapping
+ * against the migrated schema
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@DataJpaTest(properties = {"spring.flyway.enabled=true", "spring.jpa.hibernate.ddl-auto=validate"})
+public class MigrationsTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:12-alpine");
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+    }
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(),
+                POSTGRES.getPassword()); Statement statement = connection.createStatement()) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/V1__create_schema.sql"));
+            statement.execute("INSERT INTO book (id, author, image, title, subtitle, publisher, year, pages, isbn)"
+                    + " VALUES (1000, 'author', 'image', 'title', 'subtitle', 'publisher', '1990', '100', '1'),"
+                    + " (1001, 'author', 'image', 'title', 'subtitle', 'publisher', '1990', '100', '2')");
+            statement.execute("INSERT INTO users (user_type, id, username, name, birthdate)"
+                    + " VALUES ('user', 1000, 'miguel', 'Miguel', '1990-01-01')");
+            statement.execute("INSERT INTO users_books (users_id, books_id) VALUES (1000, 1000), (1000, 1000)");
+        }
+    }
+
+    @Test
+    @DisplayName("Test, when a database of the previous schema is migrated ,the owners of its books are counted")
+    void whenPreviousSchemaMigratedThenOwnersAreCounted() {
+        assertEquals(1, bookRepository.findById(1000L).get().getOwnersCount());
+        assertEquals(0, bookRepository.findById(1001L).get().getOwnersCount());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM users_books", Long.class).intValue());
+    }
+
+    @Test
+    @DisplayName("Test, when a book is saved in the migrated schema ,its version and date are written")
+    void whenBookSavedInMigratedSchemaThenVersionAndDateAreWritten() {
+        Book book = bookRepository.saveAndFlush(TestEntities.mockBookToPersis());
+
+        assertEquals(0, book.getVersion().longValue());
+        assertNotNull(book.getLastModified());
+    }
+}
@@ -0,0 +1,54 @@
+package wolox.training.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AuthenticationCacheTest {
+
+    private AuthenticationCache authenticationCache;
+
+    @BeforeEach
+    void setUp() {
+        authenticationCache = new AuthenticationCache(60, 100);
+    }
+
+    @Test
+    @DisplayName("Test, when credentials were verified ,they are found only with the same password")
+    void whenCredentialsVerifiedThenFoundWithSamePassword() {
+        authenticationCache.verified("miguel", "123", 1L, 0L, 50_000_000L);
+
+        assertTrue(authenticationCache.isVerified("miguel", "123"));
+        assertFalse(authenticationCache.isVerified("miguel", "1234"));
+        assertFalse(authenticationCache.isVerified("miguel1", "23"));
+        assertEquals(1, authenticationCache.stats().getHits());
+        assertEquals(50, authenticationCache.stats().getSavedMillis());
+    }
+
+    @Test
+    @DisplayName("Test, when a user is invalidated ,its credentials are verified again")
+    void whenUserInvalidatedThenCredentialsNotFound() {
+        authenticationCache.verified("miguel", "123", 1L, 0L, 1L);
+        authenticationCache.verified("luis", "123", 2L, 0L, 1L);
+
+        authenticationCache.invalidate(1L);
+
+        assertFalse(authenticationCache.isVerified("miguel", "123"));
+        assertTrue(authenticationCache.isVerified("luis", "123"));
+    }
+
+    @Test
+    @DisplayName("Test, when a user is invalidated while its credentials are verified ,they are not stored")
+    void whenInvalidatedDuringVerificationThenNotStored() {
+        long generation = authenticationCache.generation();
+        authenticationCache.invalidate(1L);
+
+        authenticationCache.verified("miguel", "123", 1L, generation, 1L);
+
+        assertFalse(authenticationCache.isVerified("miguel", "123"));
+    }
+}
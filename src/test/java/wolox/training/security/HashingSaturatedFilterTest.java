@@ -0,0 +1,28 @@
+package wolox.training.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import wolox.training.exception.HashingSaturatedException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HashingSaturatedFilterTest {
+
+    @Test
+    @DisplayName("Test, when the hashing is saturated during the authentication ,it return status Service Unavailable")
+    void whenHashingSaturatedThenServiceUnavailable() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new HashingSaturatedFilter().doFilter(new MockHttpServletRequest("GET", "/api/books"), response,
+                (request, servletResponse) -> {
+                    throw new HashingSaturatedException();
+                });
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), response.getStatus());
+        assertEquals("1", response.getHeader(HttpHeaders.RETRY_AFTER));
+    }
+}
@@ -0,0 +1,75 @@
+package wolox.training.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import wolox.training.exception.HashingSaturatedException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class PasswordHashingServiceTest {
+
+    @Test
+    @DisplayName("Test, when a password is hashed in the pool ,it matches the password")
+    void whenPasswordHashedThenMatches() {
+        PasswordHashingService service = new PasswordHashingService(new BCryptPasswordEncoder(4), 1, 1, 5000);
+        String hash = service.encode("123");
+
+        assertTrue(service.matches("123", hash));
+        assertFalse(service.matches("1234", hash));
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("Test, when the hash of a password has a lower strength ,it must be upgraded")
+    void whenHashHasLowerStrengthThenUpgrade() {
+        String weakHash = new BCryptPasswordEncoder(4).encode("123");
+        PasswordHashingService service = new PasswordHashingService(new BCryptPasswordEncoder(5), 1, 1, 5000);
+
+        assertTrue(service.upgradeEncoding(weakHash));
+        assertFalse(service.upgradeEncoding(service.encode("123")));
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("Test, when the pool and its queue are full ,the work is rejected right away")
+    void whenPoolSaturatedThenReject() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slowEncoder = mock(PasswordEncoder.class);
+        given(slowEncoder.encode(any())).willAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return "hash";
+        });
+        PasswordHashingService service = new PasswordHashingService(slowEncoder, 1, 1, 5000);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+
+        Future<String> running = callers.submit(() -> service.encode("a"));
+        started.await();
+        Future<String> queued = callers.submit(() -> service.encode("b"));
+        while (service.stats().getQueueDepth() == 0) {
+            Thread.sleep(1);
+        }
+
+        assertThrows(HashingSaturatedException.class, () -> service.encode("c"));
+        release.countDown();
+        assertEquals("hash", running.get());
+        assertEquals("hash", queued.get());
+        assertEquals(1, service.stats().getRejected());
+        callers.shutdown();
+        service.shutdown();
+    }
+}
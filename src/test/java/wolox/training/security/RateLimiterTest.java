@@ -0,0 +1,46 @@
+package wolox.training.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import wolox.training.config.RateLimitProperties;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimiterTest {
+
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        RateLimitProperties.Route route = new RateLimitProperties.Route();
+        route.setPattern("/api/auth/login");
+        route.setCapacity(2);
+        route.setRefillPerSecond(0.001);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRoutes(Collections.singletonList(route));
+        rateLimiter = new RateLimiter(properties);
+    }
+
+    @Test
+    @DisplayName("Test, when a client spends the limit of a route ,the next request must wait")
+    void whenLimitSpentThenRequestRejected() {
+        assertEquals(0, rateLimiter.tryAcquire("/api/auth/login", "ip:127.0.0.1"));
+        assertEquals(0, rateLimiter.tryAcquire("/api/auth/login", "ip:127.0.0.1"));
+
+        assertTrue(rateLimiter.tryAcquire("/api/auth/login", "ip:127.0.0.1") > 0);
+    }
+
+    @Test
+    @DisplayName("Test, when a client spends the limit of a route ,other clients and routes are not limited")
+    void whenLimitSpentThenOtherBucketsAllowed() {
+        rateLimiter.tryAcquire("/api/auth/login", "ip:127.0.0.1");
+        rateLimiter.tryAcquire("/api/auth/login", "ip:127.0.0.1");
+
+        assertEquals(0, rateLimiter.tryAcquire("/api/auth/login", "ip:10.0.0.1"));
+        assertEquals(0, rateLimiter.tryAcquire("/api/books", "ip:127.0.0.1"));
+    }
+}
@@ -0,0 +1,61 @@
+package wolox.training.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import wolox.training.models.dto.TokenDTO;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class TokenServiceTest {
+
+    private static final Instant NOW = Instant.parse("2020-11-23T10:15:30Z");
+
+    private final TokenService tokenService = new TokenService("secret", 60, 3600, Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    @DisplayName("Test, when a token is issued ,it is verified with the same key")
+    void whenTokenIssuedThenVerified() {
+        TokenDTO tokens = tokenService.issue("luis|miguel", 1L, 0);
+
+        assertEquals(Optional.of("luis|miguel"), tokenService.verifyAccess(tokens.getAccessToken()));
+        assertEquals(Optional.of("luis|miguel"), tokenService.verifyRefresh(tokens.getRefreshToken(), 1L, 0));
+        assertFalse(tokenService.verifyAccess(tokens.getRefreshToken()).isPresent());
+    }
+
+    @Test
+    @DisplayName("Test, when a token is tampered or signed with other key ,it is rejected")
+    void whenTokenTamperedThenRejected() {
+        String token = tokenService.issue("miguel", 1L, 0).getAccessToken();
+        TokenService otherKey = new TokenService("other", 60, 3600, Clock.fixed(NOW, ZoneOffset.UTC));
+
+        assertFalse(otherKey.verifyAccess(token).isPresent());
+        assertFalse(tokenService.verifyAccess("x" + token).isPresent());
+        assertFalse(tokenService.verifyAccess("garbage").isPresent());
+    }
+
+    @Test
+    @DisplayName("Test, when a token expires ,it is rejected")
+    void whenTokenExpiredThenRejected() {
+        String token = tokenService.issue("miguel", 1L, 0).getAccessToken();
+        TokenService later = new TokenService("secret", 60, 3600, Clock.fixed(NOW.plus(Duration.ofMinutes(2)), ZoneOffset.UTC));
+
+        assertFalse(later.verifyAccess(token).isPresent());
+    }
+
+    @Test
+    @DisplayName("Test, when the password changes after a refresh token is issued ,the token is rejected")
+    void whenPasswordChangedThenRefreshRejected() {
+        String token = tokenService.issue("miguel", 1L, 0).getRefreshToken();
+
+        assertEquals(Optional.of("miguel"), tokenService.verifyRefresh(token));
+        assertFalse(tokenService.verifyRefresh(token, 1L, 1).isPresent());
+        assertFalse(tokenService.verifyRefresh(token, 2L, 0).isPresent());
+    }
+}
@@ -0,0 +1,210 @@
+package wolox.training.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.test.util.ReflectionTestUtils;
+import wolox.training.models.Book;
+import wolox.training.models.ChangeEvent;
+import wolox.training.repositories.BookRepository;
+import wolox.training.repositories.ChangeEventRepository;
+import wolox.training.util.TestEntities;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Catalog of the books loaded from an embedded database, the changes of the feed are passed to it directly and the
+ * rows are changed with statements that do not record them, as a change of another instance or a stale read
+ */
+@DataJpaTest(properties = {"spring.flyway.enabled=false", "spring.jpa.hibernate.ddl-auto=create-drop"})
+public class BookCatalogTest {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ChangeEventRepository changeEventRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private BookCatalog bookCatalog;
+
+    private ChangeFeedService changeFeedService;
+
+    private final AtomicInteger fallbacks = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        changeFeedService = mock(ChangeFeedService.class);
+        bookCatalog = new BookCatalog();
+        ReflectionTestUtils.setField(bookCatalog, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(bookCatalog, "namedParameterJdbcTemplate", namedParameterJdbcTemplate);
+        ReflectionTestUtils.setField(bookCatalog, "changeEventRepository", changeEventRepository);
+        ReflectionTestUtils.setField(bookCatalog, "changeFeedService", changeFeedService);
+        ReflectionTestUtils.setField(bookCatalog, "bookJsonCache", mock(BookJsonCache.class));
+        ReflectionTestUtils.setField(bookCatalog, "snapshotPath", "");
+        ReflectionTestUtils.setField(bookCatalog, "transactionTimeout", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(bookCatalog, "gapMarginMillis", 5000L);
+    }
+
+    @Test
+    @DisplayName("Test, when the catalog is loaded from the table ,it answers the books and follows the feed from the offset")
+    void whenLoadedFromTableThenAnswersBooks() {
+        Book book = save("1");
+
+        bookCatalog.load();
+
+        assertTrue(bookCatalog.isReady());
+        assertEquals("title", find(book.getId()).get().getTitle());
+        assertEquals(0, fallbacks.get());
+        verify(changeFeedService).listen(eq(0L), any());
+    }
+
+    @Test
+    @DisplayName("Test, when the outbox has changes that may not be committed ,the feed is followed from the last one committed before the load")
+    void whenChangesMayNotBeCommittedThenFollowedFromLastCommittedBefore() {
+        Book book = save("1");
+        ChangeEvent old = record(book.getId(), ChangeEvent.CREATED);
+        record(book.getId(), ChangeEvent.UPDATED);
+        jdbcTemplate.update("UPDATE change_outbox SET created_at = ? WHERE id = ?",
+                Timestamp.from(Instant.now().minus(1, ChronoUnit.HOURS)), old.getId());
+
+        bookCatalog.load();
+
+        verify(changeFeedService).listen(eq(old.getId()), any());
+    }
+
+    @Test
+    @DisplayName("Test, when the catalog has not applied the changes up to the head of the outbox ,the reads go to the fallback")
+    void whenChangesNotAppliedThenReadsGoToFallback() {
+        Book book = save("1");
+        ChangeEvent change = record(book.getId(), ChangeEvent.CREATED);
+        bookCatalog.load();
+
+        assertFalse(bookCatalog.isReady());
+        find(book.getId());
+        assertEquals(1, fallbacks.get());
+
+        bookCatalog.apply(Collections.singletonList(change));
+
+        assertTrue(bookCatalog.isReady());
+        find(book.getId());
+        assertEquals(1, fallbacks.get());
+    }
+
+    @Test
+    @DisplayName("Test, when a change is applied after a later one ,the catalog keeps the last version")
+    void whenChangesOutOfOrderThenLastVersionKept() {
+        Book book = save("1");
+        bookCatalog.load();
+        update(book.getId(), "second", 2);
+        bookCatalog.apply(Collections.singletonList(record(book.getId(), ChangeEvent.UPDATED)));
+        update(book.getId(), "first", 1);
+
+        bookCatalog.apply(Collections.singletonList(record(book.getId(), ChangeEvent.UPDATED)));
+
+        Book found = find(book.getId()).get();
+        assertEquals("second", found.getTitle());
+        assertEquals(2, found.getVersion().longValue());
+    }
+
+    @Test
+    @DisplayName("Test, when a deleted book is applied ,it is removed and a row of it read before the delete is not put back")
+    void whenBookDeletedThenRemovedAndNotPutBack() {
+        Book book = save("1");
+        bookCatalog.load();
+        jdbcTemplate.update("DELETE FROM book WHERE id = ?", book.getId());
+
+        bookCatalog.apply(Collections.singletonList(record(book.getId(), ChangeEvent.DELETED)));
+
+        assertFalse(find(book.getId()).isPresent());
+        jdbcTemplate.update("INSERT INTO book (id, genre, author, image, title, subtitle, publisher, year, pages, isbn,"
+                + " version, owners_count) VALUES (?, 'genre', 'author', 'image', 'title', 'subtitle', 'publisher',"
+                + " '22', '22', '1', 0, 0)", book.getId());
+        bookCatalog.apply(Collections.singletonList(record(book.getId(), ChangeEvent.UPDATED)));
+
+        assertFalse(find(book.getId()).isPresent());
+    }
+
+    @Test
+    @DisplayName("Test, when the table differs from the catalog ,the reconciliation reads the books again")
+    void whenTableDiffersThenReconciled() {
+        Book changed = save("1");
+        Book removed = save("2");
+        bookCatalog.load();
+        update(changed.getId(), "changed", 5);
+        jdbcTemplate.update("DELETE FROM book WHERE id = ?", removed.getId());
+
+        bookCatalog.reconcile();
+
+        assertEquals("changed", find(changed.getId()).get().getTitle());
+        assertFalse(find(removed.getId()).isPresent());
+    }
+
+    @Test
+    @DisplayName("Test, when the transaction of a change commits ,the catalog applies it without waiting for the feed")
+    void whenChangeCommitsThenApplied() {
+        Book book = save("1");
+        bookCatalog.load();
+        update(book.getId(), "committed", 1);
+
+        bookCatalog.applyAfterCommit(book.getId());
+        assertEquals("title", find(book.getId()).get().getTitle());
+        TestTransaction.flagForCommit();
+        TestTransaction.end();
+
+        try {
+            assertEquals("committed", find(book.getId()).get().getTitle());
+        } finally {
+            jdbcTemplate.update("DELETE FROM book WHERE id = ?", book.getId());
+        }
+    }
+
+    private Book save(String isbn) {
+        Book book = TestEntities.mockBook();
+        book.setIsbn(isbn);
+        return bookRepository.saveAndFlush(book);
+    }
+
+    private ChangeEvent record(Long bookId, String operation) {
+        ChangeEvent change = new ChangeEvent();
+        change.setEntityType(ChangeEvent.BOOK);
+        change.setEntityId(bookId);
+        change.setOperation(operation);
+        return changeEventRepository.saveAndFlush(change);
+    }
+
+    private void update(Long id, String title, long version) {
+        jdbcTemplate.update("UPDATE book SET title = ?, version = ? WHERE id = ?", title, version, id);
+    }
+
+    private Optional<Book> find(Long id) {
+        return bookCatalog.findById(id, () -> {
+            fallbacks.incrementAndGet();
+            return Optional.empty();
+        });
+    }
+}
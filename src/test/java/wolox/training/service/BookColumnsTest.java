@@ -0,0 +1,114 @@
+package wolox.training.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Sort;
+import wolox.training.models.Book;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BookColumnsTest {
+
+    private BookColumns columns;
+
+    @BeforeEach
+    void setUp() {
+        columns = new BookColumns();
+        columns.put(1L, values("Terror", "Stephen King", "It", "Scribner", "1986", "1138", "isbn-1"), 0L,
+                Instant.parse("2020-01-01T10:00:00.123Z"), 3);
+        columns.put(2L, values("Terror", "Stephen King", "Carrie", "Doubleday", "1974", "199", "isbn-2"), 1L, null, 0);
+        columns.put(3L, values(null, "J. R. R. Tolkien", "The Hobbit", "Allen & Unwin", "1937", "310", "isbn-3"), 0L,
+                null, 7);
+    }
+
+    @Test
+    @DisplayName("Test, when the rows are filtered by column ,the matching books are returned in order")
+    void whenFilteredThenMatchingRowsInOrder() {
+        boolean[][] filters = new boolean[BookColumns.COLUMNS.length][];
+        Pattern author = BookColumns.like("%king");
+        filters[BookColumns.Column.AUTHOR.ordinal()] = columns.matching(BookColumns.Column.AUTHOR,
+                value -> author.matcher(value.toUpperCase()).matches());
+
+        int[] rows = columns.select(filters, Sort.by("year"));
+
+        assertEquals(Arrays.asList("Carrie", "It"), Arrays.asList(columns.book(rows[0]).getTitle(), columns.book(rows[1]).getTitle()));
+    }
+
+    @Test
+    @DisplayName("Test, when a column is null ,it never matches a filter and goes last in order")
+    void whenNullValueThenNoMatchAndLast() {
+        boolean[][] filters = new boolean[BookColumns.COLUMNS.length][];
+        filters[BookColumns.Column.GENRE.ordinal()] = columns.matching(BookColumns.Column.GENRE, value -> true);
+
+        assertEquals(2, columns.select(filters, Sort.unsorted()).length);
+        int[] rows = columns.select(new boolean[BookColumns.COLUMNS.length][], Sort.by("genre", "id"));
+        assertEquals(3L, columns.book(rows[2]).getId());
+    }
+
+    @Test
+    @DisplayName("Test, when a book is updated or removed ,the indexes follow it")
+    void whenUpdatedOrRemovedThenIndexesFollow() {
+        columns.put(2L, values("Terror", "Stephen King", "Carrie", "Doubleday", "1974", "199", "isbn-9"), 2L, null, 0);
+        columns.remove(1L);
+
+        assertEquals(BookColumns.NULL, columns.rowOf(1L));
+        assertEquals(BookColumns.NULL, columns.rowOfIsbn("isbn-2"));
+        assertEquals(2L, columns.version(columns.rowOfIsbn("isbn-9")));
+        assertEquals(2, columns.rows());
+    }
+
+    @Test
+    @DisplayName("Test, when the rows are written to a snapshot ,they are read back equal")
+    void whenSnapshotWrittenThenReadBack(@TempDir Path directory) throws Exception {
+        columns.remove(2L);
+        columns.setOffset(42L);
+        Path file = directory.resolve("catalog.bin");
+
+        columns.write(file);
+        BookColumns loaded = BookColumns.read(file, 60_000);
+
+        assertEquals(42L, loaded.getOffset());
+        assertEquals(2, loaded.rows());
+        Book book = loaded.book(loaded.rowOfIsbn("isbn-1"));
+        assertEquals(columns.book(columns.rowOf(1L)), book);
+        assertEquals(Instant.parse("2020-01-01T10:00:00.123Z"), book.getLastModified());
+        assertNull(loaded.book(loaded.rowOf(3L)).getGenre());
+        int[] rows = loaded.select(new boolean[BookColumns.COLUMNS.length][], Sort.by("title"));
+        assertArrayEquals(new long[]{1L, 3L}, Arrays.stream(rows).mapToLong(row -> loaded.book(row).getId()).toArray());
+    }
+
+    @Test
+    @DisplayName("Test, when a LIKE pattern is converted ,its wildcards and literals keep their meaning")
+    void whenLikePatternThenWildcardsAndLiterals() {
+        assertTrue(BookColumns.like("a_c%").matcher("ABCDEF").matches());
+        assertFalse(BookColumns.like("a.c").matcher("ABC").matches());
+        assertTrue(BookColumns.isSortable(Sort.by("title", "ownersCount")));
+        assertFalse(BookColumns.isSortable(Sort.by("users")));
+    }
+
+    private static String[] values(String genre, String author, String title, String publisher, String year,
+                                   String pages, String isbn) {
+        String[] values = new String[BookColumns.COLUMNS.length];
+        values[BookColumns.Column.GENRE.ordinal()] = genre;
+        values[BookColumns.Column.AUTHOR.ordinal()] = author;
+        values[BookColumns.Column.IMAGE.ordinal()] = "image";
+        values[BookColumns.Column.TITLE.ordinal()] = title;
+        values[BookColumns.Column.SUBTITLE.ordinal()] = "subtitle";
+        values[BookColumns.Column.PUBLISHER.ordinal()] = publisher;
+        values[BookColumns.Column.YEAR.ordinal()] = year;
+        values[BookColumns.Column.PAGES.ordinal()] = pages;
+        values[BookColumns.Column.ISBN.ordinal()] = isbn;
+        return values;
+    }
+}
@@ -0,0 +1,65 @@
+package wolox.training.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import wolox.training.models.Book;
+import wolox.training.util.TestEntities;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BookJsonCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private BookJsonCache bookJsonCache;
+
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        bookJsonCache = new BookJsonCache(true, 1_000_000, 65_536, true, true, 300);
+        ReflectionTestUtils.setField(bookJsonCache, "objectMapper", objectMapper);
+        book = TestEntities.mockBook();
+        book.setId(1L);
+        book.setVersion(0L);
+    }
+
+    @Test
+    @DisplayName("Test, when a book is cached ,its bytes are the JSON of the book")
+    void whenBookCachedThenBytesAreTheJson() throws Exception {
+        bookJsonCache.put(book, bookJsonCache.stamp());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bookJsonCache.get(1L).get().body(false).writeTo(out);
+
+        assertEquals(objectMapper.writeValueAsString(book), out.toString("UTF-8"));
+        assertEquals("gzip", bookJsonCache.get(1L).get().body(true).getContentEncoding());
+    }
+
+    @Test
+    @DisplayName("Test, when a book is invalidated ,it is not cached")
+    void whenBookInvalidatedThenNotCached() {
+        bookJsonCache.put(book, bookJsonCache.stamp());
+
+        bookJsonCache.invalidate(1L);
+
+        assertFalse(bookJsonCache.get(1L).isPresent());
+    }
+
+    @Test
+    @DisplayName("Test, when a book is invalidated while it is read ,the read book is not cached")
+    void whenInvalidatedWhileReadThenNotCached() {
+        long stamp = bookJsonCache.stamp();
+        bookJsonCache.invalidate(1L);
+
+        assertTrue(bookJsonCache.put(book, stamp).isPresent());
+        assertFalse(bookJsonCache.get(1L).isPresent());
+    }
+}
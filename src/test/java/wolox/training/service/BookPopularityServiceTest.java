@@ -0,0 +1,71 @@
+package wolox.training.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import wolox.training.models.dto.BookOwnersDTO;
+import wolox.training.repositories.BookRepository;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class BookPopularityServiceTest {
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private BookJsonCache bookJsonCache;
+
+    @Mock
+    private ChangeOutbox changeOutbox;
+
+    @InjectMocks
+    private BookPopularityService bookPopularityService;
+
+    @BeforeEach
+    void setUp() {
+        given(bookRepository.findAllOwnersCounts()).willReturn(Collections.emptyList());
+        bookPopularityService.load();
+    }
+
+    @Test
+    @DisplayName("Test, when owners are added and removed ,the counters are updated")
+    void whenOwnersChangeThenCountersAreUpdated() {
+        bookPopularityService.ownerAdded(1L);
+        bookPopularityService.ownerAdded(1L);
+        bookPopularityService.ownerAdded(2L);
+        bookPopularityService.ownerRemoved(2L);
+
+        assertEquals(2, bookPopularityService.getOwners(1L).getOwners());
+        assertEquals(0, bookPopularityService.getOwners(2L).getOwners());
+        verify(bookRepository).addToOwnersCount(2L, -1);
+        verify(bookJsonCache).invalidate(2L);
+    }
+
+    @Test
+    @DisplayName("Test, when the most owned books are requested ,they are sorted by owners")
+    void whenFindMostOwnedThenReturnSortedRanking() {
+        bookPopularityService.ownerAdded(1L);
+        bookPopularityService.ownerAdded(2L);
+        bookPopularityService.ownerAdded(2L);
+        bookPopularityService.ownerAdded(3L);
+        bookPopularityService.ownerAdded(3L);
+        bookPopularityService.ownerAdded(3L);
+
+        List<BookOwnersDTO> mostOwned = bookPopularityService.getMostOwned(2);
+
+        assertEquals(2, mostOwned.size());
+        assertEquals(3L, mostOwned.get(0).getBookId());
+        assertEquals(2L, mostOwned.get(1).getBookId());
+    }
+}
@@ -0,0 +1,112 @@
+package wolox.training.service;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import wolox.training.models.Book;
+import wolox.training.util.TestEntities;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BookSearchCacheTest {
+
+    private BookSearchCache bookSearchCache;
+
+    private final AtomicInteger searches = new AtomicInteger();
+
+    private final Pageable pageable = PageRequest.of(0, 10);
+
+    @BeforeEach
+    void setUp() {
+        bookSearchCache = new BookSearchCache(1_000_000, 60, 100);
+    }
+
+    @Test
+    @DisplayName("Test, when the same search is repeated ,the query runs once")
+    void whenSearchRepeatedThenQueryRunsOnce() {
+        search("publisher", "Terror", null);
+        search("publisher", "Terror", null);
+
+        assertEquals(1, searches.get());
+        assertEquals(1, bookSearchCache.stats().getHits());
+    }
+
+    @Test
+    @DisplayName("Test, when a book changes ,only the searches of its genre are evicted")
+    void whenBookChangesThenOnlyAffectedSearchesAreEvicted() {
+        search(null, "Terror", null);
+        search(null, "Comedy", null);
+
+        bookSearchCache.evict("terror", "publisher", "1990");
+        search(null, "Terror", null);
+        search(null, "Comedy", null);
+
+        assertEquals(3, searches.get());
+    }
+
+    @Test
+    @DisplayName("Test, when any book changes ,the searches without filters are evicted")
+    void whenBookChangesThenUnfilteredSearchesAreEvicted() {
+        search(null, null, null);
+
+        bookSearchCache.evict("Comedy", "publisher", "1990");
+        search(null, null, null);
+
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    @DisplayName("Test, when an expired search is replaced ,the new page is still evicted by its genre")
+    void whenExpiredSearchReplacedThenNewPageIsEvicted() {
+        AtomicLong nanos = new AtomicLong();
+        bookSearchCache = new BookSearchCache(1_000_000, 60, 100, new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        });
+        search(null, "Terror", null);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        search(null, "Terror", null);
+
+        bookSearchCache.evict("terror", "publisher", "1990");
+        search(null, "Terror", null);
+
+        assertEquals(3, searches.get());
+    }
+
+    @Test
+    @DisplayName("Test, when a search is cached before the transaction of a change commits ,it is evicted on the commit")
+    void whenSearchCachedBeforeCommitThenEvictedOnCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            bookSearchCache.evict("terror", "publisher", "1990");
+            search(null, "Terror", null);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        search(null, "Terror", null);
+
+        assertEquals(2, searches.get());
+    }
+
+    private Page<Book> search(String publisher, String genre, String year) {
+        return bookSearchCache.findBy(publisher, genre, year, null, pageable, () -> {
+            searches.incrementAndGet();
+            return new PageImpl<>(Collections.singletonList(TestEntities.mockBook()), pageable, 1);
+        });
+    }
+}
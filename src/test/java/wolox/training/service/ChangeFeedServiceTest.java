@@ -0,0 +1,176 @@
+package wolox.training.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import wolox.training.exception.ChangesExpiredException;
+import wolox.training.models.ChangeEvent;
+import wolox.training.repositories.ChangeEventRepository;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class ChangeFeedServiceTest {
+
+    private ChangeFeedService changeFeedService;
+
+    @BeforeEach
+    void setUp() {
+        changeFeedService = new ChangeFeedService();
+        ReflectionTestUtils.setField(changeFeedService, "transactionTimeout", Duration.ofMillis(1500));
+        ReflectionTestUtils.setField(changeFeedService, "gapMarginMillis", 500L);
+    }
+
+    @Test
+    @DisplayName("Test, when the changes follow the offset ,they are all delivered")
+    void whenChangesAreContiguousThenAllAreDelivered() {
+        List<ChangeEvent> delivered = changeFeedService.deliverable(10, changes(11, 12, 13), 0);
+
+        assertEquals(Arrays.asList(11L, 12L, 13L), ids(delivered));
+    }
+
+    @Test
+    @DisplayName("Test, when a change is missing ,the later changes wait until the gap expires")
+    void whenChangeIsMissingThenLaterChangesWait() {
+        long now = System.nanoTime();
+
+        assertEquals(Arrays.asList(11L), ids(changeFeedService.deliverable(10, changes(11, 13, 14), now)));
+        assertEquals(Arrays.asList(), ids(changeFeedService.deliverable(11, changes(13, 14), now + TimeUnit.SECONDS.toNanos(1))));
+        assertEquals(Arrays.asList(13L, 14L), ids(changeFeedService.deliverable(11, changes(13, 14), now + TimeUnit.SECONDS.toNanos(3))));
+    }
+
+    @Test
+    @DisplayName("Test, when the missing change commits ,it is delivered in order")
+    void whenMissingChangeCommitsThenDeliveredInOrder() {
+        long now = System.nanoTime();
+        changeFeedService.deliverable(11, changes(13), now);
+
+        List<ChangeEvent> delivered = changeFeedService.deliverable(11, changes(12, 13), now + TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertEquals(Arrays.asList(12L, 13L), ids(delivered));
+    }
+
+    @Test
+    @DisplayName("Test, when the changes after the offset were pruned ,the subscription is rejected")
+    void whenChangesPrunedThenSubscriptionRejected() {
+        ChangeEventRepository changeEventRepository = mock(ChangeEventRepository.class);
+        given(changeEventRepository.findFirstId()).willReturn(Optional.of(100L));
+        given(changeEventRepository.findLastId()).willReturn(Optional.of(200L));
+        ReflectionTestUtils.setField(changeFeedService, "changeEventRepository", changeEventRepository);
+        ReflectionTestUtils.setField(changeFeedService, "maxSubscribers", 10);
+
+        assertThrows(ChangesExpiredException.class, () -> changeFeedService.subscribe(50L));
+        assertTrue(changeFeedService.isRetained(99L));
+        assertFalse(changeFeedService.isRetained(201L));
+    }
+
+    @Test
+    @DisplayName("Test, when the outbox is empty ,only the subscriptions without changes received are accepted")
+    void whenOutboxEmptyThenReceivedOffsetsAreExpired() {
+        ChangeEventRepository changeEventRepository = mock(ChangeEventRepository.class);
+        given(changeEventRepository.findFirstId()).willReturn(Optional.empty());
+        ReflectionTestUtils.setField(changeFeedService, "changeEventRepository", changeEventRepository);
+
+        assertFalse(changeFeedService.isRetained(50L));
+        assertTrue(changeFeedService.isRetained(0L));
+    }
+
+    @Test
+    @DisplayName("Test, when a change listener fails ,it keeps its subscription and gets the changes again")
+    void whenListenerFailsThenChangesSentAgain() {
+        ChangeEventRepository changeEventRepository = mock(ChangeEventRepository.class);
+        given(changeEventRepository.findBatch(eq(10L), any())).willReturn(changes(11, 12));
+        ReflectionTestUtils.setField(changeFeedService, "changeEventRepository", changeEventRepository);
+        ReflectionTestUtils.setField(changeFeedService, "batchSize", 500);
+        ReflectionTestUtils.setField(changeFeedService, "maxBatchesPerPoll", 10);
+        AtomicBoolean failed = new AtomicBoolean();
+        List<ChangeEvent> received = new ArrayList<>();
+        changeFeedService.listen(10L, changes -> {
+            if (failed.compareAndSet(false, true)) {
+                throw new IllegalStateException("Not ready");
+            }
+            received.addAll(changes);
+        });
+
+        ReflectionTestUtils.invokeMethod(changeFeedService, "tail");
+        ReflectionTestUtils.invokeMethod(changeFeedService, "tail");
+
+        assertEquals(Arrays.asList(11L, 12L), ids(received));
+    }
+
+    @Test
+    @DisplayName("Test, when a subscriber does not read its events ,it is disconnected without delaying the feed")
+    void whenSubscriberFallsBehindThenDisconnected() {
+        ChangeEventRepository changeEventRepository = mock(ChangeEventRepository.class);
+        given(changeEventRepository.findBatch(anyLong(), any()))
+                .willAnswer(invocation -> changes(invocation.<Long>getArgument(0) + 1));
+        ReflectionTestUtils.setField(changeFeedService, "changeEventRepository", changeEventRepository);
+        ReflectionTestUtils.setField(changeFeedService, "batchSize", 500);
+        ReflectionTestUtils.setField(changeFeedService, "maxBatchesPerPoll", 10);
+        ReflectionTestUtils.setField(changeFeedService, "heartbeatSeconds", 15L);
+        ReflectionTestUtils.setField(changeFeedService, "subscriberQueueSize", 2);
+        ExecutorService senders = Executors.newCachedThreadPool();
+        ReflectionTestUtils.setField(changeFeedService, "senders", senders);
+        CountDownLatch blocked = new CountDownLatch(1);
+        changeFeedService.subscribe(new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        }, 10L);
+
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                for (int i = 0; i < 4; i++) {
+                    ReflectionTestUtils.invokeMethod(changeFeedService, "tail");
+                }
+            });
+            assertEquals(0, changeFeedService.getSubscribers());
+        } finally {
+            blocked.countDown();
+            senders.shutdownNow();
+        }
+    }
+
+    private static List<ChangeEvent> changes(long... ids) {
+        return Arrays.stream(ids).mapToObj(id -> {
+            ChangeEvent change = new ChangeEvent();
+            change.setId(id);
+            change.setEntityType(ChangeEvent.BOOK);
+            change.setEntityId(id);
+            change.setOperation(ChangeEvent.UPDATED);
+            return change;
+        }).collect(Collectors.toList());
+    }
+
+    private static List<Long> ids(List<ChangeEvent> changes) {
+        return changes.stream().map(ChangeEvent::getId).collect(Collectors.toList());
+    }
+}
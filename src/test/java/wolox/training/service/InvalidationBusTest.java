@@ -0,0 +1,131 @@
+package wolox.training.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import wolox.training.models.ChangeEvent;
+import wolox.training.security.AuthenticationCache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+public class InvalidationBusTest {
+
+    private InMemoryInvalidationTransport transport;
+    private Node writer;
+    private Node reader;
+
+    @BeforeEach
+    void setUp() {
+        transport = new InMemoryInvalidationTransport();
+        writer = new Node(transport);
+        reader = new Node(transport);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.bus.stop();
+        reader.bus.stop();
+    }
+
+    @Test
+    @DisplayName("Test, when a burst of changes is published ,the other node evicts every element once")
+    void whenBurstPublishedThenOtherNodeEvictsOnce() {
+        writer.bus.publish(change(ChangeEvent.BOOK, 1L, 2L));
+        writer.bus.publish(change(ChangeEvent.BOOK, 1L, 3L));
+        writer.bus.publish(change(ChangeEvent.BOOK, 2L, null));
+        writer.bus.publish(change(ChangeEvent.USER, 7L, 1L));
+
+        reader.bus.flush();
+        writer.bus.flush();
+
+        verify(reader.bookJsonCache).invalidate(1L, 3L);
+        verify(reader.bookJsonCache).invalidate(2L, null);
+        verify(reader.bookPopularityService).refresh(1L);
+        verify(reader.bookSearchCache, times(1)).evictAll();
+        verify(reader.authenticationCache).invalidate(7L);
+        assertEquals(4, reader.bus.getReceived());
+        assertEquals(3, reader.bus.getApplied());
+        verifyNoInteractions(writer.bookJsonCache, writer.bookSearchCache, writer.authenticationCache);
+    }
+
+    @Test
+    @DisplayName("Test, when a change is published in a transaction ,it is delivered only after the commit")
+    void whenPublishedInTransactionThenDeliveredAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            writer.bus.publish(change(ChangeEvent.BOOK, 1L, 2L));
+            reader.bus.flush();
+            verify(reader.bookJsonCache, never()).invalidate(anyLong(), any());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        reader.bus.flush();
+
+        verify(reader.bookJsonCache).invalidate(1L, 2L);
+    }
+
+    @Test
+    @DisplayName("Test, when the connection drops ,the lost changes are covered by clearing every cache")
+    void whenConnectionDropsThenEveryCacheIsCleared() {
+        transport.disconnect();
+        writer.bus.publish(change(ChangeEvent.BOOK, 1L, 2L));
+        reader.bus.flush();
+        verify(reader.bookJsonCache, never()).invalidate(anyLong(), any());
+
+        transport.reconnect();
+        reader.bus.flush();
+
+        verify(reader.bookJsonCache).invalidateAll();
+        verify(reader.bookSearchCache).evictAll();
+        verify(reader.authenticationCache).invalidateAll();
+        verify(reader.bookPopularityService).load();
+        assertEquals(1, reader.bus.getResyncs());
+    }
+
+    private static ChangeEvent change(String entityType, Long entityId, Long version) {
+        ChangeEvent change = new ChangeEvent();
+        change.setEntityType(entityType);
+        change.setEntityId(entityId);
+        change.setOperation(ChangeEvent.UPDATED);
+        change.setVersion(version);
+        return change;
+    }
+
+    /**
+     * Instance of the application with its own bus and caches, the flushes are only run by the tests
+     */
+    private static class Node {
+
+        private final InvalidationBus bus = new InvalidationBus();
+        private final BookJsonCache bookJsonCache = mock(BookJsonCache.class);
+        private final BookSearchCache bookSearchCache = mock(BookSearchCache.class);
+        private final AuthenticationCache authenticationCache = mock(AuthenticationCache.class);
+        private final BookPopularityService bookPopularityService = mock(BookPopularityService.class);
+
+        Node(InvalidationTransport transport) {
+            StaticListableBeanFactory beans = new StaticListableBeanFactory();
+            beans.addBean("bookPopularityService", bookPopularityService);
+            ReflectionTestUtils.setField(bus, "invalidationTransport", transport);
+            ReflectionTestUtils.setField(bus, "bookJsonCache", bookJsonCache);
+            ReflectionTestUtils.setField(bus, "bookSearchCache", bookSearchCache);
+            ReflectionTestUtils.setField(bus, "authenticationCache", authenticationCache);
+            ReflectionTestUtils.setField(bus, "bookPopularityService", beans.getBeanProvider(BookPopularityService.class));
+            ReflectionTestUtils.setField(bus, "coalesceMillis", 3_600_000L);
+            bus.start();
+        }
+    }
+}
@@ -14,6 +14,10 @@ import org.springframework.http.MediaType;
 import wolox.training.exception.BookNotFoundException;
 import wolox.training.models.dto.BookDTO;
 
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
@@ -27,6 +31,8 @@ public class OpenLibraryServiceTest {
     private static WireMockServer wireMockServer;
     private static final String isbnSuccess = "0385472579";
     private static final String isbnFail = "2";
+    private static final String isbnSlow = "3";
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
 
     @BeforeAll
     public static void setUp() {
@@ -47,6 +53,13 @@ public class OpenLibraryServiceTest {
                         .willReturn(aResponse().withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                                 .withStatus(200)
                                 .withBodyFile("{}")));
+
+        wireMockServer
+                .stubFor(get(urlEqualTo(String.format(url, isbnSlow)))
+                        .willReturn(aResponse().withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .withStatus(200)
+                                .withFixedDelay(2000)
+                                .withBodyFile("**/response.json")));
     }
 
     @Test
@@ -65,6 +78,30 @@ public class OpenLibraryServiceTest {
         Assertions.assertThrows(BookNotFoundException.class, () -> openLibraryService.findInfoBook(isbnFail));
     }
 
+    @Test
+    @DisplayName("Test, when search a book asynchronously ,it returns a book")
+    void whenFindBookByIsbnAsyncThenReturnBook() throws Exception {
+        BookDTO bookDTO = openLibraryService.findInfoBookAsync(isbnSuccess, TIMEOUT).get();
+        Assert.assertEquals("0385472579", bookDTO.getIsbn());
+        Assert.assertEquals("Zen speaks", bookDTO.getTitle());
+    }
+
+    @Test
+    @DisplayName("Test, when search a book asynchronously ,it completes with not found")
+    void whenFindBookByIsbnAsyncThenCompleteWithNotFound() {
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                () -> openLibraryService.findInfoBookAsync(isbnFail, TIMEOUT).get());
+        Assertions.assertTrue(e.getCause() instanceof BookNotFoundException);
+    }
+
+    @Test
+    @DisplayName("Test, when the api answers after the timeout ,it completes with timeout")
+    void whenFindBookByIsbnAsyncIsSlowThenCompleteWithTimeout() {
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                () -> openLibraryService.findInfoBookAsync(isbnSlow, Duration.ofMillis(200)).get());
+        Assertions.assertTrue(e.getCause() instanceof TimeoutException);
+    }
+
     @AfterAll
     public static void setDown() {
         wireMockServer.stop();
@@ -0,0 +1,82 @@
+package wolox.training.service;
+
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import wolox.training.exception.InvalidQueryException;
+import wolox.training.exception.ProfilingInProgressException;
+import wolox.training.models.dto.ProfileSummaryDTO;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProfilingServiceTest {
+
+    private final ProfilingService profilingService = new ProfilingService(5);
+
+    @Test
+    @DisplayName("Test, when the application is busy during a recording ,its methods are in the summary")
+    void whenBusyDuringRecordingThenHotMethodsAreSummarized() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        CompletableFuture<Long> busy = CompletableFuture.supplyAsync(() -> spin(running));
+
+        Path file = profilingService.record(2, "profile");
+        running.set(false);
+        busy.join();
+        try {
+            ProfileSummaryDTO summary = ProfilingService.summarize(file, 2, "profile");
+
+            assertTrue(summary.getExecutionSamples() > 0);
+            assertTrue(summary.getHotMethods().stream()
+                    .anyMatch(entry -> entry.getSite().startsWith(ProfilingServiceTest.class.getName() + ".spin")));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Test, when a recording is in progress ,another recording is rejected")
+    void whenRecordingInProgressThenAnotherIsRejected() throws Exception {
+        CompletableFuture<Path> first = CompletableFuture.supplyAsync(() -> profilingService.record(2, "default"));
+        TimeUnit.MILLISECONDS.sleep(500);
+
+        assertThrows(ProfilingInProgressException.class, () -> profilingService.record(1, "default"));
+        Files.deleteIfExists(first.join());
+    }
+
+    @Test
+    @DisplayName("Test, when the application is recorded ,the environment and system properties are not in the recording")
+    void whenRecordedThenEnvironmentIsNotRecorded() throws Exception {
+        Path file = profilingService.record(1, "profile");
+        try {
+            assertTrue(RecordingFile.readAllEvents(file).stream()
+                    .map(event -> event.getEventType().getName())
+                    .noneMatch(name -> name.equals("jdk.InitialEnvironmentVariable")
+                            || name.equals("jdk.InitialSystemProperty")));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("Test, when the recording is too long or the profile unknown ,it is rejected")
+    void whenInvalidRecordingThenRejected() {
+        assertThrows(InvalidQueryException.class, () -> profilingService.record(6, "profile"));
+        assertThrows(InvalidQueryException.class, () -> profilingService.record(0, "profile"));
+        assertThrows(InvalidQueryException.class, () -> profilingService.record(1, "custom"));
+    }
+
+    private static long spin(AtomicBoolean running) {
+        long value = 0;
+        while (running.get()) {
+            value += Long.numberOfTrailingZeros(value * 31 + 7);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,46 @@
+package wolox.training.util;
+
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultMatcher;
+import wolox.training.config.RequestQueries;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Expectations on the statements sent by a request, collected by the QueryStatisticsFilter
+ */
+public class QueryCounts {
+
+    public static ResultMatcher statements(int expected) {
+        return result -> assertEquals(expected, queries(result).getStatements(), "statements sent by the request");
+    }
+
+    public static ResultMatcher statementsAtMost(int maximum) {
+        return result -> {
+            int statements = queries(result).getStatements();
+            assertTrue(statements <= maximum, "expected at most " + maximum + " statements but were " + statements);
+        };
+    }
+
+    public static ResultMatcher collectionFetches(int expected) {
+        return result -> assertEquals(expected, queries(result).getCollectionFetches(),
+                "lazy collections fetched by the request");
+    }
+
+    public static ResultMatcher noRepeatedStatements() {
+        return result -> {
+            Map<String, Integer> repeated = queries(result).getRepeatedStatements(2);
+            assertTrue(repeated.isEmpty(), "statements repeated in one request: " + repeated);
+        };
+    }
+
+    private static RequestQueries queries(MvcResult result) {
+        RequestQueries queries = (RequestQueries) result.getRequest().getAttribute(RequestQueries.ATTRIBUTE);
+        assertNotNull(queries, "the query statistics filter did not run");
+        return queries;
+    }
+}